@@ -0,0 +1,32 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.enums.OrderStatus;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ActiveCartBackfillRunner implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ActiveCartBackfillRunner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            // Ordini Pending creati prima del vincolo unico: per ogni utente senza carrello marcato vale il più recente
+            int marked = jdbcTemplate.update("UPDATE orders o JOIN (" +
+                    "SELECT user_id, MAX(id) AS id FROM orders WHERE order_status = ? AND user_id IS NOT NULL " +
+                    "GROUP BY user_id HAVING COUNT(active_cart_user_id) = 0) latest ON o.id = latest.id " +
+                    "SET o.active_cart_user_id = o.user_id", OrderStatus.Pending.ordinal());
+            if (marked > 0) {
+                System.out.println("Active carts marked for " + marked + " users.");
+            }
+        } catch (Exception e) {
+            System.out.println("Active cart backfill skipped: " + e.getMessage());
+        }
+    }
+}
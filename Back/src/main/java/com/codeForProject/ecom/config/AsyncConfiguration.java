@@ -0,0 +1,59 @@
+package com.codeForProject.ecom.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfiguration {
+
+    public static final String IMAGE_EXECUTOR = "imageDerivativeExecutor";
+
+    public static final String SNAPSHOT_EXECUTOR = "catalogSnapshotExecutor";
+
+    public static final String ORDER_EVENT_EXECUTOR = "orderEventExecutor";
+
+    // Pool dedicato: il ridimensionamento è CPU-bound e non deve occupare i thread delle richieste HTTP
+    @Bean(name = IMAGE_EXECUTOR)
+    public ThreadPoolTaskExecutor imageDerivativeExecutor(@Value("${app.images.derivatives.threads:2}") int threads,
+                                                          @Value("${app.images.derivatives.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-derivative-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    // Passi a valle della conferma degli ordini: la coda limitata fa ripiegare sul polling dell'outbox
+    @Bean(name = ORDER_EVENT_EXECUTOR)
+    public ThreadPoolTaskExecutor orderEventExecutor(@Value("${app.orders.outbox.threads:2}") int threads,
+                                                     @Value("${app.orders.outbox.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-event-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    // Un solo thread: le ricostruzioni degli snapshot sono rare e non devono mai sovrapporsi
+    @Bean(name = SNAPSHOT_EXECUTOR)
+    public ThreadPoolTaskExecutor catalogSnapshotExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("catalog-snapshot-");
+        executor.initialize();
+        return executor;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.services.blob.BlobStore;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Order(1)
+public class BlobStoreMigrationRunner implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BlobStore blobStore;
+
+    public BlobStoreMigrationRunner(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public void run(String... args) {
+        // Sposta nel blob store le immagini rimaste nelle colonne longblob; le righe tengono solo l'hash
+        migrate("product", "image", "image_hash");
+        migrate("review", "img", "img_hash");
+        migrate("users", "image", "image_hash");
+    }
+
+    private void migrate(String table, String blobColumn, String hashColumn) {
+        try {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM " + table + " WHERE " + blobColumn + " IS NOT NULL", Long.class);
+            int moved = 0;
+            // Un blob alla volta, per non caricare tutte le immagini in memoria insieme
+            for (Long id : ids) {
+                byte[] bytes = jdbcTemplate.queryForObject(
+                        "SELECT " + blobColumn + " FROM " + table + " WHERE id = ?", byte[].class, id);
+                String hash = bytes == null || bytes.length == 0 ? null : blobStore.put(bytes);
+                jdbcTemplate.update("UPDATE " + table + " SET " + hashColumn + " = ?, " + blobColumn + " = NULL WHERE id = ?",
+                        hash, id);
+                moved++;
+            }
+            if (moved > 0) {
+                System.out.println("Blob store migration: moved " + moved + " images out of '" + table + "'.");
+            }
+        } catch (Exception e) {
+            // Colonna assente (database creato dopo la migrazione) o blob store non scrivibile
+            System.out.println("Blob store migration skipped for '" + table + "': " + e.getMessage());
+        }
+    }
+}
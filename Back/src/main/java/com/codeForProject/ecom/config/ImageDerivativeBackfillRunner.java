@@ -0,0 +1,51 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import com.codeForProject.ecom.services.image.ImageDerivativeService;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+@Component
+@Order(2)
+public class ImageDerivativeBackfillRunner implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    public ImageDerivativeBackfillRunner(JdbcTemplate jdbcTemplate, ImageDerivativeService imageDerivativeService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageDerivativeService = imageDerivativeService;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            // Prodotti caricati prima della pipeline o rimasti in coda al precedente spegnimento
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, image_hash FROM product WHERE image_hash IS NOT NULL " +
+                            "AND (image_variant_status IS NULL OR image_variant_status = ?)",
+                    ImageVariantStatus.Pending.name()
+            );
+            jdbcTemplate.update("UPDATE product SET image_variant_status = ? WHERE image_hash IS NULL AND image_variant_status IS NULL",
+                    ImageVariantStatus.None.name());
+            for (Map<String, Object> row : rows) {
+                Long id = ((Number) row.get("id")).longValue();
+                String imageHash = (String) row.get("image_hash");
+                jdbcTemplate.update("UPDATE product SET image_variant_status = ? WHERE id = ?",
+                        ImageVariantStatus.Pending.name(), id);
+                imageDerivativeService.scheduleProductDerivatives(id, imageHash);
+            }
+            if (!rows.isEmpty()) {
+                System.out.println("Image derivatives: queued " + rows.size() + " products.");
+            }
+        } catch (Exception e) {
+            System.out.println("Image derivative backfill skipped: " + e.getMessage());
+        }
+    }
+}
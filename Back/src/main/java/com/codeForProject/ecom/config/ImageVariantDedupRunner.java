@@ -0,0 +1,60 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.services.blob.BlobStore;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+@Component
+@Order(1)
+public class ImageVariantDedupRunner implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BlobStore blobStore;
+
+    public ImageVariantDedupRunner(JdbcTemplate jdbcTemplate, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            Integer constraints = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() " +
+                            "AND TABLE_NAME = 'product_image_variant' AND INDEX_NAME = 'uk_variant_product_hash_width'",
+                    Integer.class);
+            if (constraints != null && constraints > 0) {
+                return;
+            }
+            // ddl-auto=update non riesce a creare il vincolo se ci sono già varianti doppie: si tiene la più vecchia
+            List<Map<String, Object>> duplicates = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT v.id, v.blob_hash FROM product_image_variant v JOIN product_image_variant k " +
+                            "ON k.product_id = v.product_id AND k.source_hash = v.source_hash AND k.width = v.width " +
+                            "AND k.id < v.id");
+            for (Map<String, Object> row : duplicates) {
+                jdbcTemplate.update("DELETE FROM product_image_variant WHERE id = ?", ((Number) row.get("id")).longValue());
+                String blobHash = (String) row.get("blob_hash");
+                if (blobHash != null) {
+                    blobStore.release(blobHash);
+                }
+            }
+            jdbcTemplate.execute("ALTER TABLE product_image_variant ADD CONSTRAINT uk_variant_product_hash_width " +
+                    "UNIQUE (product_id, source_hash, width)");
+            // Il vecchio indice non univoco sulle stesse colonne non serve più
+            try {
+                jdbcTemplate.execute("ALTER TABLE product_image_variant DROP INDEX idx_variant_product_hash_width");
+            } catch (Exception ignored) {
+                // Database creato dopo l'introduzione del vincolo
+            }
+            System.out.println("Image variants: removed " + duplicates.size() + " duplicates, unique constraint added.");
+        } catch (Exception e) {
+            System.out.println("Image variant dedup skipped: " + e.getMessage());
+        }
+    }
+}
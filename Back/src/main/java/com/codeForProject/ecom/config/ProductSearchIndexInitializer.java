@@ -0,0 +1,103 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.enums.OrderStatus;
+import com.codeForProject.ecom.repository.CartItemsRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import com.codeForProject.ecom.services.search.ProductSuggester;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Indici costruiti dopo la creazione dei bean ma prima dell'avvio del web server: nessuna richiesta
+// di ricerca, suggerimenti o filtri può vederli vuoti. Se la costruzione fallisce l'applicazione non parte
+@Component
+public class ProductSearchIndexInitializer implements SmartInitializingSingleton {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY_MILLIS = 2000;
+
+    private final ProductRepository productRepository;
+
+    private final CartItemsRepository cartItemsRepository;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductSuggester productSuggester;
+
+    private final ProductCatalogIndex productCatalogIndex;
+
+    public ProductSearchIndexInitializer(ProductRepository productRepository, CartItemsRepository cartItemsRepository,
+                                         ProductSearchIndex productSearchIndex, ProductSuggester productSuggester,
+                                         ProductCatalogIndex productCatalogIndex) {
+        this.productRepository = productRepository;
+        this.cartItemsRepository = cartItemsRepository;
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggester = productSuggester;
+        this.productCatalogIndex = productCatalogIndex;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                build();
+                return;
+            } catch (RuntimeException e) {
+                System.out.println("Product search index build failed (attempt " + attempt + "): " + e.getMessage());
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IllegalStateException("Product search index could not be built", e);
+                }
+                sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        productSearchIndex.clear();
+        productSuggester.clear();
+        productCatalogIndex.clear();
+
+        // Prima la popolarità, così il trie calcola i top-K una volta sola a fine caricamento
+        for (Object[] row : cartItemsRepository.sumSoldGroupByProductId(
+                List.of(OrderStatus.Placed, OrderStatus.Shipped, OrderStatus.Delivered))) {
+            productSuggester.setPopularity((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        // Scansione keyset a blocchi: il catalogo non viene mai caricato tutto in memoria
+        Long afterId = null;
+        List<ProductSummary> batch;
+        do {
+            batch = productRepository.findPageOrderById(null, afterId, PageRequest.of(0, BATCH_SIZE));
+            for (ProductSummary product : batch) {
+                productSearchIndex.index(product.id(), product.name(), product.description(), product.categoryName());
+                productSuggester.load(product.id(), product.name());
+                productCatalogIndex.put(product.id(), product.name(), product.price(), product.categoryId(), product.categoryName());
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).id();
+            }
+        } while (batch.size() == BATCH_SIZE);
+        productSuggester.finishLoad();
+
+        System.out.println("Product search index built: " + productSearchIndex.size() + " products in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the product search index", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.codeForProject.ecom.config;
+
+import com.codeForProject.ecom.services.customer.review.RatingSummaryService;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RatingSummaryRebuildRunner implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final RatingSummaryService ratingSummaryService;
+
+    public RatingSummaryRebuildRunner(JdbcTemplate jdbcTemplate, RatingSummaryService ratingSummaryService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ratingSummaryService = ratingSummaryService;
+    }
+
+    @Override
+    public void run(String... args) {
+        try {
+            // Prima esecuzione dopo l'introduzione degli aggregati: le recensioni esistenti non sono ancora contate
+            Integer summaries = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_rating_summary", Integer.class);
+            Integer reviews = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM review", Integer.class);
+            if (summaries != null && summaries == 0 && reviews != null && reviews > 0) {
+                int products = ratingSummaryService.rebuild();
+                System.out.println("Rating summaries rebuilt for " + products + " products.");
+            }
+        } catch (Exception e) {
+            System.out.println("Rating summary rebuild skipped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.codeForProject.ecom.config;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Conversione di orders.tracking_id a BINARY(16). Gira prima dell'EntityManagerFactory, quindi prima che
+// il web server accetti ordini; ogni passo controlla lo schema, così un avvio interrotto a metà riprende da dove era
+@Component
+public class TrackingIdSchemaMigration implements InitializingBean {
+
+    private static final String BINARY_TYPE = "binary(16)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TrackingIdSchemaMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Configuration
+    static class EntityManagerFactoryDependency extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependency() {
+            super(TrackingIdSchemaMigration.class);
+        }
+
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            migrate();
+        } catch (Exception e) {
+            // Lo schema resterebbe a metà: meglio non avviare l'applicazione
+            throw new IllegalStateException("Tracking id migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void migrate() {
+        // ddl-auto=update non cambia il tipo di una colonna esistente: la conversione a BINARY(16) va fatta qui
+        String columnType = columnType("tracking_id");
+        String binColumnType = columnType("tracking_id_bin");
+        if (columnType == null && binColumnType == null) {
+            // Database nuovo: la colonna la crea Hibernate
+            return;
+        }
+
+        if (columnType != null && !BINARY_TYPE.equals(columnType)) {
+            if (binColumnType == null) {
+                jdbcTemplate.execute("ALTER TABLE orders ADD COLUMN tracking_id_bin BINARY(16) NULL");
+            }
+            // Testo "xxxxxxxx-xxxx-..." o binario con padding: in entrambi i casi contano i primi 16 byte.
+            // Ripetere l'UPDATE dopo un avvio interrotto riscrive gli stessi valori
+            String converted = columnType.startsWith("char") || columnType.startsWith("varchar")
+                    ? "UNHEX(REPLACE(tracking_id, '-', ''))" : "LEFT(tracking_id, 16)";
+            int migrated = jdbcTemplate.update("UPDATE orders SET tracking_id_bin = " + converted +
+                    " WHERE tracking_id IS NOT NULL");
+            // Un solo ALTER: la tabella non resta mai senza tracking_id. Eliminare la colonna elimina anche i suoi indici
+            jdbcTemplate.execute("ALTER TABLE orders DROP COLUMN tracking_id, " +
+                    "CHANGE COLUMN tracking_id_bin tracking_id BINARY(16) NULL");
+            System.out.println("Tracking id migration: " + migrated + " orders converted from " + columnType + " to binary(16)");
+        } else if (columnType == null) {
+            jdbcTemplate.execute("ALTER TABLE orders CHANGE COLUMN tracking_id_bin tracking_id BINARY(16) NULL");
+        } else if (binColumnType != null) {
+            // tracking_id è già binario: la colonna di appoggio è un residuo
+            jdbcTemplate.execute("ALTER TABLE orders DROP COLUMN tracking_id_bin");
+        }
+
+        if (!hasIndex("uk_orders_tracking_id")) {
+            jdbcTemplate.execute("ALTER TABLE orders ADD CONSTRAINT uk_orders_tracking_id UNIQUE (tracking_id)");
+        }
+    }
+
+    private String columnType(String column) {
+        List<String> types = jdbcTemplate.queryForList(
+                "SELECT LOWER(COLUMN_TYPE) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                        "AND TABLE_NAME = 'orders' AND COLUMN_NAME = ?", String.class, column);
+        return types.isEmpty() ? null : types.get(0);
+    }
+
+    private boolean hasIndex(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = DATABASE() " +
+                        "AND TABLE_NAME = 'orders' AND INDEX_NAME = ?", Integer.class, name);
+        return count != null && count > 0;
+    }
+}
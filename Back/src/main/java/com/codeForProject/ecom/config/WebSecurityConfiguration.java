@@ -1,10 +1,13 @@
 package com.codeForProject.ecom.config;
 
+import com.codeForProject.ecom.dto.ProductPageDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -42,6 +45,7 @@ public class WebSecurityConfiguration {
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/order/trackOrder/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/images/**").permitAll()
                         .requestMatchers("/api/user/profile").authenticated()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/customer/**").hasRole("CUSTOMER")
@@ -88,7 +92,8 @@ public class WebSecurityConfiguration {
             registry.addMapping("/**")
                     .allowedOrigins("http://localhost:5173", "http://localhost:5177") // Frontend React (dev ports)
                     .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                    .allowedHeaders("*");
+                    .allowedHeaders("*")
+                    .exposedHeaders(ProductPageDto.NEXT_CURSOR_HEADER, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER);
         }
     };
     }
@@ -0,0 +1,168 @@
+package com.codeForProject.ecom.controller;
+
+import com.codeForProject.ecom.services.image.ImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@RestController
+@RequestMapping("/api/images")
+@RequiredArgsConstructor
+public class ImageController {
+
+    // Attributi della richiesta con cui il connettore NIO di Tomcat attiva il sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageService imageService;
+
+    @GetMapping("/product/{productId}")
+    public ResponseEntity<Resource> getProductImage(@PathVariable Long productId,
+                                                    @RequestParam(name = "v", required = false) String version,
+                                                    @RequestParam(name = "w", required = false) Integer width,
+                                                    @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                    HttpServletRequest request) {
+        Optional<String> optionalHash = imageService.getProductImageHash(productId);
+        if (optionalHash.isPresent() && width != null && width > 0) {
+            String hash = optionalHash.get();
+            Optional<Integer> variantWidth = imageService.findProductVariantWidth(productId, hash, width);
+            if (variantWidth.isPresent()) {
+                // ETag distinto per ogni variante, il parametro v resta l'hash dell'originale
+                String variantTag = hash + "-w" + variantWidth.get();
+                String variantVersion = hash.equals(version) ? variantTag : null;
+                return serveImage(Optional.of(variantTag), variantVersion, ifNoneMatch, request,
+                        () -> imageService.getProductVariantHash(productId, hash, variantWidth.get())
+                                .flatMap(imageService::getImageFile));
+            }
+            // Miniature non ancora pronte: si serve l'originale senza cache immutabile
+            return serveImage(optionalHash, null, ifNoneMatch, request, () -> imageService.getImageFile(hash));
+        }
+        return serveImage(optionalHash, version, ifNoneMatch, request,
+                () -> optionalHash.flatMap(imageService::getImageFile));
+    }
+
+    @GetMapping("/review/{reviewId}")
+    public ResponseEntity<Resource> getReviewImage(@PathVariable Long reviewId,
+                                                   @RequestParam(name = "v", required = false) String version,
+                                                   @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                   HttpServletRequest request) {
+        Optional<String> optionalHash = imageService.getReviewImageHash(reviewId);
+        return serveImage(optionalHash, version, ifNoneMatch, request,
+                () -> optionalHash.flatMap(imageService::getImageFile));
+    }
+
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<Resource> getUserImage(@PathVariable Integer userId,
+                                                 @RequestParam(name = "v", required = false) String version,
+                                                 @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                 HttpServletRequest request) {
+        Optional<String> optionalHash = imageService.getUserImageHash(userId);
+        return serveImage(optionalHash, version, ifNoneMatch, request,
+                () -> optionalHash.flatMap(imageService::getImageFile));
+    }
+
+    private ResponseEntity<Resource> serveImage(Optional<String> optionalHash, String version, String ifNoneMatch,
+                                                HttpServletRequest request, Supplier<Optional<Path>> loader) {
+        if (optionalHash.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String hash = optionalHash.get();
+        String etag = "\"" + hash + "\"";
+
+        // URL versionato con l'hash corrente: il browser può tenerlo in cache per sempre
+        CacheControl cacheControl = hash.equals(version)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        // Il controllo dell'ETag avviene prima di toccare il file
+        if (matchesEtag(ifNoneMatch, hash)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        Optional<Path> optionalPath = loader.get();
+        if (optionalPath.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path path = optionalPath.get();
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (size == 0) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Zero-copy: Tomcat spedisce il file con FileChannel.transferTo verso il socket, senza passare dall'heap
+        if (request.getHeader(HttpHeaders.RANGE) == null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .contentType(detectContentType(path))
+                    .contentLength(size)
+                    .build();
+        }
+
+        // Le richieste con header Range vengono servite come 206 da Spring MVC per i body di tipo Resource
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(detectContentType(path))
+                .body(new FileSystemResource(path));
+    }
+
+    private boolean matchesEtag(String ifNoneMatch, String hash) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("\"" + hash + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MediaType detectContentType(Path path) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            String guessed = URLConnection.guessContentTypeFromStream(in);
+            if (guessed != null) {
+                return MediaType.parseMediaType(guessed);
+            }
+        } catch (IOException ignore) {
+            // Fallback sotto
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.codeForProject.ecom.controller;
 
 import com.codeForProject.ecom.dto.OrderDto;
-import com.codeForProject.ecom.services.customer.cart.CartService;
+import com.codeForProject.ecom.services.tracking.OrderTrackingService;
+import com.codeForProject.ecom.services.tracking.TrackingRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,13 +18,22 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class TrackingController {
 
-    private final CartService cartService;
+    private final OrderTrackingService orderTrackingService;
 
-    @GetMapping("/order/{trackingId}")
-    public ResponseEntity<OrderDto> searchOrderByTrackingId(@PathVariable UUID trackingId) {
-        OrderDto orderDto = cartService.searchOrderByTrackingId(trackingId);
+    private final TrackingRateLimiter trackingRateLimiter;
+
+    @GetMapping({"/order/trackOrder/{trackingId}", "/order/{trackingId}"})
+    public ResponseEntity<OrderDto> searchOrderByTrackingId(@PathVariable UUID trackingId, HttpServletRequest request) {
+        // Endpoint pubblico: il limite per IP arriva prima della cache, così nemmeno i tentativi a vuoto sono gratuiti
+        long retryAfter = trackingRateLimiter.tryAcquire(request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build();
+        }
+        OrderDto orderDto = orderTrackingService.findByTrackingId(trackingId);
         if (orderDto == null) {
-            ResponseEntity.notFound().build();
+            return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(orderDto);
     }
@@ -1,27 +1,63 @@
 package com.codeForProject.ecom.controller.admin;
 
+import com.codeForProject.ecom.dto.BulkProductUpdateDto;
+import com.codeForProject.ecom.dto.BulkProductUpdateResultDto;
 import com.codeForProject.ecom.dto.FAQDto;
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductImportResultDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
 import com.codeForProject.ecom.entity.Product;
 import com.codeForProject.ecom.services.admin.adminproduct.AdminProductService;
+import com.codeForProject.ecom.services.admin.adminproduct.ProductBulkUpdateService;
 import com.codeForProject.ecom.services.admin.faq.FAQService;
+import com.codeForProject.ecom.services.admin.productimport.ProductImportService;
+import com.codeForProject.ecom.services.customer.review.RatingSummaryService;
+import com.codeForProject.ecom.services.inventory.InventoryService;
+import com.codeForProject.ecom.services.product.ProductExportService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/admin")
 @RequiredArgsConstructor
 public class AdminProductController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final AdminProductService adminProductService;
 
     private final FAQService faqService;
 
+    private final ProductExportService productExportService;
+
+    private final ProductImportService productImportService;
+
+    private final ProductBulkUpdateService productBulkUpdateService;
+
+    private final RatingSummaryService ratingSummaryService;
+
+    private final InventoryService inventoryService;
+
+    @Value("${app.export.request-timeout-ms:1800000}")
+    private long exportTimeoutMillis;
+
     @PostMapping("/product")
     public ResponseEntity<ProductDto> addProduct(@ModelAttribute ProductDto productDto) throws IOException {
         ProductDto productDto1 = adminProductService.addProduct(productDto);
@@ -29,15 +65,86 @@ public class AdminProductController {
     }
 
     @GetMapping("/products")
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<ProductDto> productDtos = adminProductService.getAllProducts();
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getAllProducts(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) String sort) {
+        return pageResponse(adminProductService.getAllProducts(cursor, limit, sort));
+    }
+
+    // Carico (delta positivo) o scarico della giacenza; il primo carico attiva il controllo delle quantità
+    @PostMapping("/product/{productId}/stock")
+    public ResponseEntity<Map<String, Object>> adjustStock(@PathVariable Long productId, @RequestParam long delta) {
+        long applied = inventoryService.adjustStock(productId, delta);
+        Map<String, Object> result = stockResponse(productId);
+        result.put("applied", applied);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/product/{productId}/stock")
+    public ResponseEntity<Map<String, Object>> getStock(@PathVariable Long productId) {
+        return ResponseEntity.ok(stockResponse(productId));
+    }
+
+    // Modifica massiva di prezzo o categoria sui prodotti che rispettano il filtro
+    @PostMapping("/products/bulk-update")
+    public ResponseEntity<BulkProductUpdateResultDto> bulkUpdateProducts(@RequestBody BulkProductUpdateDto request) {
+        return ResponseEntity.ok(productBulkUpdateService.bulkUpdate(request));
+    }
+
+    // Ricalcolo completo di media e conteggio recensioni, da usare dopo modifiche fatte direttamente sul database
+    @PostMapping("/products/rating-summary/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRatingSummaries() {
+        return ResponseEntity.ok(Map.of("products", ratingSummaryService.rebuild()));
+    }
+
+    // Import massivo da CSV o NDJSON: il formato si deduce dall'estensione se non indicato
+    @PostMapping("/products/import")
+    public ResponseEntity<ProductImportResultDto> importProducts(@RequestParam("file") MultipartFile file,
+                                                                 @RequestParam(required = false) String format) throws IOException {
+        String resolvedFormat = format;
+        if (resolvedFormat == null) {
+            String filename = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+            resolvedFormat = filename.endsWith(".csv") ? "csv" : "ndjson";
+        }
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.ok(productImportService.importProducts(content, resolvedFormat));
+        }
+    }
+
+    // Export completo del catalogo in NDJSON, in streaming: l'heap non cresce con il numero di prodotti
+    @GetMapping("/products/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "false") boolean gzip,
+                                                                HttpServletRequest request) {
+        // Timeout lungo solo per l'export: le altre richieste asincrone tengono quello di default
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncRequest != null) {
+            asyncRequest.setTimeout(exportTimeoutMillis);
+        }
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024);
+                productExportService.exportNdjson(gzipOut);
+                gzipOut.finish();
+            } else {
+                productExportService.exportNdjson(out);
+            }
+        };
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"products.ndjson" + (gzip ? ".gz" : "") + "\"");
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(body);
     }
 
     @GetMapping("/search/{name}")
-    public ResponseEntity<List<ProductDto>> getAllProductByName(@PathVariable String name) {
-        List<ProductDto> productDtos = adminProductService.getAllProductByName(name);
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getAllProductByName(@PathVariable String name,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String sort) {
+        return pageResponse(adminProductService.getAllProductByName(name, cursor, limit, sort));
     }
 
     @DeleteMapping("/product/{productId}")
@@ -68,6 +175,11 @@ public class AdminProductController {
         return ResponseEntity.notFound().build();
     }
 
+    @GetMapping("/cache/products/stats")
+    public ResponseEntity<Map<String, Object>> getProductCacheStats() {
+        return ResponseEntity.ok(adminProductService.getProductCacheStats());
+    }
+
     @GetMapping("/product/{productId}")
     public ResponseEntity<ProductDto> getProductById(@PathVariable Long productId) {
         ProductDto productDto = adminProductService.getProductById(productId);
@@ -88,4 +200,20 @@ public class AdminProductController {
         }
     }
 
+    private ResponseEntity<List<ProductDto>> pageResponse(ProductPageDto page) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getProducts());
+    }
+
+    // available è null per i prodotti senza giacenza registrata, che non hanno limiti
+    private Map<String, Object> stockResponse(Long productId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productId", productId);
+        result.put("available", inventoryService.getAvailable(productId));
+        return result;
+    }
+
 }
@@ -1,16 +1,28 @@
 package com.codeForProject.ecom.controller.customer;
 
 import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartBatchDto;
+import com.codeForProject.ecom.dto.CartOperationDto;
 import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.dto.OrderPageDto;
 import com.codeForProject.ecom.dto.PlaceOrderDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.dto.WaitingRoomDto;
+import com.codeForProject.ecom.enums.CartOperationType;
 import com.codeForProject.ecom.services.customer.cart.CartService;
+import com.codeForProject.ecom.services.customer.waitingroom.WaitingRoomService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -20,13 +32,25 @@ public class CartController {
 
     private final CartService cartService;
 
+    private final WaitingRoomService waitingRoomService;
+
     @PostMapping("/cart")
     public ResponseEntity<?> addProductToCart(@RequestBody AddProductInCartDto addProductInCartDto, Authentication authentication) {
         // Imposta l'userId dal JWT per coerenza e sicurezza
         Jwt jwt = (Jwt) authentication.getPrincipal();
         String keycloakId = jwt.getSubject();
         addProductInCartDto.setUserId(keycloakId);
-        return cartService.addProductToCart(addProductInCartDto);
+        WaitingRoomDto waiting = waitingRoomService.admit(keycloakId, addProductInCartDto.getProductId());
+        if (waiting != null) {
+            return queued(waiting);
+        }
+        try {
+            return cartService.addProductToCart(addProductInCartDto);
+        } catch (DataIntegrityViolationException e) {
+            // Stesso prodotto aggiunto in parallelo da un'altra scheda: la transazione del servizio è già annullata,
+            // in una nuova si legge il carrello, che contiene già la riga
+            return ResponseEntity.status(HttpStatus.OK).body(cartService.getCartByUserId(keycloakId));
+        }
     }
 
     @GetMapping("/cart")
@@ -40,25 +64,80 @@ public class CartController {
     // Endpoint coupon rimosso
 
     @PostMapping("/addition")
-    public ResponseEntity<OrderDto> increaseProductQuantity(@RequestBody AddProductInCartDto addProductInCartDto) {
+    public ResponseEntity<?> increaseProductQuantity(@RequestBody AddProductInCartDto addProductInCartDto,
+                                                     Authentication authentication) {
+        // Il carrello è sempre quello dell'utente autenticato, non quello indicato nel body
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        addProductInCartDto.setUserId(jwt.getSubject());
+        WaitingRoomDto waiting = waitingRoomService.admit(jwt.getSubject(), addProductInCartDto.getProductId());
+        if (waiting != null) {
+            return queued(waiting);
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(cartService.increaseProductQuantity(addProductInCartDto));
     }
 
     @PostMapping("/deduction")
-    public ResponseEntity<OrderDto> decreaseProductQuantity(@RequestBody AddProductInCartDto addProductInCartDto) {
+    public ResponseEntity<OrderDto> decreaseProductQuantity(@RequestBody AddProductInCartDto addProductInCartDto,
+                                                            Authentication authentication) {
+        // Il carrello è sempre quello dell'utente autenticato, non quello indicato nel body
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        addProductInCartDto.setUserId(jwt.getSubject());
         return ResponseEntity.status(HttpStatus.CREATED).body(cartService.decreaseProductQuantity(addProductInCartDto));
     }
 
+    // Più operazioni sul carrello in una richiesta, es. "sposta la wishlist nel carrello"
+    @PostMapping("/cart/batch")
+    public ResponseEntity<?> applyCartOperations(@RequestBody CartBatchDto cartBatchDto,
+                                                 Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        cartBatchDto.setUserId(jwt.getSubject());
+        if (cartBatchDto.getOperations() != null) {
+            for (CartOperationDto operation : cartBatchDto.getOperations()) {
+                // Le rimozioni liberano pezzi e non passano dalla sala d'attesa
+                if (operation == null || operation.getType() == CartOperationType.REMOVE) {
+                    continue;
+                }
+                WaitingRoomDto waiting = waitingRoomService.admit(jwt.getSubject(), operation.getProductId());
+                if (waiting != null) {
+                    return queued(waiting);
+                }
+            }
+        }
+        return ResponseEntity.ok(cartService.applyCartOperations(cartBatchDto));
+    }
+
     @PostMapping("/placeOrder")
-    public ResponseEntity<OrderDto> placeOrder(@RequestBody PlaceOrderDto placeOrderDto) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(cartService.placeOrder(placeOrderDto));
+    public ResponseEntity<OrderDto> placeOrder(@RequestBody PlaceOrderDto placeOrderDto,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                               Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        placeOrderDto.setUserId(jwt.getSubject());
+        placeOrderDto.setIdempotencyKey(idempotencyKey);
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(cartService.placeOrder(placeOrderDto));
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+            if (idempotencyKey == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            // Stessa chiave inviata due volte in parallelo: la seconda richiesta restituisce l'ordine della prima
+            return ResponseEntity.status(HttpStatus.CREATED).body(cartService.placeOrder(placeOrderDto));
+        }
     }
 
     @GetMapping("/myorders")
-    public ResponseEntity<List<OrderDto>> getMyPlacedOrders(Authentication authentication) {
+    public ResponseEntity<List<OrderDto>> getMyPlacedOrders(Authentication authentication,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
         String keycloakId = jwt.getSubject();
-        return ResponseEntity.ok(cartService.getMyPlacedOrders(keycloakId));
+        OrderPageDto page = cartService.getMyPlacedOrders(keycloakId, cursor, limit, from, to);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getOrders());
     }
 
     @DeleteMapping("/cart/{itemId}")
@@ -77,4 +156,11 @@ public class CartController {
         return ResponseEntity.noContent().build();
     }
 
+    // Risposta immediata dalla memoria: il client riprova dopo Retry-After, mai oltre 10 secondi per aggiornare la posizione
+    private static ResponseEntity<WaitingRoomDto> queued(WaitingRoomDto waiting) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, Math.min(10, waiting.getEtaSeconds()))))
+                .body(waiting);
+    }
+
 }
@@ -2,13 +2,20 @@ package com.codeForProject.ecom.controller.customer;
 
 import com.codeForProject.ecom.dto.ProductDetailDto;
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductFacetPageDto;
+import com.codeForProject.ecom.dto.ProductFilterDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
 import com.codeForProject.ecom.services.customer.CustomerProductService;
+import com.codeForProject.ecom.services.product.CatalogSnapshot;
+import com.codeForProject.ecom.services.product.CatalogVersion;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -19,31 +26,144 @@ public class CustomerProductController {
 
     private final CustomerProductService customerProductService;
 
+    private final CatalogVersion catalogVersion;
+
+    // Prima pagina senza parametri: servita dallo snapshot già serializzato
+    @GetMapping(value = "/products", params = {"!cursor", "!limit", "!sort", "!categoryId", "!minPrice", "!maxPrice"})
+    public ResponseEntity<byte[]> getDefaultProductPage(WebRequest webRequest) {
+        return snapshotResponse(customerProductService.getDefaultPageSnapshot(null), webRequest);
+    }
+
     @GetMapping("/products")
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<ProductDto> productDtos = customerProductService.getAllProducts();
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getAllProducts(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) String sort,
+                                                           @RequestParam(required = false) Long categoryId,
+                                                           @RequestParam(required = false) Long minPrice,
+                                                           @RequestParam(required = false) Long maxPrice,
+                                                           WebRequest webRequest) {
+        // L'ETag si legge prima di calcolare la risposta: una modifica concorrente produce al più un ETag già vecchio
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        ProductFilterDto filter = new ProductFilterDto(categoryId, minPrice, maxPrice);
+        if (filter.isEmpty()) {
+            return pageResponse(customerProductService.getAllProducts(cursor, limit, sort), etag);
+        }
+        ProductFacetPageDto page = customerProductService.browseProducts(filter, cursor, limit, sort, false);
+        return pageResponse(new ProductPageDto(page.getProducts(), page.getNextCursor()), etag);
+    }
+
+    // Stessi filtri di /products, con le faccette nel body accanto alla pagina
+    @GetMapping("/products/facets")
+    public ResponseEntity<ProductFacetPageDto> getProductFacets(@RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String sort,
+                                                                @RequestParam(required = false) Long categoryId,
+                                                                @RequestParam(required = false) Long minPrice,
+                                                                @RequestParam(required = false) Long maxPrice,
+                                                                WebRequest webRequest) {
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        ProductFilterDto filter = new ProductFilterDto(categoryId, minPrice, maxPrice);
+        ProductFacetPageDto page = customerProductService.browseProducts(filter, cursor, limit, sort, true);
+        ResponseEntity.BodyBuilder builder = revalidated(etag);
+        if (page.getNextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page);
     }
 
     @GetMapping("/search/{name}")
-    public ResponseEntity<List<ProductDto>> getAllProductByName(@PathVariable String name) {
-        List<ProductDto> productDtos = customerProductService.searchProductByTitle(name);
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getAllProductByName(@PathVariable String name,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String sort,
+                                                                WebRequest webRequest) {
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return pageResponse(customerProductService.searchProductByTitle(name, cursor, limit, sort), etag);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Long>> suggestProducts(@RequestParam("q") String query,
+                                                      @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(customerProductService.suggestProductIds(query, limit));
     }
 
     @GetMapping("/product/{productId}")
-    public ResponseEntity<ProductDetailDto> getProductDetailById(@PathVariable Long productId) {
+    public ResponseEntity<ProductDetailDto> getProductDetailById(@PathVariable Long productId, WebRequest webRequest) {
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
         ProductDetailDto productDetailDto = customerProductService.getProductDetailById(productId);
         if (productDetailDto == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(productDetailDto);
+        return revalidated(etag).body(productDetailDto);
+    }
+
+    @GetMapping(value = "/products/category/{categoryName}", params = {"!cursor", "!limit", "!sort"})
+    public ResponseEntity<byte[]> getDefaultCategoryPage(@PathVariable String categoryName, WebRequest webRequest) {
+        return snapshotResponse(customerProductService.getDefaultPageSnapshot(categoryName), webRequest);
     }
 
     @GetMapping("/products/category/{categoryName}")
-    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable String categoryName) {
-        List<ProductDto> productDtos = customerProductService.getProductsByCategory(categoryName);
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable String categoryName,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  @RequestParam(required = false) String sort,
+                                                                  WebRequest webRequest) {
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return pageResponse(customerProductService.getProductsByCategory(categoryName, cursor, limit, sort), etag);
+    }
+
+    // Il body resta una lista di prodotti; il cursore della pagina successiva viaggia nell'header
+    private ResponseEntity<List<ProductDto>> pageResponse(ProductPageDto page, String etag) {
+        ResponseEntity.BodyBuilder builder = revalidated(etag);
+        if (page.getNextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getProducts());
+    }
+
+    // Pagine di default servite come byte già pronti (gzip se il client lo accetta), con lo stesso JSON della lista
+    private ResponseEntity<byte[]> snapshotResponse(CatalogSnapshot snapshot, WebRequest webRequest) {
+        String etag = snapshot.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        ResponseEntity.BodyBuilder builder = revalidated(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (snapshot.nextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, snapshot.nextCursor());
+        }
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return builder.body(snapshot.json());
+    }
+
+    // Il browser tiene la risposta ma la rivalida sempre: se il catalogo non è cambiato riceve un 304 senza body
+    private ResponseEntity.BodyBuilder revalidated(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate());
+    }
+
+    // Anche il 304 ripete Cache-Control, altrimenti prevarrebbe il no-store predefinito di Spring Security
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate()).build();
     }
 
 }
@@ -1,7 +1,9 @@
 package com.codeForProject.ecom.controller.customer;
 
 import com.codeForProject.ecom.dto.OrderedProductsResponseDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
 import com.codeForProject.ecom.dto.ReviewDto;
+import com.codeForProject.ecom.dto.ReviewPageDto;
 import com.codeForProject.ecom.services.customer.review.ReviewService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -9,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -22,6 +25,18 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.getOrderedProductsDetailsByOrderId(orderId));
     }
 
+    @GetMapping("/product/{productId}/reviews")
+    public ResponseEntity<List<ReviewDto>> getProductReviews(@PathVariable Long productId,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit) {
+        ReviewPageDto page = reviewService.getProductReviews(productId, cursor, limit);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(ProductPageDto.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getReviews());
+    }
+
     @PostMapping("/review")
     public ResponseEntity<?> giveReview(@ModelAttribute ReviewDto reviewDto) throws IOException {
         ReviewDto reviewDto1 = reviewService.giveReview(reviewDto);
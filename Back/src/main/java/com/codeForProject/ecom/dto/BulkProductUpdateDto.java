@@ -0,0 +1,30 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Filtro (tutti i criteri in AND, null = ignorato) e modifica da applicare ai prodotti selezionati
+@Data
+public class BulkProductUpdateDto {
+
+    private Long categoryId;
+
+    private List<Long> productIds;
+
+    private Long minPrice;
+
+    private Long maxPrice;
+
+    // Obbligatorio senza altri filtri: conferma che la modifica riguarda tutto il catalogo
+    private Boolean all;
+
+    // Variazione percentuale del prezzo, es. -20 per uno sconto del 20%
+    private Double pricePercent;
+
+    // Variazione assoluta del prezzo, es. -500
+    private Long priceDelta;
+
+    private Long targetCategoryId;
+
+}
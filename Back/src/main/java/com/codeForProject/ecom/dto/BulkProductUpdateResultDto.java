@@ -0,0 +1,14 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkProductUpdateResultDto {
+
+    private long updated;
+
+    private int chunks;
+
+    private long durationMillis;
+
+}
@@ -0,0 +1,15 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Operazioni applicate in ordine, tutte nella stessa transazione
+@Data
+public class CartBatchDto {
+
+    private String userId;
+
+    private List<CartOperationDto> operations;
+
+}
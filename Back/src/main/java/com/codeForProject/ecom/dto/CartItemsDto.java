@@ -15,7 +15,7 @@ public class CartItemsDto {
 
     private String productName;
 
-    private byte[] returnedImg;
+    private String imageUrl;
 
     private String categoryName;
 
@@ -0,0 +1,16 @@
+package com.codeForProject.ecom.dto;
+
+import com.codeForProject.ecom.enums.CartOperationType;
+import lombok.Data;
+
+@Data
+public class CartOperationDto {
+
+    private CartOperationType type;
+
+    private Long productId;
+
+    // Solo per SET_QUANTITY
+    private Long quantity;
+
+}
@@ -0,0 +1,17 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderPageDto {
+
+    private List<OrderDto> orders;
+
+    // null quando non ci sono altri ordini
+    private String nextCursor;
+
+}
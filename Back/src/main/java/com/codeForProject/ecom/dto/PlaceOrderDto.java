@@ -11,4 +11,7 @@ public class PlaceOrderDto {
 
     private String orderDescription;
 
+    // Dall'header Idempotency-Key, facoltativo
+    private String idempotencyKey;
+
 }
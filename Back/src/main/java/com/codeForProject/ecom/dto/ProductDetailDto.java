@@ -10,8 +10,11 @@ public class ProductDetailDto {
 
     private ProductDto productDto;
 
+    // Solo la prima pagina: le successive da /api/customer/product/{id}/reviews
     private List<ReviewDto> reviewDtoList;
 
+    private String nextReviewsCursor;
+
     private List<FAQDto> faqDtoList;
 
 }
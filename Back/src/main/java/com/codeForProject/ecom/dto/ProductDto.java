@@ -1,5 +1,6 @@
 package com.codeForProject.ecom.dto;
 
+import com.codeForProject.ecom.enums.ImageVariantStatus;
 import jakarta.persistence.Column;
 import jakarta.persistence.Lob;
 import lombok.Data;
@@ -16,12 +17,19 @@ public class ProductDto {
 
     private String description;
 
-    private byte[] byteImg;
+    private String imageUrl;
+
+    private ImageVariantStatus imageStatus;
 
     private Long categoryId;
 
     private String categoryName;
 
+    private Long reviewCount;
+
+    // Media con un decimale, null se il prodotto non ha recensioni
+    private Double averageRating;
+
     private Long quantity;
 
     private MultipartFile img;
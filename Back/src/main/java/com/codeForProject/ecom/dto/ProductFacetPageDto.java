@@ -0,0 +1,19 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Risposta di /api/customer/products con facets=true: pagina e faccette nella stessa risposta
+@Data
+@AllArgsConstructor
+public class ProductFacetPageDto {
+
+    private List<ProductDto> products;
+
+    private String nextCursor;
+
+    private ProductFacetsDto facets;
+
+}
@@ -0,0 +1,43 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductFacetsDto {
+
+    // Prodotti che rispettano tutti i filtri
+    private long total;
+
+    private List<CategoryFacet> categories;
+
+    private List<PriceBucket> priceBuckets;
+
+    @Data
+    @AllArgsConstructor
+    public static class CategoryFacet {
+
+        private Long categoryId;
+
+        private String categoryName;
+
+        private long count;
+
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class PriceBucket {
+
+        private long from;
+
+        private long to;
+
+        private long count;
+
+    }
+
+}
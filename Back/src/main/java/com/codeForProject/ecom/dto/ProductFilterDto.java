@@ -0,0 +1,22 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFilterDto {
+
+    private Long categoryId;
+
+    private Long minPrice;
+
+    private Long maxPrice;
+
+    public boolean isEmpty() {
+        return categoryId == null && minPrice == null && maxPrice == null;
+    }
+
+}
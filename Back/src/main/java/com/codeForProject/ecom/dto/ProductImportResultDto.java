@@ -0,0 +1,33 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProductImportResultDto {
+
+    private long rowsRead;
+
+    private long imported;
+
+    private long failed;
+
+    private long durationMillis;
+
+    // Solo i primi errori: con file enormi la lista completa non starebbe in una risposta
+    private List<RowError> errors = new ArrayList<>();
+
+    private boolean errorsTruncated;
+
+    @Data
+    public static class RowError {
+
+        private final long row;
+
+        private final String message;
+
+    }
+
+}
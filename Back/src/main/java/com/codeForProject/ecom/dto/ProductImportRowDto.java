@@ -0,0 +1,23 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.Data;
+
+// Riga del file di import: categoria per id o per nome, immagine per hash del blob store o per percorso
+@Data
+public class ProductImportRowDto {
+
+    private String name;
+
+    private Long price;
+
+    private String description;
+
+    private Long categoryId;
+
+    private String category;
+
+    private String imageHash;
+
+    private String imagePath;
+
+}
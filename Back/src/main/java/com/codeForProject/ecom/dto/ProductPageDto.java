@@ -0,0 +1,20 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductPageDto {
+
+    // Header con cui i controller espongono il cursore della pagina successiva
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private List<ProductDto> products;
+
+    // null quando non ci sono altre pagine
+    private String nextCursor;
+
+}
@@ -0,0 +1,40 @@
+package com.codeForProject.ecom.dto;
+
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import com.codeForProject.ecom.services.image.ImageUtils;
+
+// Proiezione usata dalle liste prodotti: solo le colonne mostrate, categoria in join e nessun blob immagine
+public record ProductSummary(Long id,
+                             String name,
+                             Long price,
+                             String description,
+                             String imageHash,
+                             ImageVariantStatus imageStatus,
+                             Long categoryId,
+                             String categoryName,
+                             Long reviewCount,
+                             Long ratingSum) {
+
+    public ProductDto toDto() {
+        ProductDto productDto = new ProductDto();
+        productDto.setId(id);
+        productDto.setName(name);
+        productDto.setPrice(price);
+        productDto.setDescription(description);
+        productDto.setImageUrl(ImageUtils.productImageUrl(id, imageHash));
+        productDto.setImageStatus(imageStatus);
+        productDto.setCategoryId(categoryId);
+        productDto.setCategoryName(categoryName);
+        productDto.setReviewCount(reviewCount == null ? 0L : reviewCount);
+        productDto.setAverageRating(averageRating());
+        return productDto;
+    }
+
+    public Double averageRating() {
+        if (reviewCount == null || reviewCount == 0 || ratingSum == null) {
+            return null;
+        }
+        return Math.round(ratingSum * 10.0 / reviewCount) / 10.0;
+    }
+
+}
@@ -19,7 +19,7 @@ public class ReviewDto {
 
     private MultipartFile img;
 
-    private byte[] returnedImg;
+    private String imageUrl;
 
     private String userId;
 
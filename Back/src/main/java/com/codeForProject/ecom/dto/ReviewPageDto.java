@@ -0,0 +1,17 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ReviewPageDto {
+
+    private List<ReviewDto> reviews;
+
+    // null quando non ci sono altre recensioni
+    private String nextCursor;
+
+}
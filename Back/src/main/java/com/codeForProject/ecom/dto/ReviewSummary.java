@@ -0,0 +1,26 @@
+package com.codeForProject.ecom.dto;
+
+import com.codeForProject.ecom.services.image.ImageUtils;
+
+// Proiezione delle recensioni: nome utente in join, nessuna entità User caricata
+public record ReviewSummary(Long id,
+                            Long rating,
+                            String description,
+                            String imgHash,
+                            Long productId,
+                            Integer userId,
+                            String username) {
+
+    public ReviewDto toDto() {
+        ReviewDto reviewDto = new ReviewDto();
+        reviewDto.setId(id);
+        reviewDto.setRating(rating);
+        reviewDto.setDescription(description);
+        reviewDto.setImageUrl(ImageUtils.reviewImageUrl(id, imgHash));
+        reviewDto.setProductId(productId);
+        reviewDto.setUserId(String.valueOf(userId));
+        reviewDto.setUsername(username);
+        return reviewDto;
+    }
+
+}
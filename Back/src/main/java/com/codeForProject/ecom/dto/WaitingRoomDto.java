@@ -0,0 +1,18 @@
+package com.codeForProject.ecom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Risposta per chi è in coda su un prodotto molto richiesto: si riprova dopo Retry-After
+@Data
+@AllArgsConstructor
+public class WaitingRoomDto {
+
+    private Long productId;
+
+    // 1 = prossimo ad entrare
+    private long position;
+
+    private long etaSeconds;
+
+}
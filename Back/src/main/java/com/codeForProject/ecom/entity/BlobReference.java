@@ -0,0 +1,21 @@
+package com.codeForProject.ecom.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Contatore dei riferimenti a un blob dell'archivio su disco
+@Entity
+@Data
+@Table(name = "blob_reference")
+public class BlobReference {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long refCount;
+
+    private Long size;
+
+}
@@ -1,6 +1,7 @@
 package com.codeForProject.ecom.entity;
 
 import com.codeForProject.ecom.dto.CartItemsDto;
+import com.codeForProject.ecom.services.image.ImageUtils;
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
@@ -9,6 +10,8 @@ import org.hibernate.annotations.OnDeleteAction;
 
 @Entity
 @Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_cart_items_order_product",
+        columnNames = {"order_id", "product_id"}))
 public class CartItems {
 
     @Id
@@ -17,7 +20,7 @@ public class CartItems {
 
     private Long price;
 
-    // Quantità per item nel carrello (sempre 1 nel tuo ecommerce)
+    // Quantità per item nel carrello
     private Long quantity;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -43,7 +46,7 @@ public class CartItems {
         cartItemsDto.setProductId(product.getId());
         cartItemsDto.setUserId((long) user.getId());
         cartItemsDto.setProductName(product.getName());
-        cartItemsDto.setReturnedImg(product.getImage());
+        cartItemsDto.setImageUrl(ImageUtils.productImageUrl(product.getId(), product.getImageHash()));
         cartItemsDto.setCategoryName(product.getCategory() != null ? product.getCategory().getName() : null);
         cartItemsDto.setQuantity(quantity != null ? quantity : 1L);
         return cartItemsDto;
@@ -0,0 +1,29 @@
+package com.codeForProject.ecom.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+// Vendita non ancora riportata su product_inventory: scritta con l'ordine, cancellata dalla riconciliazione
+@Entity
+@Data
+@Table(name = "inventory_movement")
+public class InventoryMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(nullable = false)
+    private Long quantity;
+
+    private Date createdAt;
+
+}
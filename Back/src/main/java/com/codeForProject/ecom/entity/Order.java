@@ -4,6 +4,9 @@ import com.codeForProject.ecom.dto.OrderDto;
 import com.codeForProject.ecom.enums.OrderStatus;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.util.Date;
 import java.util.List;
@@ -11,7 +14,13 @@ import java.util.UUID;
 
 @Entity
 @Data
-@Table(name = "orders")
+@Table(name = "orders", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_orders_active_cart_user", columnNames = "active_cart_user_id"),
+        @UniqueConstraint(name = "uk_orders_user_idempotency_key", columnNames = {"user_id", "idempotency_key"}),
+        @UniqueConstraint(name = "uk_orders_tracking_id", columnNames = "tracking_id")
+}, indexes = {
+        @Index(name = "idx_orders_user_id", columnList = "user_id, id")
+})
 public class Order {
 
     @Id
@@ -32,8 +41,23 @@ public class Order {
 
     private Long totalAmount;
 
+    // 16 byte invece del testo: indice compatto, confronti binari (vedi TrackingIdSchemaMigration)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "tracking_id", columnDefinition = "BINARY(16)")
     private UUID trackingId;
 
+    // Id utente finché l'ordine è il suo carrello (Pending), poi null: il vincolo unico impedisce due carrelli
+    private Integer activeCartUserId;
+
+    // Chiave inviata dal client alla conferma: una ripetizione restituisce lo stesso ordine
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    // Rete di sicurezza per le scritture che non sono delta atomici
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
@@ -43,6 +67,13 @@ public class Order {
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "order")
     private List<CartItems> cartItems;
 
+    @PrePersist
+    void markActiveCart() {
+        if (orderStatus == OrderStatus.Pending && activeCartUserId == null && user != null) {
+            activeCartUserId = user.getId();
+        }
+    }
+
     public OrderDto getOrderDto() {
         OrderDto orderDto = new OrderDto();
         orderDto.setId(id);
@@ -0,0 +1,44 @@
+package com.codeForProject.ecom.entity;
+
+import com.codeForProject.ecom.enums.OrderEventType;
+import com.codeForProject.ecom.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+// Evento scritto nella stessa transazione dell'ordine e consumato dai worker; le righe elaborate si cancellano
+@Entity
+@Data
+@Table(name = "order_outbox", indexes = {
+        @Index(name = "idx_outbox_status_available", columnList = "status, available_at, id")
+})
+public class OrderOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private OrderEventType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status;
+
+    private int attempts;
+
+    // Prima data utile per il prossimo tentativo
+    @Column(name = "available_at", nullable = false)
+    private Date availableAt;
+
+    private Date createdAt;
+
+    @Column(length = 500)
+    private String lastError;
+
+}
@@ -1,6 +1,8 @@
 package com.codeForProject.ecom.entity;
 
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import com.codeForProject.ecom.services.image.ImageUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -9,7 +11,10 @@ import org.hibernate.annotations.OnDeleteAction;
 
 @Entity
 @Data
-@Table(name = "product")
+@Table(name = "product", indexes = {
+        @Index(name = "idx_product_price_id", columnList = "price, id"),
+        @Index(name = "idx_product_name_id", columnList = "name, id")
+})
 public class Product {
 
     @Id
@@ -23,9 +28,12 @@ public class Product {
     @Lob
     private String description;
 
-    @Lob
-    @Column(columnDefinition = "longblob")
-    private byte[] image;
+    // SHA-256 dell'immagine: chiave nel blob store, ETag e versione dell'URL dell'immagine
+    private String imageHash;
+
+    // Stato della generazione delle miniature in background
+    @Enumerated(EnumType.STRING)
+    private ImageVariantStatus imageVariantStatus;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false) //più products in una category
     @JoinColumn(name = "category_id", nullable = false)
@@ -39,7 +47,8 @@ public class Product {
         productDto.setName(name);
         productDto.setPrice(price);
         productDto.setDescription(description);
-        productDto.setByteImg(image);
+        productDto.setImageUrl(ImageUtils.productImageUrl(id, imageHash));
+        productDto.setImageStatus(imageVariantStatus);
         productDto.setCategoryId(category.getId());
         productDto.setCategoryName(category.getName());
         return productDto;
@@ -0,0 +1,40 @@
+package com.codeForProject.ecom.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Versione ridimensionata e ricompressa dell'immagine di un prodotto, generata in background
+@Entity
+@Data
+// Una sola variante per larghezza: l'indice univoco serve anche le ricerche per prodotto e hash
+@Table(name = "product_image_variant", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_variant_product_hash_width", columnNames = {"product_id", "source_hash", "width"})
+})
+public class ProductImageVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Solo l'id: le ricerche per prodotto, hash e larghezza non usano il Product e le varianti
+    // si cancellano esplicitamente insieme ai loro blob, senza cascade dall'entità
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // Hash dell'originale da cui è stata generata: le varianti di un'immagine sostituita vengono ignorate
+    @Column(name = "source_hash", nullable = false, length = 64)
+    private String sourceHash;
+
+    private Integer width;
+
+    private Integer height;
+
+    private String contentType;
+
+    private Integer byteSize;
+
+    // Chiave del file nel blob store
+    @Column(length = 64)
+    private String blobHash;
+
+}
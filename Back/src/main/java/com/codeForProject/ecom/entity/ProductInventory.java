@@ -0,0 +1,24 @@
+package com.codeForProject.ecom.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Giacenza di un prodotto; senza riga il prodotto non ha limiti di quantità.
+// Le vendite arrivano a blocchi dalla riconciliazione, non con un UPDATE per ordine.
+@Entity
+@Data
+@Table(name = "product_inventory")
+public class ProductInventory {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    // Pezzi a magazzino non ancora venduti
+    @Column(nullable = false)
+    private Long stock;
+
+    @Column(nullable = false)
+    private Long sold;
+
+}
@@ -0,0 +1,38 @@
+package com.codeForProject.ecom.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Aggregato delle recensioni di un prodotto, aggiornato a ogni nuova recensione
+@Entity
+@Data
+@Table(name = "product_rating_summary")
+public class ProductRatingSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(nullable = false)
+    private Long reviewCount;
+
+    @Column(nullable = false)
+    private Long ratingSum;
+
+    // Istogramma delle stelle
+    @Column(nullable = false)
+    private Long stars1;
+
+    @Column(nullable = false)
+    private Long stars2;
+
+    @Column(nullable = false)
+    private Long stars3;
+
+    @Column(nullable = false)
+    private Long stars4;
+
+    @Column(nullable = false)
+    private Long stars5;
+
+}
@@ -1,6 +1,7 @@
 package com.codeForProject.ecom.entity;
 
 import com.codeForProject.ecom.dto.ReviewDto;
+import com.codeForProject.ecom.services.image.ImageUtils;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.OnDelete;
@@ -8,6 +9,9 @@ import org.hibernate.annotations.OnDeleteAction;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_review_product_id", columnList = "product_id, id")
+})
 public class Review {
 
     @Id
@@ -19,9 +23,8 @@ public class Review {
     @Lob
     private String description;
 
-    @Lob
-    @Column(columnDefinition = "longblob")
-    private byte[] img;
+    // Chiave dell'immagine nel blob store
+    private String imgHash;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id", nullable = false)
@@ -39,7 +42,7 @@ public class Review {
         reviewDto.setId(id);
         reviewDto.setRating(rating);
         reviewDto.setDescription(description);
-        reviewDto.setReturnedImg(img);
+        reviewDto.setImageUrl(ImageUtils.reviewImageUrl(id, imgHash));
         reviewDto.setProductId(product.getId());
         reviewDto.setUserId(String.valueOf(user.getId()));
         reviewDto.setUsername(user.getName());
@@ -1,6 +1,7 @@
 package com.codeForProject.ecom.entity;
 
 import com.codeForProject.ecom.enums.UserRole;
+import com.codeForProject.ecom.services.image.ImageUtils;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -37,10 +38,14 @@ public class User {
 
     private UserRole role;
 
-    @Lob
-    @Column(columnDefinition = "longblob")
-    private byte[] image;
+    // Chiave dell'immagine nel blob store
+    private String imageHash;
 
     private String img; // URL dell'immagine del profilo
 
+    // URL versionato dell'immagine nel blob store, restituito col profilo
+    public String getImageUrl() {
+        return ImageUtils.userImageUrl(id, imageHash);
+    }
+
 }
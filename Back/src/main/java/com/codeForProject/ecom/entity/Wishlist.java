@@ -1,6 +1,7 @@
 package com.codeForProject.ecom.entity;
 
 import com.codeForProject.ecom.dto.WishlistDto;
+import com.codeForProject.ecom.services.image.ImageUtils;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.OnDelete;
@@ -29,7 +30,7 @@ public class Wishlist {
 
         wishlistDto.setId(id);
         wishlistDto.setProductId(product.getId());
-        wishlistDto.setReturnedImg(product.getImage());
+        wishlistDto.setImageUrl(ImageUtils.productImageUrl(product.getId(), product.getImageHash()));
         wishlistDto.setProductName(product.getName());
         wishlistDto.setProductDescription(product.getDescription());
         wishlistDto.setPrice(product.getPrice());
@@ -0,0 +1,10 @@
+package com.codeForProject.ecom.enums;
+
+public enum CartOperationType {
+
+    ADD,
+    REMOVE,
+    // Quantità assoluta: se il prodotto non è nel carrello viene aggiunto con quella quantità
+    SET_QUANTITY
+
+}
@@ -0,0 +1,10 @@
+package com.codeForProject.ecom.enums;
+
+public enum ImageVariantStatus {
+
+    None,
+    Pending,
+    Ready,
+    Failed
+
+}
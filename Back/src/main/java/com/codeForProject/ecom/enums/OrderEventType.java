@@ -0,0 +1,7 @@
+package com.codeForProject.ecom.enums;
+
+public enum OrderEventType {
+
+    OrderPlaced
+
+}
@@ -0,0 +1,11 @@
+package com.codeForProject.ecom.enums;
+
+public enum OutboxStatus {
+
+    Pending,
+    // Preso in carico da un worker: al riavvio torna Pending
+    Processing,
+    // Tentativi esauriti, resta in tabella per l'analisi
+    Failed
+
+}
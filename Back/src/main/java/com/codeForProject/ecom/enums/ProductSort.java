@@ -0,0 +1,24 @@
+package com.codeForProject.ecom.enums;
+
+import com.codeForProject.ecom.exceptions.ValidationException;
+
+public enum ProductSort {
+
+    ID,
+    PRICE,
+    NAME,
+    // Solo per la ricerca full-text: punteggio dell'indice in memoria
+    RELEVANCE;
+
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        try {
+            return ProductSort.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unsupported sort: " + value);
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.codeForProject.ecom.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class OutOfStockException extends RuntimeException {
+
+    public OutOfStockException(Long productId) {
+        super("Product " + productId + " is out of stock");
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.BlobReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface BlobReferenceRepository extends JpaRepository<BlobReference, String> {
+
+    // Upsert atomico: nessuna lettura prima dell'incremento
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO blob_reference (hash, ref_count, size) VALUES (:hash, 1, :size) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int increment(@Param("hash") String hash, @Param("size") long size);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BlobReference b SET b.refCount = b.refCount - 1 WHERE b.hash = :hash AND b.refCount > 0")
+    int decrement(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM BlobReference b WHERE b.hash = :hash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+}
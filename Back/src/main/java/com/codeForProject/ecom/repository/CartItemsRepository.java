@@ -3,6 +3,9 @@ package com.codeForProject.ecom.repository;
 import com.codeForProject.ecom.entity.CartItems;
 import com.codeForProject.ecom.enums.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -19,4 +22,23 @@ public interface CartItemsRepository extends JpaRepository<CartItems, Long> {
     // Elimina tutti gli items per un ordine e utente specifico
     void deleteAllByOrderIdAndUserId(Long orderId, Long userId);
 
+    // Variazione atomica della quantità, mai sotto un pezzo
+    @Modifying
+    @Query("UPDATE CartItems ci SET ci.quantity = COALESCE(ci.quantity, 1) + :delta " +
+            "WHERE ci.id = :itemId AND ci.order.id = :orderId AND COALESCE(ci.quantity, 1) + :delta >= 1")
+    int changeQuantity(@Param("itemId") Long itemId, @Param("orderId") Long orderId, @Param("delta") long delta);
+
+    // Svuota il carrello con un solo DELETE, senza caricare le righe
+    @Modifying
+    @Query("DELETE FROM CartItems ci WHERE ci.order.id = :orderId")
+    int deleteAllByOrderIdInBulk(@Param("orderId") Long orderId);
+
+    // Popolarità dei prodotti: pezzi venduti (righe [productId, quantità]). Gli ordini con un evento ancora
+    // nell'outbox sono esclusi: li conterà OrderPopularityHandler quando l'evento verrà elaborato
+    @Query("SELECT ci.product.id, SUM(COALESCE(ci.quantity, 1)) FROM CartItems ci JOIN ci.order o " +
+            "WHERE o.orderStatus IN :statuses " +
+            "AND NOT EXISTS (SELECT 1 FROM OrderOutboxEvent e WHERE e.orderId = o.id) " +
+            "GROUP BY ci.product.id")
+    List<Object[]> sumSoldGroupByProductId(@Param("statuses") List<OrderStatus> statuses);
+
 }
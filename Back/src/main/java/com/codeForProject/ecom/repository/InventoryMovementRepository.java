@@ -0,0 +1,21 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.InventoryMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
+
+    @Query("SELECT m FROM InventoryMovement m ORDER BY m.id")
+    List<InventoryMovement> findOldest(Pageable pageable);
+
+    // Vendite non ancora riconciliate per prodotto (righe [productId, quantità])
+    @Query("SELECT m.productId, SUM(m.quantity) FROM InventoryMovement m GROUP BY m.productId")
+    List<Object[]> sumGroupByProductId();
+
+}
@@ -0,0 +1,40 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.OrderOutboxEvent;
+import com.codeForProject.ecom.enums.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    @Query("SELECT e.id FROM OrderOutboxEvent e WHERE e.status = :status AND e.availableAt <= :now ORDER BY e.id")
+    List<Long> findReadyIds(@Param("status") OutboxStatus status, @Param("now") Date now, Pageable pageable);
+
+    // Passaggio di stato condizionale: solo chi lo esegue per primo prende in carico l'evento
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrderOutboxEvent e SET e.status = :to WHERE e.id = :id AND e.status = :from")
+    int transition(@Param("id") Long id, @Param("from") OutboxStatus from, @Param("to") OutboxStatus to);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrderOutboxEvent e SET e.status = :to WHERE e.status = :from")
+    int transitionAll(@Param("from") OutboxStatus from, @Param("to") OutboxStatus to);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrderOutboxEvent e SET e.status = :status, e.attempts = :attempts, e.availableAt = :availableAt, " +
+            "e.lastError = :lastError WHERE e.id = :id")
+    int reschedule(@Param("id") Long id, @Param("status") OutboxStatus status, @Param("attempts") int attempts,
+                   @Param("availableAt") Date availableAt, @Param("lastError") String lastError);
+
+}
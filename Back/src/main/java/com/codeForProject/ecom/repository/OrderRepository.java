@@ -2,7 +2,11 @@ package com.codeForProject.ecom.repository;
 
 import com.codeForProject.ecom.entity.Order;
 import com.codeForProject.ecom.enums.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Date;
@@ -15,11 +19,55 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     Order findByUserIdAndOrderStatus(Long userId, OrderStatus status);
 
+    // Carrello completo in una sola query: utente, righe, prodotti e categorie caricati insieme
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user u LEFT JOIN FETCH o.cartItems ci " +
+            "LEFT JOIN FETCH ci.product p LEFT JOIN FETCH p.category " +
+            "WHERE u.keycloakId = :keycloakId AND o.activeCartUserId = u.id")
+    Optional<Order> findCartByKeycloakId(@Param("keycloakId") String keycloakId);
+
+    // Ordine confermato con righe e prodotti, per i passi a valle dell'outbox
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user LEFT JOIN FETCH o.cartItems ci " +
+            "LEFT JOIN FETCH ci.product WHERE o.id = :orderId")
+    Optional<Order> findWithItemsById(@Param("orderId") Long orderId);
+
+    Optional<Order> findByUserKeycloakIdAndIdempotencyKey(String keycloakId, String idempotencyKey);
+
+    // Crea il carrello solo se l'utente non ne ha già uno: due prime richieste concorrenti non generano duplicati
+    @Modifying
+    @Query(value = "INSERT INTO orders (amount, total_amount, order_status, user_id, active_cart_user_id, version) " +
+            "VALUES (0, 0, :status, :userId, :userId, 0) ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertCartIfAbsent(@Param("userId") int userId, @Param("status") int pendingStatus);
+
+    // Delta atomico sui totali: due aggiunte concorrenti non si sovrascrivono
+    @Modifying
+    @Query("UPDATE Order o SET o.amount = o.amount + :delta, o.totalAmount = o.totalAmount + :delta, " +
+            "o.version = o.version + 1 WHERE o.id = :orderId")
+    int addToTotals(@Param("orderId") Long orderId, @Param("delta") long delta);
+
+    // Sottrazione calcolata su righe lette prima: vale solo se nel frattempo il carrello non è cambiato
+    @Modifying
+    @Query("UPDATE Order o SET o.amount = o.amount - :amount, o.totalAmount = o.totalAmount - :amount, " +
+            "o.version = o.version + 1 WHERE o.id = :orderId AND o.version = :version")
+    int subtractFromTotalsIfUnchanged(@Param("orderId") Long orderId, @Param("amount") long amount,
+                                      @Param("version") Long version);
+
     List<Order> findAllByOrderStatusIn(List<OrderStatus> orderStatusList);
 
-    List<Order> findByUserIdAndOrderStatusIn(Long userId, List<OrderStatus> status);
+    // Storico ordini a cursore: l'utente arriva nella stessa query, così getOrderDto non apre altre SELECT
+    @Query("SELECT o FROM Order o JOIN FETCH o.user u WHERE u.keycloakId = :keycloakId " +
+            "AND o.orderStatus IN :statuses AND (:beforeId IS NULL OR o.id < :beforeId) " +
+            "AND (:from IS NULL OR o.date >= :from) AND (:to IS NULL OR o.date < :to) " +
+            "ORDER BY o.id DESC")
+    List<Order> findPageByKeycloakId(@Param("keycloakId") String keycloakId,
+                                     @Param("statuses") List<OrderStatus> statuses,
+                                     @Param("beforeId") Long beforeId,
+                                     @Param("from") Date from,
+                                     @Param("to") Date to,
+                                     Pageable pageable);
 
-    Optional<Order> findByTrackingId(UUID trackingId);
+    // Ricerca pubblica: indice unico su tracking_id BINARY(16) e utente caricato nella stessa query
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.user WHERE o.trackingId = :trackingId")
+    Optional<Order> findByTrackingId(@Param("trackingId") UUID trackingId);
 
     List<Order> findByDateBetweenAndOrderStatus(Date startOfMonth, Date endOfMonth, OrderStatus status);
 
@@ -0,0 +1,44 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.ProductImageVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductImageVariantRepository extends JpaRepository<ProductImageVariant, Long> {
+
+    @Query("SELECT v.width FROM ProductImageVariant v WHERE v.productId = :productId AND v.sourceHash = :sourceHash " +
+            "ORDER BY v.width")
+    List<Integer> findWidths(@Param("productId") Long productId, @Param("sourceHash") String sourceHash);
+
+    @Query("SELECT v.blobHash FROM ProductImageVariant v " +
+            "WHERE v.productId = :productId AND v.sourceHash = :sourceHash AND v.width = :width")
+    Optional<String> findBlobHash(@Param("productId") Long productId, @Param("sourceHash") String sourceHash,
+                              @Param("width") Integer width);
+
+    Optional<ProductImageVariant> findByProductIdAndSourceHashAndWidth(Long productId, String sourceHash, Integer width);
+
+    @Query("SELECT v.blobHash FROM ProductImageVariant v WHERE v.productId = :productId")
+    List<String> findBlobHashesByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT v.blobHash FROM ProductImageVariant v WHERE v.productId = :productId AND v.sourceHash <> :sourceHash")
+    List<String> findStaleBlobHashes(@Param("productId") Long productId, @Param("sourceHash") String sourceHash);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProductImageVariant v WHERE v.productId = :productId")
+    int deleteAllByProductId(@Param("productId") Long productId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProductImageVariant v WHERE v.productId = :productId AND v.sourceHash <> :sourceHash")
+    int deleteStale(@Param("productId") Long productId, @Param("sourceHash") String sourceHash);
+
+}
@@ -0,0 +1,24 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.ProductInventory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductInventoryRepository extends JpaRepository<ProductInventory, Long> {
+
+    // Il primo carico crea la riga e attiva il controllo delle quantità per il prodotto
+    @Modifying
+    @Query(value = "INSERT INTO product_inventory (product_id, stock, sold) VALUES (:productId, :delta, 0) " +
+            "ON DUPLICATE KEY UPDATE stock = stock + :delta", nativeQuery = true)
+    int addStock(@Param("productId") Long productId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE ProductInventory i SET i.stock = i.stock - :quantity, i.sold = i.sold + :quantity " +
+            "WHERE i.productId = :productId")
+    int recordSold(@Param("productId") Long productId, @Param("quantity") long quantity);
+
+}
@@ -0,0 +1,40 @@
+package com.codeForProject.ecom.repository;
+
+import com.codeForProject.ecom.entity.ProductRatingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    // Upsert atomico: due recensioni concorrenti non perdono incrementi
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, review_count, rating_sum, stars1, stars2, stars3, stars4, stars5) " +
+            "VALUES (:productId, 1, :rating, :s1, :s2, :s3, :s4, :s5) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + 1, rating_sum = rating_sum + :rating, " +
+            "stars1 = stars1 + :s1, stars2 = stars2 + :s2, stars3 = stars3 + :s3, " +
+            "stars4 = stars4 + :s4, stars5 = stars5 + :s5", nativeQuery = true)
+    int addRating(@Param("productId") Long productId, @Param("rating") long rating,
+                  @Param("s1") int s1, @Param("s2") int s2, @Param("s3") int s3,
+                  @Param("s4") int s4, @Param("s5") int s5);
+
+    @Modifying
+    @Query(value = "DELETE FROM product_rating_summary", nativeQuery = true)
+    int deleteAllRows();
+
+    // Ricostruzione set-based dai dati esistenti
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, review_count, rating_sum, stars1, stars2, stars3, stars4, stars5) " +
+            "SELECT product_id, COUNT(*), SUM(rating), " +
+            "SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END) " +
+            "FROM review WHERE rating IS NOT NULL GROUP BY product_id", nativeQuery = true)
+    int insertFromReviews();
+
+}
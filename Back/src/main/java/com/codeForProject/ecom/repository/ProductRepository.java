@@ -1,11 +1,18 @@
 package com.codeForProject.ecom.repository;
 
+import com.codeForProject.ecom.dto.ProductSummary;
 import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
@@ -14,4 +21,87 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.category.name = :categoryName")
     List<Product> findAllByCategoryName(@Param("categoryName") String categoryName);
 
+    String SUMMARY_SELECT = "SELECT new com.codeForProject.ecom.dto.ProductSummary(" +
+            "p.id, p.name, p.price, p.description, p.imageHash, p.imageVariantStatus, c.id, c.name, " +
+            "rs.reviewCount, rs.ratingSum) " +
+            "FROM Product p JOIN p.category c LEFT JOIN ProductRatingSummary rs ON rs.productId = p.id ";
+
+    // Paginazione keyset: il filtro categoria null viene ignorato, il cursore (valore, id) sostituisce l'OFFSET
+    @Query(SUMMARY_SELECT +
+            "WHERE (:categoryName IS NULL OR c.name = :categoryName) " +
+            "AND (:afterId IS NULL OR p.id > :afterId) " +
+            "ORDER BY p.id")
+    List<ProductSummary> findPageOrderById(@Param("categoryName") String categoryName,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    // MySQL mette i NULL per primi in ordine crescente: dopo una riga null vengono le altre null e poi tutte le valorizzate,
+    // dopo una riga valorizzata le null non tornano più
+    @Query(SUMMARY_SELECT +
+            "WHERE (:categoryName IS NULL OR c.name = :categoryName) " +
+            "AND (:afterId IS NULL " +
+            "OR (:afterNull = true AND (p.price IS NOT NULL OR p.id > :afterId)) " +
+            "OR (:afterNull = false AND (p.price > :afterPrice OR (p.price = :afterPrice AND p.id > :afterId)))) " +
+            "ORDER BY p.price, p.id")
+    List<ProductSummary> findPageOrderByPrice(@Param("categoryName") String categoryName,
+                                          @Param("afterId") Long afterId,
+                                       @Param("afterNull") boolean afterNull,
+                                       @Param("afterPrice") Long afterPrice,
+                                       Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SUMMARY_SELECT + "WHERE p.id = :id")
+    Optional<ProductSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("SELECT p.imageHash FROM Product p WHERE p.id = :id")
+    Optional<String> findImageHashById(@Param("id") Long id);
+
+    // Selezione a blocchi per gli aggiornamenti massivi: keyset sull'id, ogni prodotto viene visto una volta sola
+    @Query("SELECT p.id FROM Product p " +
+            "WHERE (:categoryId IS NULL OR p.category.id = :categoryId) " +
+            "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR p.price <= :maxPrice) " +
+            "AND (:afterId IS NULL OR p.id > :afterId) " +
+            "ORDER BY p.id")
+    List<Long> findIdsForBulkUpdate(@Param("categoryId") Long categoryId,
+                                    @Param("minPrice") Long minPrice,
+                                    @Param("maxPrice") Long maxPrice,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p " +
+            "WHERE p.id IN :ids " +
+            "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
+            "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR p.price <= :maxPrice)")
+    List<Long> filterIdsForBulkUpdate(@Param("ids") Collection<Long> ids,
+                                      @Param("categoryId") Long categoryId,
+                                      @Param("minPrice") Long minPrice,
+                                      @Param("maxPrice") Long maxPrice);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE product SET price = GREATEST(0, ROUND(price * (100 + :percent) / 100)) " +
+            "WHERE id IN (:ids)", nativeQuery = true)
+    int updatePriceByPercent(@Param("ids") Collection<Long> ids, @Param("percent") double percent);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE product SET price = GREATEST(0, price + :delta) WHERE id IN (:ids)", nativeQuery = true)
+    int updatePriceByDelta(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE product SET category_id = :categoryId WHERE id IN (:ids)", nativeQuery = true)
+    int updateCategory(@Param("ids") Collection<Long> ids, @Param("categoryId") Long categoryId);
+
+    // Aggiorna lo stato solo se l'immagine non è stata sostituita nel frattempo
+    @Transactional
+    @Modifying
+    @Query("UPDATE Product p SET p.imageVariantStatus = :status WHERE p.id = :id AND p.imageHash = :imageHash")
+    int updateImageVariantStatus(@Param("id") Long id, @Param("imageHash") String imageHash,
+                                 @Param("status") ImageVariantStatus status);
+
 }
@@ -1,15 +1,34 @@
 package com.codeForProject.ecom.repository;
 
-import com.codeForProject.ecom.entity.FAQ;
+import com.codeForProject.ecom.dto.ReviewSummary;
 import com.codeForProject.ecom.entity.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     List<Review> findAllByProductId(Long productsId);
 
+    // Recensioni più recenti per prime, keyset sull'id: costo costante anche con migliaia di recensioni
+    @Query("SELECT new com.codeForProject.ecom.dto.ReviewSummary(r.id, r.rating, r.description, r.imgHash, " +
+            "r.product.id, u.id, u.name) FROM Review r JOIN r.user u " +
+            "WHERE r.product.id = :productId AND (:beforeId IS NULL OR r.id < :beforeId) " +
+            "ORDER BY r.id DESC")
+    List<ReviewSummary> findPageByProductId(@Param("productId") Long productId,
+                                            @Param("beforeId") Long beforeId,
+                                            Pageable pageable);
+
+    @Query("SELECT r.imgHash FROM Review r WHERE r.id = :id")
+    Optional<String> findImgHashById(@Param("id") Long id);
+
+    @Query("SELECT r.imgHash FROM Review r WHERE r.product.id = :productId AND r.imgHash IS NOT NULL")
+    List<String> findImgHashesByProductId(@Param("productId") Long productId);
+
 }
@@ -3,6 +3,8 @@ package com.codeForProject.ecom.repository;
 import com.codeForProject.ecom.entity.User;
 import com.codeForProject.ecom.enums.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -15,4 +17,7 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByRole(UserRole userRole);
 
     Optional<User> findByKeycloakId(String keycloakId);
+
+    @Query("SELECT u.imageHash FROM User u WHERE u.id = :id")
+    Optional<String> findImageHashById(@Param("id") Integer id);
 }
@@ -5,6 +5,7 @@ import com.codeForProject.ecom.dto.OrderDto;
 import com.codeForProject.ecom.entity.Order;
 import com.codeForProject.ecom.enums.OrderStatus;
 import com.codeForProject.ecom.repository.OrderRepository;
+import com.codeForProject.ecom.services.tracking.OrderTrackingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +19,8 @@ public class AdminOrderServiceImpl implements AdminOrderService {
 
     private final OrderRepository orderRepository;
 
+    private final OrderTrackingService orderTrackingService;
+
     public List<OrderDto> getAllPlaceOrders() {
         List<Order> orderList = orderRepository.findAllByOrderStatusIn(List.of(OrderStatus.Placed, OrderStatus.Shipped, OrderStatus.Delivered));
         return orderList.stream().map(Order::getOrderDto).collect(Collectors.toList());
@@ -33,7 +36,10 @@ public class AdminOrderServiceImpl implements AdminOrderService {
             } else if (Objects.equals(status, "Delivered")) {
                 order.setOrderStatus(OrderStatus.Delivered);
             }
-            return orderRepository.save(order).getOrderDto();
+            OrderDto orderDto = orderRepository.save(order).getOrderDto();
+            // La pagina di tracking deve mostrare subito il nuovo stato
+            orderTrackingService.invalidate(order.getTrackingId());
+            return orderDto;
         }
         return null;
     }
@@ -1,17 +1,18 @@
 package com.codeForProject.ecom.services.admin.adminproduct;
 
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
 
 public interface AdminProductService {
 
     ProductDto addProduct(ProductDto productDto) throws IOException;
 
-    List<ProductDto> getAllProducts();
+    ProductPageDto getAllProducts(String cursor, Integer limit, String sort);
 
-    List<ProductDto> getAllProductByName(String name);
+    ProductPageDto getAllProductByName(String name, String cursor, Integer limit, String sort);
 
     boolean deleteProduct (Long id);
 
@@ -19,4 +20,6 @@ public interface AdminProductService {
 
     ProductDto updateProduct(Long productId, ProductDto productDto) throws IOException;
 
+    Map<String, Object> getProductCacheStats();
+
 }
@@ -1,17 +1,30 @@
 package com.codeForProject.ecom.services.admin.adminproduct;
 
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.dto.ProductSummary;
 import com.codeForProject.ecom.entity.Category;
 import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.enums.ImageVariantStatus;
 import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.repository.ProductRatingSummaryRepository;
 import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.repository.ReviewRepository;
+import com.codeForProject.ecom.services.blob.BlobStore;
+import com.codeForProject.ecom.services.image.ImageDerivativeService;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.product.ProductCache;
+import com.codeForProject.ecom.services.product.ProductPageService;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import com.codeForProject.ecom.services.search.ProductSuggester;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -21,50 +34,94 @@ public class AdminProductServiceImpl implements AdminProductService{
 
     private final CategoryRepository categoryRepository;
 
+    private final ProductPageService productPageService;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductSuggester productSuggester;
+
+    private final ProductCatalogIndex productCatalogIndex;
+
+    private final ProductCache productCache;
+
+    private final CatalogVersion catalogVersion;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final ReviewRepository reviewRepository;
+
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
+
+    private final BlobStore blobStore;
+
     public ProductDto addProduct(ProductDto productDto) throws IOException {
         System.out.println("Received ProductDto with categoryId: " + productDto.getCategoryId());
-        
+
+        // La categoria si verifica prima di scrivere il blob: un errore qui non lascia riferimenti orfani
+        Category category = categoryRepository.findById(productDto.getCategoryId()).orElseThrow(() -> 
+            new RuntimeException("Category not found with ID: " + productDto.getCategoryId()));
+
         Product product = new Product();
         product.setName(productDto.getName());
         product.setDescription(productDto.getDescription());
         product.setPrice(productDto.getPrice());
         // Handle image - set to null if no image is provided
         if (productDto.getImg() != null && !productDto.getImg().isEmpty()) {
-            product.setImage(productDto.getImg().getBytes());
+            product.setImageHash(blobStore.put(productDto.getImg().getInputStream()));
         } else {
-            product.setImage(null);
+            product.setImageHash(null);
         }
-
-        Category category = categoryRepository.findById(productDto.getCategoryId()).orElseThrow(() -> 
-            new RuntimeException("Category not found with ID: " + productDto.getCategoryId()));
-
+        product.setImageVariantStatus(product.getImageHash() != null ? ImageVariantStatus.Pending : ImageVariantStatus.None);
         product.setCategory(category);
-        return productRepository.save(product).getDto();
+
+        Product savedProduct;
+        try {
+            savedProduct = productRepository.save(product);
+        } catch (RuntimeException e) {
+            blobStore.release(product.getImageHash());
+            throw e;
+        }
+        imageDerivativeService.scheduleProductDerivatives(savedProduct.getId(), savedProduct.getImageHash());
+        productSearchIndex.index(savedProduct.getId(), savedProduct.getName(), savedProduct.getDescription(), category.getName());
+        productSuggester.put(savedProduct.getId(), savedProduct.getName());
+        productCatalogIndex.put(savedProduct.getId(), savedProduct.getName(), savedProduct.getPrice(),
+                category.getId(), category.getName());
+        catalogVersion.bump();
+        return savedProduct.getDto();
     }
 
-    public List<ProductDto> getAllProducts() {
-        List<Product> products = productRepository.findAll();
-        return products.stream().map(Product::getDto).collect(Collectors.toList());
+    public ProductPageDto getAllProducts(String cursor, Integer limit, String sort) {
+        return productPageService.findPage(null, cursor, limit, sort);
     }
 
-    public List<ProductDto> getAllProductByName(String name) {
-        List<Product> products = productRepository.findAllByNameContaining(name);
-        return products.stream().map(Product::getDto).collect(Collectors.toList());
+    public ProductPageDto getAllProductByName(String name, String cursor, Integer limit, String sort) {
+        return productPageService.search(name, cursor, limit, sort);
     }
 
     public boolean deleteProduct (Long id) {
         Optional<Product> optionalProduct = productRepository.findById(id);
         if(optionalProduct.isPresent()) {
+            // Le recensioni vengono eliminate in cascata dal database: i loro blob vanno rilasciati qui
+            List<String> reviewImages = reviewRepository.findImgHashesByProductId(id);
             productRepository.deleteById(id);
+            ratingSummaryRepository.deleteById(id);
+            blobStore.release(optionalProduct.get().getImageHash());
+            reviewImages.forEach(blobStore::release);
+            productSearchIndex.remove(id);
+            productSuggester.remove(id);
+            productCatalogIndex.remove(id);
+            catalogVersion.bump();
+            productCache.invalidate(id);
+            imageDerivativeService.deleteProductDerivatives(id);
             return true;
         }
         return false;
     }
 
     public ProductDto getProductById(Long productId) {
-        Optional<Product> optionalProduct = productRepository.findById(productId);
+        Optional<ProductSummary> optionalProduct = productCache.get(productId);
         if(optionalProduct.isPresent()) {
-            return optionalProduct.get().getDto();
+            return optionalProduct.get().toDto();
         } else {
             return null;
         }
@@ -80,13 +137,41 @@ public class AdminProductServiceImpl implements AdminProductService{
             product.setPrice(productDto.getPrice());
             product.setDescription(productDto.getDescription());
             product.setCategory(optionalCategory.get());
+            boolean imageChanged = false;
+            String previousHash = product.getImageHash();
             if(productDto.getImg() != null) {
-                product.setImage(productDto.getImg().getBytes());
+                String imageHash = productDto.getImg().isEmpty() ? null : blobStore.put(productDto.getImg().getInputStream());
+                imageChanged = imageHash != null && !imageHash.equals(previousHash);
+                product.setImageHash(imageHash);
+                if (imageHash == null) {
+                    product.setImageVariantStatus(ImageVariantStatus.None);
+                } else if (imageChanged) {
+                    product.setImageVariantStatus(ImageVariantStatus.Pending);
+                }
+            }
+            Product savedProduct = productRepository.save(product);
+            if (productDto.getImg() != null) {
+                // Il nuovo caricamento ha preso un riferimento proprio, quello precedente si rilascia
+                blobStore.release(previousHash);
             }
-            return productRepository.save(product).getDto();
+            if (imageChanged) {
+                imageDerivativeService.scheduleProductDerivatives(savedProduct.getId(), savedProduct.getImageHash());
+            }
+            productSearchIndex.index(savedProduct.getId(), savedProduct.getName(), savedProduct.getDescription(),
+                    optionalCategory.get().getName());
+            productSuggester.put(savedProduct.getId(), savedProduct.getName());
+            productCatalogIndex.put(savedProduct.getId(), savedProduct.getName(), savedProduct.getPrice(),
+                    optionalCategory.get().getId(), optionalCategory.get().getName());
+            productCache.invalidate(savedProduct.getId());
+            catalogVersion.bump();
+            return savedProduct.getDto();
         } else {
             return null;
         }
     }
 
+    public Map<String, Object> getProductCacheStats() {
+        return productCache.stats();
+    }
+
 }
@@ -0,0 +1,10 @@
+package com.codeForProject.ecom.services.admin.adminproduct;
+
+import com.codeForProject.ecom.dto.BulkProductUpdateDto;
+import com.codeForProject.ecom.dto.BulkProductUpdateResultDto;
+
+public interface ProductBulkUpdateService {
+
+    BulkProductUpdateResultDto bulkUpdate(BulkProductUpdateDto request);
+
+}
@@ -0,0 +1,168 @@
+package com.codeForProject.ecom.services.admin.adminproduct;
+
+import com.codeForProject.ecom.dto.BulkProductUpdateDto;
+import com.codeForProject.ecom.dto.BulkProductUpdateResultDto;
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.product.ProductCache;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+@Service
+public class ProductBulkUpdateServiceImpl implements ProductBulkUpdateService {
+
+    private final ProductRepository productRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final ProductCache productCache;
+
+    private final CatalogVersion catalogVersion;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductCatalogIndex productCatalogIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Righe per UPDATE: transazioni brevi, lock tenuti poco e IN list di dimensione limitata
+    private final int chunkSize;
+
+    // Oltre questa soglia si svuota tutta la cache invece di invalidare id per id
+    private final int invalidateAllThreshold;
+
+    public ProductBulkUpdateServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository,
+                                        ProductCache productCache, CatalogVersion catalogVersion,
+                                        ProductSearchIndex productSearchIndex, ProductCatalogIndex productCatalogIndex,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${app.products.bulk-update.chunk-size:1000}") int chunkSize,
+                                        @Value("${app.products.bulk-update.invalidate-all-threshold:10000}") int invalidateAllThreshold) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.productCache = productCache;
+        this.catalogVersion = catalogVersion;
+        this.productSearchIndex = productSearchIndex;
+        this.productCatalogIndex = productCatalogIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.invalidateAllThreshold = invalidateAllThreshold;
+    }
+
+    public BulkProductUpdateResultDto bulkUpdate(BulkProductUpdateDto request) {
+        validate(request);
+        long start = System.currentTimeMillis();
+        BulkProductUpdateResultDto result = new BulkProductUpdateResultDto();
+        List<Long> touched = new ArrayList<>();
+
+        try {
+            if (request.getProductIds() != null) {
+                List<Long> ids = new ArrayList<>(new TreeSet<>(request.getProductIds()));
+                for (int from = 0; from < ids.size(); from += chunkSize) {
+                    List<Long> chunk = productRepository.filterIdsForBulkUpdate(
+                            ids.subList(from, Math.min(from + chunkSize, ids.size())),
+                            request.getCategoryId(), request.getMinPrice(), request.getMaxPrice());
+                    apply(chunk, request, result, touched);
+                }
+            } else {
+                Long afterId = null;
+                List<Long> chunk;
+                do {
+                    chunk = productRepository.findIdsForBulkUpdate(request.getCategoryId(), request.getMinPrice(),
+                            request.getMaxPrice(), afterId, PageRequest.of(0, chunkSize));
+                    apply(chunk, request, result, touched);
+                    if (!chunk.isEmpty()) {
+                        afterId = chunk.get(chunk.size() - 1);
+                    }
+                } while (chunk.size() == chunkSize);
+            }
+        } finally {
+            // Anche se un blocco fallisce, quelli già confermati vanno invalidati e reindicizzati
+            if (touched.size() > invalidateAllThreshold) {
+                productCache.invalidateAll();
+            } else {
+                productCache.invalidateAll(touched);
+            }
+            reindex(touched, request.getTargetCategoryId() != null);
+            if (!touched.isEmpty()) {
+                catalogVersion.bump();
+            }
+        }
+
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private void apply(List<Long> ids, BulkProductUpdateDto request, BulkProductUpdateResultDto result, List<Long> touched) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        // Prezzo e categoria dello stesso blocco in una transazione: il blocco è applicato tutto o niente.
+        // Agiscono sugli stessi id: un prodotto modificato da entrambi si conta una volta sola
+        int updated = transactionTemplate.execute(status -> {
+            int count = 0;
+            if (request.getPricePercent() != null) {
+                count = Math.max(count, productRepository.updatePriceByPercent(ids, request.getPricePercent()));
+            }
+            if (request.getPriceDelta() != null) {
+                count = Math.max(count, productRepository.updatePriceByDelta(ids, request.getPriceDelta()));
+            }
+            if (request.getTargetCategoryId() != null) {
+                count = Math.max(count, productRepository.updateCategory(ids, request.getTargetCategoryId()));
+            }
+            return count;
+        });
+        result.setUpdated(result.getUpdated() + updated);
+        result.setChunks(result.getChunks() + 1);
+        touched.addAll(ids);
+    }
+
+    // Il prezzo non entra nell'indice di ricerca, la categoria sì; il catalogo a colonne li contiene entrambi
+    private void reindex(List<Long> ids, boolean categoryChanged) {
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<ProductSummary> summaries = productRepository.findSummariesByIdIn(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+            for (ProductSummary product : summaries) {
+                productCatalogIndex.put(product.id(), product.name(), product.price(), product.categoryId(), product.categoryName());
+                if (categoryChanged) {
+                    productSearchIndex.index(product.id(), product.name(), product.description(), product.categoryName());
+                }
+            }
+        }
+    }
+
+    private void validate(BulkProductUpdateDto request) {
+        if (request.getPricePercent() == null && request.getPriceDelta() == null && request.getTargetCategoryId() == null) {
+            throw new ValidationException("Nothing to update: set pricePercent, priceDelta or targetCategoryId");
+        }
+        if (request.getPricePercent() != null && request.getPriceDelta() != null) {
+            throw new ValidationException("pricePercent and priceDelta are mutually exclusive");
+        }
+        if (request.getPricePercent() != null && request.getPricePercent() < -100) {
+            throw new ValidationException("pricePercent cannot be lower than -100");
+        }
+        if (request.getProductIds() != null && request.getProductIds().isEmpty()) {
+            throw new ValidationException("productIds cannot be empty");
+        }
+        // Una richiesta senza filtri modificherebbe l'intero catalogo: va chiesto esplicitamente
+        boolean hasFilter = request.getProductIds() != null || request.getCategoryId() != null
+                || request.getMinPrice() != null || request.getMaxPrice() != null;
+        if (!hasFilter && !Boolean.TRUE.equals(request.getAll())) {
+            throw new ValidationException("No filter: set productIds, categoryId, minPrice or maxPrice, or all=true to update every product");
+        }
+        if (request.getTargetCategoryId() != null && !categoryRepository.existsById(request.getTargetCategoryId())) {
+            throw new ValidationException("Category not found with ID: " + request.getTargetCategoryId());
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.codeForProject.ecom.services.admin.category;
 import com.codeForProject.ecom.dto.CategoryDto;
 import com.codeForProject.ecom.entity.Category;
 import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.services.product.CatalogVersion;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -14,11 +15,15 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
 
+    private final CatalogVersion catalogVersion;
+
     public Category createCategory(CategoryDto categoryDto) {
         Category category = new Category();
         category.setName(categoryDto.getName());
         category.setDescription(categoryDto.getDescription());
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        catalogVersion.bump();
+        return savedCategory;
     }
 
     public List<Category> getAllCategories() {
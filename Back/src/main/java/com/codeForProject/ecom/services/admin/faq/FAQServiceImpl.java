@@ -3,9 +3,14 @@ package com.codeForProject.ecom.services.admin.faq;
 import com.codeForProject.ecom.dto.FAQDto;
 import com.codeForProject.ecom.entity.FAQ;
 import com.codeForProject.ecom.repository.FAQRepository;
+import com.codeForProject.ecom.services.product.AfterCommit;
+import com.codeForProject.ecom.services.product.CatalogVersion;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,23 +19,56 @@ public class FAQServiceImpl implements FAQService {
 
     private final FAQRepository faqrepository;
 
+    private final CatalogVersion catalogVersion;
+
+    // Lista immutabile con la generazione in cui è stata letta dal database
+    private record Snapshot(long generation, List<FAQDto> faqs) { }
+
+    // Avanza a ogni modifica: uno snapshot di una generazione precedente non viene più servito
+    private final AtomicLong generation = new AtomicLong();
+
+    // Snapshot delle FAQ: letto a ogni dettaglio prodotto, ricostruito solo dopo una modifica
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
     public FAQDto createFaq(FAQDto faqDto) {
         FAQ faq = new FAQ();
         faq.setQuestion(faqDto.getQuestion());
         faq.setAnswer(faqDto.getAnswer());
-        return faqrepository.save(faq).getFAQDto();
+        FAQDto saved = faqrepository.save(faq).getFAQDto();
+        invalidate();
+        catalogVersion.bump();
+        return saved;
     }
 
     public List<FAQDto> getAllFaqs() {
-        return faqrepository.findAll()
+        // La generazione si legge prima della query: se una modifica arriva durante la lettura,
+        // lo snapshot pubblicato risulta già vecchio e la richiesta successiva lo ricostruisce
+        long current = generation.get();
+        Snapshot cached = snapshot.get();
+        if (cached != null && cached.generation() == current) {
+            return cached.faqs();
+        }
+        List<FAQDto> faqs = faqrepository.findAll()
                 .stream()
                 .map(FAQ::getFAQDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toUnmodifiableList());
+        Snapshot loaded = new Snapshot(current, faqs);
+        // Non si sovrascrive uno snapshot più recente pubblicato da un'altra richiesta
+        snapshot.getAndUpdate(existing -> existing != null && existing.generation() > current ? existing : loaded);
+        return faqs;
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        // Una lettura concorrente al commit vedrebbe ancora le righe vecchie: si avanza di nuovo dopo il commit
+        AfterCommit.run(generation::incrementAndGet);
     }
 
     public boolean deleteFaq(Long id) {
         if (faqrepository.existsById(id)) {
             faqrepository.deleteById(id);
+            invalidate();
+            catalogVersion.bump();
             return true;
         }
         return false;
@@ -0,0 +1,13 @@
+package com.codeForProject.ecom.services.admin.productimport;
+
+import com.codeForProject.ecom.dto.ProductImportResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ProductImportService {
+
+    // format: "csv" oppure "ndjson"
+    ProductImportResultDto importProducts(InputStream content, String format) throws IOException;
+
+}
@@ -0,0 +1,379 @@
+package com.codeForProject.ecom.services.admin.productimport;
+
+import com.codeForProject.ecom.dto.ProductImportResultDto;
+import com.codeForProject.ecom.dto.ProductImportRowDto;
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.services.blob.BlobStore;
+import com.codeForProject.ecom.services.image.ImageDerivativeService;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import com.codeForProject.ecom.services.search.ProductSuggester;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@Service
+public class ProductImportServiceImpl implements ProductImportService {
+
+    private static final String INSERT_SQL = "INSERT INTO product (name, price, description, image_hash, " +
+            "image_variant_status, category_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int REINDEX_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CategoryRepository categoryRepository;
+
+    private final ProductRepository productRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final BlobStore blobStore;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductSuggester productSuggester;
+
+    private final ProductCatalogIndex productCatalogIndex;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final CatalogVersion catalogVersion;
+
+    @Value("${app.import.batch-size:500}")
+    private int batchSize;
+
+    // Righe per transazione: un errore del database annulla solo il proprio blocco
+    @Value("${app.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private final Path imageRoot;
+
+    public ProductImportServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    CategoryRepository categoryRepository, ProductRepository productRepository,
+                                    ObjectMapper objectMapper, BlobStore blobStore,
+                                    ProductSearchIndex productSearchIndex, ProductSuggester productSuggester,
+                                    ProductCatalogIndex productCatalogIndex,
+                                    ImageDerivativeService imageDerivativeService, CatalogVersion catalogVersion,
+                                    @Value("${app.import.image-root:data/import}") String imageRoot) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+        this.blobStore = blobStore;
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggester = productSuggester;
+        this.productCatalogIndex = productCatalogIndex;
+        this.imageDerivativeService = imageDerivativeService;
+        this.catalogVersion = catalogVersion;
+        this.imageRoot = Paths.get(imageRoot).toAbsolutePath().normalize();
+    }
+
+    public ProductImportResultDto importProducts(InputStream content, String format) throws IOException {
+        long start = System.currentTimeMillis();
+        ProductImportResultDto result = new ProductImportResultDto();
+
+        // Categorie risolte in memoria invece di una findById per riga
+        Map<Long, Long> categoryIds = new HashMap<>();
+        Map<String, Long> categoryNames = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            categoryIds.put(category.getId(), category.getId());
+            if (category.getName() != null) {
+                categoryNames.put(category.getName().trim().toLowerCase(Locale.ROOT), category.getId());
+            }
+        }
+
+        Long lastIdBefore = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM product", Long.class);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+        RowSource source = "csv".equalsIgnoreCase(format) ? new CsvSource(reader) : new NdjsonSource(reader);
+
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (true) {
+                ParsedRow parsed;
+                try {
+                    parsed = source.next();
+                } catch (IOException e) {
+                    // Input illeggibile da qui in poi (es. virgolette non chiuse): errore di riga e fine della lettura
+                    fail(result, source.rowNumber(), "Unreadable input: " + e.getMessage());
+                    break;
+                }
+                if (parsed == null) {
+                    break;
+                }
+                result.setRowsRead(result.getRowsRead() + 1);
+                if (parsed.error() != null) {
+                    fail(result, parsed.rowNumber(), parsed.error());
+                    continue;
+                }
+                try {
+                    chunk.add(prepare(parsed, categoryIds, categoryNames));
+                } catch (ValidationException | IOException e) {
+                    fail(result, parsed.rowNumber(), e.getMessage());
+                    continue;
+                }
+                if (chunk.size() >= chunkSize) {
+                    flush(chunk, result);
+                }
+            }
+            flush(chunk, result);
+        } finally {
+            // Righe preparate ma mai scritte per un errore imprevisto: i riferimenti ai blob tornano indietro
+            for (PendingRow pending : chunk) {
+                blobStore.release(pending.imageHash());
+            }
+            // Indice di ricerca, suggerimenti e miniature aggiornati una volta sola a fine import,
+            // anche se l'import si interrompe: i blocchi già confermati sono nel catalogo
+            refreshDerivedState(lastIdBefore == null ? 0L : lastIdBefore);
+            if (result.getImported() > 0) {
+                catalogVersion.bump();
+            }
+        }
+
+        result.setDurationMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private PendingRow prepare(ParsedRow parsed, Map<Long, Long> categoryIds, Map<String, Long> categoryNames)
+            throws IOException {
+        ProductImportRowDto row = parsed.row();
+        if (row.getName() == null || row.getName().isBlank()) {
+            throw new ValidationException("Missing name");
+        }
+        if (row.getPrice() == null || row.getPrice() < 0) {
+            throw new ValidationException("Missing or negative price");
+        }
+        Long categoryId = row.getCategoryId() != null
+                ? categoryIds.get(row.getCategoryId())
+                : row.getCategory() == null ? null : categoryNames.get(row.getCategory().trim().toLowerCase(Locale.ROOT));
+        if (categoryId == null) {
+            throw new ValidationException("Unknown category: "
+                    + (row.getCategoryId() != null ? row.getCategoryId() : row.getCategory()));
+        }
+
+        String imageHash = null;
+        if (row.getImageHash() != null && !row.getImageHash().isBlank()) {
+            imageHash = row.getImageHash().trim().toLowerCase(Locale.ROOT);
+            if (!blobStore.retain(imageHash)) {
+                throw new ValidationException("Unknown image hash: " + imageHash);
+            }
+        } else if (row.getImagePath() != null && !row.getImagePath().isBlank()) {
+            // Solo file sotto la cartella di import: niente percorsi arbitrari sul server
+            Path path = imageRoot.resolve(row.getImagePath().trim()).normalize();
+            if (!path.startsWith(imageRoot) || !Files.isRegularFile(path)) {
+                throw new ValidationException("Image not found: " + row.getImagePath());
+            }
+            try (InputStream in = Files.newInputStream(path)) {
+                imageHash = blobStore.put(in);
+            }
+        }
+        return new PendingRow(parsed.rowNumber(), row, categoryId, imageHash);
+    }
+
+    private void flush(List<PendingRow> chunk, ProductImportResultDto result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, chunk, batchSize, (ps, pending) -> {
+                        ps.setString(1, pending.row().getName().trim());
+                        ps.setLong(2, pending.row().getPrice());
+                        ps.setString(3, pending.row().getDescription());
+                        if (pending.imageHash() != null) {
+                            ps.setString(4, pending.imageHash());
+                            ps.setString(5, ImageVariantStatus.Pending.name());
+                        } else {
+                            ps.setNull(4, Types.VARCHAR);
+                            ps.setString(5, ImageVariantStatus.None.name());
+                        }
+                        ps.setLong(6, pending.categoryId());
+                    }));
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            // Il blocco è stato annullato: i riferimenti ai blob presi per queste righe vanno restituiti
+            for (PendingRow pending : chunk) {
+                blobStore.release(pending.imageHash());
+                fail(result, pending.rowNumber(), "Batch rolled back: " + e.getMessage());
+            }
+        }
+        chunk.clear();
+    }
+
+    private void refreshDerivedState(long lastIdBefore) {
+        Long afterId = lastIdBefore;
+        List<ProductSummary> batch;
+        do {
+            batch = productRepository.findPageOrderById(null, afterId, PageRequest.of(0, REINDEX_BATCH_SIZE));
+            for (ProductSummary product : batch) {
+                productSearchIndex.index(product.id(), product.name(), product.description(), product.categoryName());
+                productSuggester.load(product.id(), product.name());
+                productCatalogIndex.put(product.id(), product.name(), product.price(), product.categoryId(), product.categoryName());
+                if (product.imageStatus() == ImageVariantStatus.Pending) {
+                    imageDerivativeService.scheduleProductDerivatives(product.id(), product.imageHash());
+                }
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).id();
+            }
+        } while (batch.size() == REINDEX_BATCH_SIZE);
+        productSuggester.finishLoad();
+    }
+
+    private void fail(ProductImportResultDto result, long rowNumber, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxReportedErrors) {
+            result.getErrors().add(new ProductImportResultDto.RowError(rowNumber, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private record ParsedRow(long rowNumber, ProductImportRowDto row, String error) { }
+
+    private record PendingRow(long rowNumber, ProductImportRowDto row, Long categoryId, String imageHash) { }
+
+    private interface RowSource {
+
+        // null a fine input
+        ParsedRow next() throws IOException;
+
+        // Numero della riga letta per ultima (o in lettura, se next() ha lanciato un'eccezione)
+        long rowNumber();
+
+    }
+
+    // Una riga JSON per prodotto: una riga malformata diventa un errore, non interrompe l'import
+    private class NdjsonSource implements RowSource {
+
+        private final BufferedReader reader;
+
+        private long lineNumber;
+
+        NdjsonSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        public ParsedRow next() throws IOException {
+            String line;
+            do {
+                lineNumber++;
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            try {
+                return new ParsedRow(lineNumber, objectMapper.readValue(line, ProductImportRowDto.class), null);
+            } catch (JsonProcessingException e) {
+                return new ParsedRow(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        public long rowNumber() {
+            return lineNumber;
+        }
+
+    }
+
+    // Prima riga di intestazione con i nomi dei campi di ProductImportRowDto
+    private static class CsvSource implements RowSource {
+
+        private final CsvRowReader reader;
+
+        private Map<String, Integer> columns;
+
+        private long rowNumber = 1;
+
+        CsvSource(BufferedReader reader) {
+            this.reader = new CsvRowReader(reader);
+        }
+
+        public ParsedRow next() throws IOException {
+            if (columns == null) {
+                List<String> header = reader.next();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+                }
+            }
+            List<String> fields;
+            do {
+                rowNumber++;
+                fields = reader.next();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isBlank());
+
+            try {
+                ProductImportRowDto row = new ProductImportRowDto();
+                row.setName(field(fields, "name"));
+                row.setPrice(parseLong(field(fields, "price")));
+                row.setDescription(field(fields, "description"));
+                row.setCategoryId(parseLong(field(fields, "categoryid")));
+                row.setCategory(field(fields, "category"));
+                row.setImageHash(field(fields, "imagehash"));
+                row.setImagePath(field(fields, "imagepath"));
+                return new ParsedRow(rowNumber, row, null);
+            } catch (NumberFormatException e) {
+                return new ParsedRow(rowNumber, null, "Invalid number: " + e.getMessage());
+            }
+        }
+
+        public long rowNumber() {
+            return rowNumber;
+        }
+
+        private String field(List<String> fields, String name) {
+            Integer index = columns.get(name);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index);
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Long parseLong(String value) {
+            return value == null ? null : Long.valueOf(value.trim());
+        }
+
+    }
+
+}
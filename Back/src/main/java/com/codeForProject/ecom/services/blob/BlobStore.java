@@ -0,0 +1,24 @@
+package com.codeForProject.ecom.services.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// Archivio content-addressed: il contenuto è identificato dal suo SHA-256, i duplicati sono salvati una volta sola
+public interface BlobStore {
+
+    // Salva il contenuto (se non già presente), incrementa i riferimenti e ritorna l'hash
+    String put(InputStream content) throws IOException;
+
+    String put(byte[] content) throws IOException;
+
+    // Aggiunge un riferimento a un blob già presente; false se l'hash non è nell'archivio
+    boolean retain(String hash);
+
+    // Rilascia un riferimento: all'ultimo il file viene eliminato
+    void release(String hash);
+
+    Optional<Path> locate(String hash);
+
+}
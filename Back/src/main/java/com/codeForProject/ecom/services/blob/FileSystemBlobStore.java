@@ -0,0 +1,152 @@
+package com.codeForProject.ecom.services.blob;
+
+import com.codeForProject.ecom.repository.BlobReferenceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// Blob su filesystem locale in <root>/ab/cd/<sha256>, con conteggio dei riferimenti su database
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final BlobReferenceRepository blobReferenceRepository;
+
+    private final Path root;
+
+    // Serializza put e release dello stesso hash su questa istanza: evita di cancellare un file appena riutilizzato
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileSystemBlobStore(BlobReferenceRepository blobReferenceRepository,
+                               @Value("${app.blobstore.root:data/blobs}") String root) {
+        this.blobReferenceRepository = blobReferenceRepository;
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        try {
+            Files.createDirectories(this.root.resolve("tmp"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create blob store at " + this.root, e);
+        }
+    }
+
+    public String put(byte[] content) throws IOException {
+        return put(new ByteArrayInputStream(content));
+    }
+
+    public String put(InputStream content) throws IOException {
+        // Prima su file temporaneo calcolando l'hash in streaming, così il contenuto non sta tutto in memoria
+        Path temp = Files.createTempFile(root.resolve("tmp"), "upload-", ".part");
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = content.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+
+            synchronized (lockFor(hash)) {
+                blobReferenceRepository.increment(hash, size);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    moveIntoPlace(temp, target);
+                }
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean retain(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return false;
+        }
+        Path target = pathOf(hash);
+        synchronized (lockFor(hash)) {
+            if (!Files.isRegularFile(target)) {
+                return false;
+            }
+            try {
+                blobReferenceRepository.increment(hash, Files.size(target));
+            } catch (IOException e) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public void release(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return;
+        }
+        synchronized (lockFor(hash)) {
+            blobReferenceRepository.decrement(hash);
+            if (blobReferenceRepository.deleteIfUnreferenced(hash) > 0) {
+                try {
+                    Files.deleteIfExists(pathOf(hash));
+                } catch (IOException e) {
+                    System.out.println("Blob store: cannot delete " + hash + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public Optional<Path> locate(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = pathOf(hash);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    // Due livelli di directory per non avere centinaia di migliaia di file nella stessa cartella
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target);
+        } catch (FileAlreadyExistsException e) {
+            // Scritto nel frattempo da un'altra istanza: il contenuto è identico per definizione
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+}
@@ -1,18 +1,28 @@
 package com.codeForProject.ecom.services.customer;
 
 import com.codeForProject.ecom.dto.ProductDetailDto;
-import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductFacetPageDto;
+import com.codeForProject.ecom.dto.ProductFilterDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.services.product.CatalogSnapshot;
 
 import java.util.List;
 
 public interface CustomerProductService {
 
-    List<ProductDto> searchProductByTitle(String title);
+    ProductPageDto searchProductByTitle(String title, String cursor, Integer limit, String sort);
 
-    List<ProductDto> getAllProducts();
+    ProductPageDto getAllProducts(String cursor, Integer limit, String sort);
+
+    ProductFacetPageDto browseProducts(ProductFilterDto filter, String cursor, Integer limit, String sort, boolean includeFacets);
 
     ProductDetailDto getProductDetailById(Long productId);
 
-    List<ProductDto> getProductsByCategory(String categoryName);
+    ProductPageDto getProductsByCategory(String categoryName, String cursor, Integer limit, String sort);
+
+    // Pagina di default già serializzata; categoryName null = tutte le categorie
+    CatalogSnapshot getDefaultPageSnapshot(String categoryName);
+
+    List<Long> suggestProductIds(String prefix, Integer limit);
 
 }
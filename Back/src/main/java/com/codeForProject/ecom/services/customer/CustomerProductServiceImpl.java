@@ -1,64 +1,86 @@
 package com.codeForProject.ecom.services.customer;
 
 import com.codeForProject.ecom.dto.ProductDetailDto;
-import com.codeForProject.ecom.dto.ProductDto;
-import com.codeForProject.ecom.entity.FAQ;
-import com.codeForProject.ecom.entity.Product;
-import com.codeForProject.ecom.entity.Review;
-import com.codeForProject.ecom.repository.FAQRepository;
-import com.codeForProject.ecom.repository.ProductRepository;
-import com.codeForProject.ecom.repository.ReviewRepository;
+import com.codeForProject.ecom.dto.ProductFacetPageDto;
+import com.codeForProject.ecom.dto.ProductFilterDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.dto.ReviewPageDto;
+import com.codeForProject.ecom.services.admin.faq.FAQService;
+import com.codeForProject.ecom.services.customer.review.ReviewService;
+import com.codeForProject.ecom.services.product.CatalogSnapshot;
+import com.codeForProject.ecom.services.product.CatalogSnapshotService;
+import com.codeForProject.ecom.services.product.ProductCache;
+import com.codeForProject.ecom.services.product.ProductPageService;
+import com.codeForProject.ecom.services.search.ProductSuggester;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CustomerProductServiceImpl implements CustomerProductService {
 
-    private final ProductRepository productRepository;
+    private final ProductCache productCache;
 
-    private final FAQRepository faqRepository;
+    private final FAQService faqService;
 
-    private final ReviewRepository reviewRepository;
+    private final ReviewService reviewService;
 
-    public List<ProductDto> getAllProducts() {
-        List<Product> products = productRepository.findAll();
-        return products.stream().map(Product::getDto).collect(Collectors.toList());
+    private final ProductPageService productPageService;
+
+    private final ProductSuggester productSuggester;
+
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    public ProductPageDto getAllProducts(String cursor, Integer limit, String sort) {
+        return productPageService.findPage(null, cursor, limit, sort);
+    }
+
+    public ProductFacetPageDto browseProducts(ProductFilterDto filter, String cursor, Integer limit, String sort,
+                                              boolean includeFacets) {
+        return productPageService.browse(filter, cursor, limit, sort, includeFacets);
     }
 
-    public List<ProductDto> searchProductByTitle(String name) {
-        List<Product> products = productRepository.findAllByNameContaining(name);
-        return products.stream().map(Product::getDto).collect(Collectors.toList());
+    public ProductPageDto searchProductByTitle(String name, String cursor, Integer limit, String sort) {
+        return productPageService.search(name, cursor, limit, sort);
     }
 
     public ProductDetailDto getProductDetailById(Long productId) {
-        Optional<Product> optionalProduct = productRepository.findById(productId);
+        Optional<ProductSummary> optionalProduct = productCache.get(productId);
         if (optionalProduct.isPresent()) {
-            List<FAQ> faqList = faqRepository.findAll();
-            List<Review> reviewsList = reviewRepository.findAllByProductId(productId);
+            // Prodotto dalla cache, FAQ dallo snapshot, recensioni solo prima pagina: costo costante
+            ReviewPageDto reviews = reviewService.getProductReviews(productId, null, null);
 
             ProductDetailDto productDetailDto = new ProductDetailDto();
 
-            productDetailDto.setProductDto(optionalProduct.get().getDto());
-            productDetailDto.setFaqDtoList(faqList.stream().map(FAQ::getFAQDto).collect(Collectors.toList()));
-            productDetailDto.setReviewDtoList(reviewsList.stream().map(Review::getDto).collect(Collectors.toList()));
+            productDetailDto.setProductDto(optionalProduct.get().toDto());
+            productDetailDto.setFaqDtoList(faqService.getAllFaqs());
+            productDetailDto.setReviewDtoList(reviews.getReviews());
+            productDetailDto.setNextReviewsCursor(reviews.getNextCursor());
 
             return productDetailDto;
         }
         return null;
     }
 
-    public List<ProductDto> getProductsByCategory(String categoryName) {
+    public ProductPageDto getProductsByCategory(String categoryName, String cursor, Integer limit, String sort) {
         // Mappa gli ID delle categorie ai nomi reali nel database
         String actualCategoryName = mapCategoryIdToName(categoryName);
-        List<Product> products = productRepository.findAllByCategoryName(actualCategoryName);
-        return products.stream().map(Product::getDto).collect(Collectors.toList());
+        return productPageService.findPage(actualCategoryName, cursor, limit, sort);
+    }
+
+    public CatalogSnapshot getDefaultPageSnapshot(String categoryName) {
+        return catalogSnapshotService.getDefaultPage(categoryName == null ? null : mapCategoryIdToName(categoryName));
     }
     
+    public List<Long> suggestProductIds(String prefix, Integer limit) {
+        int k = limit == null ? ProductSuggester.MAX_SUGGESTIONS : Math.min(Math.max(limit, 1), ProductSuggester.MAX_SUGGESTIONS);
+        return productSuggester.suggest(prefix, k);
+    }
+
     private String mapCategoryIdToName(String categoryId) {
         switch (categoryId.toLowerCase()) {
             case "electronics":
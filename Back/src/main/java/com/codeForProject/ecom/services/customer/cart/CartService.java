@@ -1,13 +1,15 @@
 package com.codeForProject.ecom.services.customer.cart;
 
 import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartBatchDto;
 import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.dto.OrderPageDto;
 import com.codeForProject.ecom.dto.PlaceOrderDto;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.List;
-import java.util.UUID;
 
 public interface CartService {
 
@@ -20,11 +22,12 @@ public interface CartService {
 
     OrderDto decreaseProductQuantity(AddProductInCartDto addProductInCartDto);
 
-    OrderDto placeOrder(PlaceOrderDto placeOrderDto);
+    // Aggiunte, rimozioni e quantità in una sola transazione; restituisce il carrello risultante
+    OrderDto applyCartOperations(CartBatchDto cartBatchDto);
 
-    List<OrderDto> getMyPlacedOrders(String keycloakId);
+    OrderDto placeOrder(PlaceOrderDto placeOrderDto);
 
-    OrderDto searchOrderByTrackingId(UUID trackingId);
+    OrderPageDto getMyPlacedOrders(String keycloakId, String cursor, Integer limit, LocalDate from, LocalDate to);
 
     // Remove a cart item and update order totals for the authenticated user
     void removeCartItem(Long cartItemId, String keycloakId);
@@ -1,22 +1,46 @@
 package com.codeForProject.ecom.services.customer.cart;
 
 import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartBatchDto;
 import com.codeForProject.ecom.dto.CartItemsDto;
+import com.codeForProject.ecom.dto.CartOperationDto;
 import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.dto.OrderPageDto;
 import com.codeForProject.ecom.dto.PlaceOrderDto;
+import com.codeForProject.ecom.dto.ProductSummary;
 import com.codeForProject.ecom.entity.*;
+import com.codeForProject.ecom.enums.CartOperationType;
 import com.codeForProject.ecom.enums.OrderStatus;
+import com.codeForProject.ecom.exceptions.OutOfStockException;
+import com.codeForProject.ecom.exceptions.ValidationException;
 import com.codeForProject.ecom.repository.*;
+import com.codeForProject.ecom.services.image.ImageUtils;
+import com.codeForProject.ecom.services.inventory.InventoryService;
+import com.codeForProject.ecom.services.customer.order.OrderOutboxService;
+import com.codeForProject.ecom.services.product.ProductCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,259 +58,454 @@ public class CartServiceImpl implements CartService {
 
     @Autowired
     private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Value("${app.cart.batch.max-operations:200}")
+    private int maxBatchOperations;
+
+    @Value("${app.orders.page-size.default:20}")
+    private int defaultOrderPageSize;
+
+    @Value("${app.orders.page-size.max:100}")
+    private int maxOrderPageSize;
     
 
     @Override
     public ResponseEntity<?> addProductToCart(AddProductInCartDto addProductInCartDto) {
         try {
-            // Trova l'utente tramite keycloakId invece di userId
-            Optional<User> optionalUser = userRepository.findByKeycloakId(addProductInCartDto.getUserId());
-            Optional<Product> optionalProduct = productRepository.findById(addProductInCartDto.getProductId());
-
-            if (optionalProduct.isPresent() && optionalUser.isPresent()) {
-                User user = optionalUser.get();
-                
-                // Trova l'ordine pending dell'utente
-                Order order = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
-                if (order == null) {
-                    // Crea un nuovo ordine se non esiste
-                    order = new Order();
-                    order.setAmount(0L);
-                    order.setTotalAmount(0L);
-                    order.setUser(user);
-                    order.setOrderStatus(OrderStatus.Pending);
-                    order = orderRepository.save(order);
-                }
+            Optional<ProductSummary> optionalProduct = productCache.get(addProductInCartDto.getProductId());
+            // Un solo SELECT per utente, ordine pending e righe del carrello con i loro prodotti
+            Order order = optionalProduct.isPresent() ? loadOrCreateCart(addProductInCartDto.getUserId()) : null;
 
-                Optional<CartItems> optionalCartItems = cartItemsRepository.findByProductIdAndOrderIdAndUserId(
-                        addProductInCartDto.getProductId(), order.getId(), (long) user.getId()
-                );
+            if (order != null) {
+                ProductSummary product = optionalProduct.get();
 
-                if (optionalCartItems.isPresent()) {
+                if (findCartItemByProduct(order, product.id()).isPresent()) {
                     // Prodotto già presente nel carrello: restituisci lo stato completo del carrello
-                    OrderDto orderDto = getCartByUserId(addProductInCartDto.getUserId());
-                    return ResponseEntity.status(HttpStatus.OK).body(orderDto);
+                    return ResponseEntity.status(HttpStatus.OK).body(toCartDto(order, cartItemDtos(order)));
                 } else {
-                    Product product = optionalProduct.get();
+                    if (!inventoryService.reserve(addProductInCartDto.getUserId(), product.id(), 1)) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body("Product out of stock");
+                    }
+                    // Prima il delta sui totali: la riga dell'ordine serializza le scritture concorrenti sullo stesso carrello
+                    orderRepository.addToTotals(order.getId(), product.price() == null ? 0L : product.price());
+
                     CartItems cart = new CartItems();
-                    cart.setProduct(product);
-                    cart.setPrice(product.getPrice());
-                    cart.setUser(user);
+                    // Riferimento senza SELECT: serve solo la foreign key
+                    cart.setProduct(productRepository.getReferenceById(product.id()));
+                    cart.setPrice(product.price());
+                    cart.setUser(order.getUser());
                     cart.setOrder(order);
-                    // Sempre un solo pezzo per prodotto nel tuo ecommerce
                     cart.setQuantity(1L);
 
+                    // Il vincolo unico (ordine, prodotto) respinge la stessa aggiunta fatta in contemporanea da un'altra scheda:
+                    // la transazione si annulla e il controller risponde con il carrello attuale
                     cartItemsRepository.save(cart);
 
-                    long currentTotal = order.getTotalAmount() == null ? 0L : order.getTotalAmount();
-                    long currentAmount = order.getAmount() == null ? 0L : order.getAmount();
-                    long itemPrice = cart.getPrice() == null ? 0L : cart.getPrice();
-
-                    order.setTotalAmount(currentTotal + itemPrice);
-                    order.setAmount(currentAmount + itemPrice);
-
-                    orderRepository.save(order);
-
-                    // Restituisci un DTO completo dell'ordine aggiornato
-                    OrderDto orderDto = getCartByUserId(addProductInCartDto.getUserId());
-                    return ResponseEntity.status(HttpStatus.CREATED).body(orderDto);
+                    // Restituisci il carrello aggiornato calcolato dallo stato in memoria
+                    List<CartItemsDto> items = cartItemDtos(order);
+                    items.add(newCartItemDto(cart, product));
+                    return ResponseEntity.status(HttpStatus.CREATED).body(toCartDto(order, items));
                 }
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User or Product not found");
             }
+        } catch (DataIntegrityViolationException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error adding product to cart: " + e.getMessage());
         }
     }
 
     public OrderDto getCartByUserId(String keycloakId) {
-        // Trova l'utente tramite keycloakId
-        Optional<User> optionalUser = userRepository.findByKeycloakId(keycloakId);
-        if (optionalUser.isEmpty()) {
-            return null;
-        }
-        User user = optionalUser.get();
-        
-        // Recupera l'ordine Pending dell'utente; se non esiste, creane uno vuoto
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
+        Order activeOrder = loadOrCreateCart(keycloakId);
         if (activeOrder == null) {
-            activeOrder = new Order();
-            activeOrder.setAmount(0L);
-            activeOrder.setTotalAmount(0L);
-            activeOrder.setUser(user);
-            activeOrder.setOrderStatus(OrderStatus.Pending);
-            activeOrder = orderRepository.save(activeOrder);
+            return null;
         }
-
-        List<CartItemsDto> cartItemsDtoList = activeOrder.getCartItems() == null
-                ? List.of()
-                : activeOrder.getCartItems().stream().map(CartItems::getCartDto).collect(Collectors.toList());
-
-        OrderDto orderDto = new OrderDto();
-        orderDto.setAmount(activeOrder.getAmount() == null ? 0L : activeOrder.getAmount());
-        orderDto.setId(activeOrder.getId());
-        orderDto.setOrderStatus(activeOrder.getOrderStatus());
-        orderDto.setTotalAmount(activeOrder.getTotalAmount() == null ? 0L : activeOrder.getTotalAmount());
-        orderDto.setCartItems(cartItemsDtoList);
-        orderDto.setUserName(user.getName());
-
-        return orderDto;
+        return toCartDto(activeOrder, cartItemDtos(activeOrder));
     }
 
     // Funzionalità coupon rimossa
 
     public OrderDto increaseProductQuantity(AddProductInCartDto addProductInCartDto) {
-        // Trova l'utente tramite keycloakId
-        Optional<User> optionalUser = userRepository.findByKeycloakId(addProductInCartDto.getUserId());
-        if (optionalUser.isEmpty()) {
+        return changeQuantity(addProductInCartDto, 1);
+    }
+
+    public OrderDto decreaseProductQuantity(AddProductInCartDto addProductInCartDto) {
+        return changeQuantity(addProductInCartDto, -1);
+    }
+
+    // Un SELECT per il carrello, uno per i prodotti non ancora in cache e solo le scritture delle righe cambiate
+    public OrderDto applyCartOperations(CartBatchDto cartBatchDto) {
+        validateOperations(cartBatchDto.getOperations());
+        Order activeOrder = loadOrCreateCart(cartBatchDto.getUserId());
+        if (activeOrder == null) {
             return null;
         }
-        User user = optionalUser.get();
-        
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
-        Optional<Product> optionalProduct = productRepository.findById(addProductInCartDto.getProductId());
 
-        Optional<CartItems> optionalCartItems = cartItemsRepository.findByProductIdAndOrderIdAndUserId(
-                addProductInCartDto.getProductId(), activeOrder.getId(), (long) user.getId()
-        );
+        Map<Long, CartItems> currentItems = new HashMap<>();
+        for (CartItems item : activeOrder.getCartItems()) {
+            currentItems.put(item.getProduct().getId(), item);
+        }
+        Map<Long, Long> targets = targetQuantities(cartBatchDto.getOperations(),
+                productId -> currentItems.containsKey(productId) ? quantity(currentItems.get(productId)) : 0L);
 
-        if(optionalProduct.isPresent() && optionalCartItems.isPresent()) {
-            CartItems cartItems = optionalCartItems.get();
-            Product product = optionalProduct.get();
+        List<Long> missingIds = new ArrayList<>();
+        for (Map.Entry<Long, Long> target : targets.entrySet()) {
+            if (target.getValue() > 0 && !currentItems.containsKey(target.getKey())) {
+                missingIds.add(target.getKey());
+            }
+        }
+        Map<Long, ProductSummary> products = productCache.getAll(missingIds);
+
+        // Prima le prenotazioni, tutte o nessuna: con un prodotto esaurito il carrello resta com'era
+        Map<Long, Long> reservations = new HashMap<>();
+        Map<Long, Long> previousQuantities = new HashMap<>();
+        for (Map.Entry<Long, Long> target : targets.entrySet()) {
+            CartItems item = currentItems.get(target.getKey());
+            if (item != null && target.getValue() != quantity(item)) {
+                reservations.put(target.getKey(), target.getValue());
+                previousQuantities.put(target.getKey(), quantity(item));
+            } else if (item == null && target.getValue() > 0 && products.containsKey(target.getKey())) {
+                reservations.put(target.getKey(), target.getValue());
+            }
+        }
+        inventoryService.reserveAll(cartBatchDto.getUserId(), reservations, previousQuantities);
+
+        long delta = 0;
+        // Chiavi per id e non per entità: equals/hashCode di Lombok attraverserebbero le relazioni
+        Set<Long> removedIds = new HashSet<>();
+        Map<Long, Long> quantityChanges = new HashMap<>();
+        List<CartItems> added = new ArrayList<>();
+        for (Map.Entry<Long, Long> target : targets.entrySet()) {
+            CartItems item = currentItems.get(target.getKey());
+            long quantity = target.getValue();
+            if (item != null) {
+                long price = item.getPrice() == null ? 0L : item.getPrice();
+                if (quantity == 0) {
+                    removedIds.add(item.getId());
+                    delta -= lineAmount(item);
+                } else if (quantity != quantity(item)) {
+                    quantityChanges.put(target.getKey(), quantity);
+                    delta += (quantity - quantity(item)) * price;
+                }
+            } else if (quantity > 0 && products.containsKey(target.getKey())) {
+                // Un prodotto uscito dal catalogo nel frattempo si salta, come farebbe la singola aggiunta
+                ProductSummary product = products.get(target.getKey());
+                CartItems cart = new CartItems();
+                cart.setProduct(productRepository.getReferenceById(product.id()));
+                cart.setPrice(product.price());
+                cart.setUser(activeOrder.getUser());
+                cart.setOrder(activeOrder);
+                cart.setQuantity(quantity);
+                added.add(cart);
+                delta += quantity * (product.price() == null ? 0L : product.price());
+            }
+        }
+        if (removedIds.isEmpty() && quantityChanges.isEmpty() && added.isEmpty()) {
+            return toCartDto(activeOrder, cartItemDtos(activeOrder));
+        }
 
-            // Quantity adjustments are not supported; return current cart
-            return activeOrder.getOrderDto();
+        // Il delta è calcolato sulle righe lette: si applica solo se il carrello non è cambiato nel frattempo
+        if (orderRepository.subtractFromTotalsIfUnchanged(activeOrder.getId(), -delta, activeOrder.getVersion()) == 0) {
+            throw new OptimisticLockingFailureException("Cart " + activeOrder.getId() + " changed concurrently");
         }
-        return null;
+        if (!removedIds.isEmpty()) {
+            cartItemsRepository.deleteAllByIdInBatch(removedIds);
+        }
+        // Le righe sono gestite: gli UPDATE delle quantità partono al flush
+        quantityChanges.forEach((productId, quantity) -> currentItems.get(productId).setQuantity(quantity));
+        cartItemsRepository.saveAll(added);
+
+        List<CartItemsDto> items = new ArrayList<>(activeOrder.getCartItems().size() + added.size());
+        for (CartItems item : activeOrder.getCartItems()) {
+            if (!removedIds.contains(item.getId())) {
+                items.add(item.getCartDto());
+            }
+        }
+        for (CartItems cart : added) {
+            items.add(newCartItemDto(cart, products.get(cart.getProduct().getId())));
+        }
+        return toCartDto(activeOrder, items);
     }
 
-    public OrderDto decreaseProductQuantity(AddProductInCartDto addProductInCartDto) {
-        // Trova l'utente tramite keycloakId
-        Optional<User> optionalUser = userRepository.findByKeycloakId(addProductInCartDto.getUserId());
-        if (optionalUser.isEmpty()) {
-            return null;
+    // Quantità finale per prodotto dopo tutte le operazioni, 0 = rimosso; condivisa con il motore write-behind
+    static Map<Long, Long> targetQuantities(List<CartOperationDto> operations, Function<Long, Long> currentQuantity) {
+        Map<Long, Long> targets = new LinkedHashMap<>();
+        for (CartOperationDto operation : operations) {
+            Long productId = operation.getProductId();
+            long current = targets.containsKey(productId) ? targets.get(productId) : currentQuantity.apply(productId);
+            switch (operation.getType()) {
+                case ADD -> targets.put(productId, current > 0 ? current : 1L);
+                case REMOVE -> targets.put(productId, 0L);
+                case SET_QUANTITY -> targets.put(productId, operation.getQuantity());
+            }
         }
-        User user = optionalUser.get();
-        
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
-        Optional<Product> optionalProduct = productRepository.findById(addProductInCartDto.getProductId());
-
-        Optional<CartItems> optionalCartItems = cartItemsRepository.findByProductIdAndOrderIdAndUserId(
-                addProductInCartDto.getProductId(), activeOrder.getId(), (long) user.getId()
-        );
-
-        if(optionalProduct.isPresent() && optionalCartItems.isPresent()) {
-            CartItems cartItems = optionalCartItems.get();
-            Product product = optionalProduct.get();
+        return targets;
+    }
 
-            // Quantity adjustments are not supported; return current cart
-            return activeOrder.getOrderDto();
+    // Condivisa con il motore write-behind, che applica le stesse operazioni al carrello in memoria
+    void validateOperations(List<CartOperationDto> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new ValidationException("operations cannot be empty");
+        }
+        if (operations.size() > maxBatchOperations) {
+            throw new ValidationException("At most " + maxBatchOperations + " operations per request");
+        }
+        for (CartOperationDto operation : operations) {
+            if (operation == null || operation.getType() == null || operation.getProductId() == null) {
+                throw new ValidationException("Each operation needs a type and a productId");
+            }
+            if (operation.getType() == CartOperationType.SET_QUANTITY
+                    && (operation.getQuantity() == null || operation.getQuantity() < 1)) {
+                throw new ValidationException("quantity must be positive, use REMOVE to drop a product");
+            }
         }
-        return null;
     }
 
+    // Solo il passaggio di stato e la riga dell'outbox: il resto lo fanno i worker dopo il commit
     public OrderDto placeOrder(PlaceOrderDto placeOrderDto) {
-        // Trova l'utente tramite keycloakId
-        Optional<User> optionalUser = userRepository.findByKeycloakId(placeOrderDto.getUserId());
-        if (optionalUser.isEmpty()) {
-            return null;
+        String idempotencyKey = placeOrderDto.getIdempotencyKey();
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > 64) {
+                throw new ValidationException("Idempotency-Key must be 1 to 64 characters");
+            }
+            // Ripetizione di una conferma già riuscita: stesso ordine, nessun nuovo effetto
+            Optional<Order> placedOrder = orderRepository.findByUserKeycloakIdAndIdempotencyKey(placeOrderDto.getUserId(),
+                    idempotencyKey);
+            if (placedOrder.isPresent()) {
+                return placedOrder.get().getOrderDto();
+            }
         }
-        User user = optionalUser.get();
-        
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(placeOrderDto.getUserId());
 
-        if(activeOrder != null) {
+        if(optionalCart.isPresent()) {
+            Order activeOrder = optionalCart.get();
             activeOrder.setOrderDescription(placeOrderDto.getOrderDescription());
             activeOrder.setAddress(placeOrderDto.getAddress());
             activeOrder.setDate(new Date());
             activeOrder.setOrderStatus(OrderStatus.Placed);
             activeOrder.setTrackingId(UUID.randomUUID());
+            activeOrder.setActiveCartUserId(null);
+            activeOrder.setIdempotencyKey(idempotencyKey);
 
-            orderRepository.save(activeOrder);
+            // Le prenotazioni diventano vendite; se un prodotto è esaurito la conferma fallisce prima di ogni scrittura
+            Map<Long, Long> quantities = new HashMap<>();
+            for (CartItems item : activeOrder.getCartItems()) {
+                quantities.merge(item.getProduct().getId(), quantity(item), Long::sum);
+            }
+            inventoryService.commitSale(placeOrderDto.getUserId(), activeOrder.getId(), quantities);
 
-            Order order = new Order();
-            order.setAmount(0L);
-            order.setTotalAmount(0L);
-            order.setUser(user);
-            order.setOrderStatus(OrderStatus.Pending);
-            orderRepository.save(order);
+            // UPDATE con controllo di @Version: un'aggiunta arrivata dopo la lettura fa fallire la conferma
+            orderRepository.save(activeOrder);
+            orderOutboxService.recordOrderPlaced(activeOrder.getId());
 
+            // Il nuovo carrello nasce al primo accesso: inserirlo qui precederebbe l'UPDATE e violerebbe il vincolo unico
             return activeOrder.getOrderDto();
         }
         return null;
     }
 
-    public List<OrderDto> getMyPlacedOrders(String keycloakId) {
-        // Trova l'utente tramite keycloakId
-        Optional<User> optionalUser = userRepository.findByKeycloakId(keycloakId);
-        if (optionalUser.isEmpty()) {
-            return List.of();
+    public OrderPageDto getMyPlacedOrders(String keycloakId, String cursor, Integer limit, LocalDate from, LocalDate to) {
+        int pageSize = resolveOrderPageSize(limit);
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                beforeId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Invalid cursor");
+            }
         }
-        User user = optionalUser.get();
-        
-        return orderRepository.findByUserIdAndOrderStatusIn((long) user.getId(), List.of(OrderStatus.Placed, OrderStatus.Shipped, OrderStatus.Delivered))
-                .stream().map(Order::getOrderDto).collect(Collectors.toList());
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("from must not be after to");
+        }
+        // "to" è incluso: si confronta con l'inizio del giorno successivo
+        Date fromDate = from == null ? null : startOfDay(from);
+        Date toDate = to == null ? null : startOfDay(to.plusDays(1));
+
+        // Una riga in più per sapere se esiste una pagina successiva
+        List<Order> orders = orderRepository.findPageByKeycloakId(keycloakId,
+                List.of(OrderStatus.Placed, OrderStatus.Shipped, OrderStatus.Delivered),
+                beforeId, fromDate, toDate, PageRequest.of(0, pageSize + 1));
+        String nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            nextCursor = String.valueOf(orders.get(pageSize - 1).getId());
+        }
+        return new OrderPageDto(orders.stream().map(Order::getOrderDto).collect(Collectors.toList()), nextCursor);
     }
 
-    public OrderDto searchOrderByTrackingId(UUID trackingId) {
-        Optional<Order> optionalOrder = orderRepository.findByTrackingId(trackingId);
-        if(optionalOrder.isPresent()) {
-            return optionalOrder.get().getOrderDto();
+    private int resolveOrderPageSize(Integer limit) {
+        if (limit == null) {
+            return defaultOrderPageSize;
         }
-        return null;
+        if (limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        return Math.min(limit, maxOrderPageSize);
+    }
+
+    private static Date startOfDay(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 
     @Override
     public void removeCartItem(Long cartItemId, String keycloakId) {
-        Optional<User> optionalUser = userRepository.findByKeycloakId(keycloakId);
-        if (optionalUser.isEmpty()) {
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(keycloakId);
+        if (optionalCart.isEmpty()) {
             return;
         }
-        User user = optionalUser.get();
+        Order activeOrder = optionalCart.get();
 
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
-        if (activeOrder == null) {
+        // Solo le righe del carrello dell'utente sono candidate: il controllo di proprietà è implicito
+        Optional<CartItems> optionalCartItem = activeOrder.getCartItems().stream()
+                .filter(item -> item.getId().equals(cartItemId))
+                .findFirst();
+        if (optionalCartItem.isEmpty()) {
             return;
         }
+        CartItems cartItem = optionalCartItem.get();
 
-        Optional<CartItems> optionalCartItem = cartItemsRepository.findById(cartItemId);
-        if (optionalCartItem.isEmpty()) {
+        // L'importo da togliere dipende dalla quantità letta: vale solo se il carrello non è cambiato nel frattempo
+        if (orderRepository.subtractFromTotalsIfUnchanged(activeOrder.getId(), lineAmount(cartItem), activeOrder.getVersion()) == 0) {
+            throw new OptimisticLockingFailureException("Cart " + activeOrder.getId() + " changed concurrently");
+        }
+        cartItemsRepository.delete(cartItem);
+        inventoryService.reserve(keycloakId, cartItem.getProduct().getId(), 0);
+    }
+
+    @Override
+    public void clearCart(String keycloakId) {
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(keycloakId);
+        if (optionalCart.isEmpty()) {
             return;
         }
-        CartItems cartItem = optionalCartItem.get();
-        if (cartItem.getUser().getId() != user.getId()) {
+        Order activeOrder = optionalCart.get();
+
+        // Con la versione invariata i totali letti sono quelli attuali: sottrarli li porta a zero
+        long amount = activeOrder.getAmount() == null ? 0L : activeOrder.getAmount();
+        if (activeOrder.getCartItems().isEmpty() && amount == 0) {
             return;
         }
+        if (orderRepository.subtractFromTotalsIfUnchanged(activeOrder.getId(), amount, activeOrder.getVersion()) == 0) {
+            throw new OptimisticLockingFailureException("Cart " + activeOrder.getId() + " changed concurrently");
+        }
+        if (!activeOrder.getCartItems().isEmpty()) {
+            cartItemsRepository.deleteAllByOrderIdInBulk(activeOrder.getId());
+        }
+        inventoryService.releaseAll(keycloakId);
+    }
+
+    // Quantità e totali cambiano con due delta atomici nella stessa transazione, senza lock pessimistici
+    private OrderDto changeQuantity(AddProductInCartDto addProductInCartDto, long delta) {
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(addProductInCartDto.getUserId());
+        if (optionalCart.isEmpty()) {
+            return null;
+        }
+        Order activeOrder = optionalCart.get();
+        Optional<CartItems> optionalCartItem = findCartItemByProduct(activeOrder, addProductInCartDto.getProductId());
+        if (optionalCartItem.isEmpty()) {
+            return null;
+        }
+        CartItems cartItem = optionalCartItem.get();
+        List<CartItemsDto> items = cartItemDtos(activeOrder);
 
-        long decrement = cartItem.getPrice();
-        activeOrder.setAmount(Math.max(0, activeOrder.getAmount() - decrement));
-        activeOrder.setTotalAmount(Math.max(0, activeOrder.getTotalAmount() - decrement));
+        long quantity = cartItem.getQuantity() == null ? 1L : cartItem.getQuantity();
+        if (quantity + delta < 1) {
+            // Sotto un pezzo non si scende: per toglierlo si rimuove la riga
+            return toCartDto(activeOrder, items);
+        }
+        if (!inventoryService.reserve(addProductInCartDto.getUserId(), cartItem.getProduct().getId(), quantity + delta)) {
+            throw new OutOfStockException(cartItem.getProduct().getId());
+        }
+        orderRepository.addToTotals(activeOrder.getId(), delta * (cartItem.getPrice() == null ? 0L : cartItem.getPrice()));
+        if (cartItemsRepository.changeQuantity(cartItem.getId(), activeOrder.getId(), delta) == 0) {
+            // Riga rimossa o già scesa a un pezzo da un'altra scheda: il rollback annulla anche il delta sui totali
+            throw new OptimisticLockingFailureException("Cart item " + cartItem.getId() + " changed concurrently");
+        }
 
-        cartItemsRepository.deleteById(cartItemId);
-        orderRepository.save(activeOrder);
+        for (CartItemsDto item : items) {
+            if (item.getId().equals(cartItem.getId())) {
+                item.setQuantity(quantity + delta);
+            }
+        }
+        return toCartDto(activeOrder, items);
     }
 
-    @Override
-    public void clearCart(String keycloakId) {
+    // Carrello con righe e prodotti già caricati; utente e carrello vuoto si cercano/creano solo se manca
+    private Order loadOrCreateCart(String keycloakId) {
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(keycloakId);
+        if (optionalCart.isPresent()) {
+            return optionalCart.get();
+        }
         Optional<User> optionalUser = userRepository.findByKeycloakId(keycloakId);
         if (optionalUser.isEmpty()) {
-            return;
+            return null;
         }
-        User user = optionalUser.get();
+        orderRepository.insertCartIfAbsent(optionalUser.get().getId(), OrderStatus.Pending.ordinal());
+        return orderRepository.findCartByKeycloakId(keycloakId).orElse(null);
+    }
 
-        Order activeOrder = orderRepository.findByUserIdAndOrderStatus((long) user.getId(), OrderStatus.Pending);
-        if (activeOrder == null) {
-            return;
+    private static Optional<CartItems> findCartItemByProduct(Order order, Long productId) {
+        return order.getCartItems().stream()
+                .filter(item -> item.getProduct().getId().equals(productId))
+                .findFirst();
+    }
+
+    private static List<CartItemsDto> cartItemDtos(Order order) {
+        List<CartItemsDto> items = new ArrayList<>(order.getCartItems().size() + 1);
+        for (CartItems item : order.getCartItems()) {
+            items.add(item.getCartDto());
         }
+        return items;
+    }
+
+    private static long quantity(CartItems item) {
+        return item.getQuantity() == null ? 1L : item.getQuantity();
+    }
 
-        List<CartItems> items = cartItemsRepository.findByOrderIdAndUserId(activeOrder.getId(), (long) user.getId());
-        if (!items.isEmpty()) {
-            cartItemsRepository.deleteAll(items);
+    private static long lineAmount(CartItems item) {
+        long price = item.getPrice() == null ? 0L : item.getPrice();
+        return price * quantity(item);
+    }
+
+    // I totali mostrati si ricavano dalle righe mostrate, così la risposta è sempre coerente con sé stessa
+    private static OrderDto toCartDto(Order order, List<CartItemsDto> cartItemsDtoList) {
+        long amount = 0;
+        for (CartItemsDto item : cartItemsDtoList) {
+            amount += (item.getPrice() == null ? 0L : item.getPrice()) * (item.getQuantity() == null ? 1L : item.getQuantity());
         }
 
-        activeOrder.setAmount(0L);
-        activeOrder.setTotalAmount(0L);
-        orderRepository.save(activeOrder);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setAmount(amount);
+        orderDto.setId(order.getId());
+        orderDto.setOrderStatus(order.getOrderStatus());
+        orderDto.setTotalAmount(amount);
+        orderDto.setCartItems(cartItemsDtoList);
+        orderDto.setUserName(order.getUser().getName());
+        return orderDto;
+    }
+
+    // La riga appena inserita si descrive dal ProductSummary in cache: il proxy del prodotto resta non inizializzato
+    private static CartItemsDto newCartItemDto(CartItems cart, ProductSummary product) {
+        CartItemsDto cartItemsDto = new CartItemsDto();
+        cartItemsDto.setId(cart.getId());
+        cartItemsDto.setPrice(cart.getPrice());
+        cartItemsDto.setProductId(product.id());
+        cartItemsDto.setUserId((long) cart.getUser().getId());
+        cartItemsDto.setProductName(product.name());
+        cartItemsDto.setImageUrl(ImageUtils.productImageUrl(product.id(), product.imageHash()));
+        cartItemsDto.setCategoryName(product.categoryName());
+        cartItemsDto.setQuantity(cart.getQuantity());
+        return cartItemsDto;
     }
 
 }
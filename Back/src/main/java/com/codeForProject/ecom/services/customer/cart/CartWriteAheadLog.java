@@ -0,0 +1,149 @@
+package com.codeForProject.ecom.services.customer.cart;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Log append-only delle modifiche ai carrelli non ancora scritte su MySQL, diviso in segmenti numerati.
+// Ogni riga è un'operazione assoluta su un prodotto (presente/assente/quantità) o lo svuotamento del carrello:
+// ripetere il log su uno stato che ne contiene già una parte porta comunque allo stesso risultato.
+class CartWriteAheadLog {
+
+    private static final String SEGMENT_PREFIX = "cart-wal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    enum Operation { ADD, REMOVE, QUANTITY, CLEAR }
+
+    // value è il prezzo per ADD e la nuova quantità per QUANTITY
+    record Mutation(Operation operation, String keycloakId, Long productId, Long value) { }
+
+    private final Path directory;
+
+    private final boolean syncEachWrite;
+
+    private FileChannel channel;
+
+    private long segment;
+
+    CartWriteAheadLog(Path directory, boolean syncEachWrite) throws IOException {
+        this.directory = directory;
+        this.syncEachWrite = syncEachWrite;
+        Files.createDirectories(directory);
+        List<Long> existing = segments();
+        this.segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+        openNextSegment();
+    }
+
+    synchronized void append(Mutation mutation) {
+        StringBuilder line = new StringBuilder(64)
+                .append(mutation.operation().name().charAt(0)).append('|').append(mutation.keycloakId());
+        if (mutation.operation() != Operation.CLEAR) {
+            line.append('|').append(mutation.productId());
+        }
+        if (mutation.operation() == Operation.ADD || mutation.operation() == Operation.QUANTITY) {
+            line.append('|').append(mutation.value());
+        }
+        line.append('\n');
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // Senza fsync la riga sopravvive a un crash del processo ma non a uno del sistema operativo
+            if (syncEachWrite) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Chiude il segmento corrente e ne apre uno nuovo; restituisce i segmenti chiusi, da cancellare dopo il flush
+    synchronized List<Long> rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        List<Long> closed = segments();
+        openNextSegment();
+        return closed;
+    }
+
+    synchronized void delete(List<Long> closedSegments) throws IOException {
+        for (Long closed : closedSegments) {
+            Files.deleteIfExists(segmentPath(closed));
+        }
+    }
+
+    // Tutte le operazioni dei segmenti presenti su disco, nell'ordine in cui sono state scritte
+    synchronized List<Mutation> readAll() throws IOException {
+        List<Mutation> mutations = new ArrayList<>();
+        for (Long existing : segments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segmentPath(existing), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Mutation mutation = parse(line);
+                    // Una riga troncata da un crash a metà scrittura si scarta
+                    if (mutation != null) {
+                        mutations.add(mutation);
+                    }
+                }
+            }
+        }
+        return mutations;
+    }
+
+    synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segment++;
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%012d", number) + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Mutation parse(String line) {
+        String[] parts = line.split("\\|");
+        try {
+            return switch (parts[0]) {
+                case "A" -> parts.length == 4
+                        ? new Mutation(Operation.ADD, parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3])) : null;
+                case "Q" -> parts.length == 4
+                        ? new Mutation(Operation.QUANTITY, parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3])) : null;
+                case "R" -> parts.length == 3
+                        ? new Mutation(Operation.REMOVE, parts[1], Long.parseLong(parts[2]), null) : null;
+                case "C" -> parts.length == 2 ? new Mutation(Operation.CLEAR, parts[1], null, null) : null;
+                default -> null;
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
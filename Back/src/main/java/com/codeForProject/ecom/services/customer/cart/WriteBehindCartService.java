@@ -0,0 +1,857 @@
+package com.codeForProject.ecom.services.customer.cart;
+
+import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartBatchDto;
+import com.codeForProject.ecom.dto.CartItemsDto;
+import com.codeForProject.ecom.dto.CartOperationDto;
+import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.dto.OrderPageDto;
+import com.codeForProject.ecom.dto.PlaceOrderDto;
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.entity.CartItems;
+import com.codeForProject.ecom.entity.Order;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.entity.User;
+import com.codeForProject.ecom.enums.CartOperationType;
+import com.codeForProject.ecom.enums.OrderStatus;
+import com.codeForProject.ecom.exceptions.OutOfStockException;
+import com.codeForProject.ecom.repository.OrderRepository;
+import com.codeForProject.ecom.repository.UserRepository;
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Mutation;
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Operation;
+import com.codeForProject.ecom.services.image.ImageUtils;
+import com.codeForProject.ecom.services.inventory.InventoryService;
+import com.codeForProject.ecom.services.product.ProductCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Motore alternativo dei carrelli: stato in memoria, log su disco e scrittura differita su MySQL a blocchi.
+// Ordini confermati e tracking restano su CartServiceImpl, che lavora direttamente sul database.
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartService implements CartService {
+
+    private static final String DELETE_ALL_ITEMS_SQL = "DELETE FROM cart_items WHERE order_id = ?";
+
+    private static final String DELETE_ITEM_SQL = "DELETE FROM cart_items WHERE order_id = ? AND product_id = ?";
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO cart_items (price, quantity, product_id, user_id, order_id) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SELECT_ITEM_IDS_SQL = "SELECT id, order_id, product_id FROM cart_items WHERE order_id IN (%s)";
+
+    private static final String SELECT_PRODUCT_IDS_SQL = "SELECT id FROM product WHERE id IN (%s)";
+
+    private static final String UPDATE_QUANTITY_SQL = "UPDATE cart_items SET quantity = ? WHERE order_id = ? AND product_id = ?";
+
+    // La versione avanza come per ogni altra scrittura sul carrello
+    private static final String UPDATE_TOTALS_SQL =
+            "UPDATE orders SET amount = ?, total_amount = ?, version = version + 1 WHERE id = ?";
+
+    // Attesa massima di un flush periodico che ha in volo righe del carrello da confermare
+    private static final long PLACE_ORDER_WAIT_MILLIS = 5_000;
+
+    private static final class Line {
+        // Provvisorio (negativo) finché la riga non è su MySQL, poi l'id di cart_items
+        long itemId;
+        // Id provvisorio già restituito al client: resta valido per le rimozioni anche dopo il flush
+        final long provisionalId;
+        final Long productId;
+        final Long price;
+        final String productName;
+        final String imageHash;
+        final String categoryName;
+        long quantity;
+        // La riga esiste (o sta per esistere, flush in corso) in cart_items
+        boolean persisted;
+        boolean quantityChanged;
+
+        Line(long itemId, Long productId, Long price, long quantity, String productName, String imageHash, String categoryName) {
+            this.itemId = itemId;
+            this.provisionalId = itemId < 0 ? itemId : 0;
+            this.productId = productId;
+            this.price = price;
+            this.quantity = quantity;
+            this.productName = productName;
+            this.imageHash = imageHash;
+            this.categoryName = categoryName;
+        }
+
+        long amount() {
+            return (price == null ? 0L : price) * quantity;
+        }
+    }
+
+    private static final class ActiveCart {
+        final String keycloakId;
+        final Long orderId;
+        final int userId;
+        final String userName;
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        // Prodotti che potrebbero avere ancora una riga su MySQL da cancellare
+        final Set<Long> removedPersisted = new HashSet<>();
+        boolean clearPersisted;
+        boolean dirty;
+        // Righe copiate da un flush periodico e non ancora scritte (o ripristinate)
+        boolean flushing;
+        // Conferma dell'ordine in corso: il carrello non accetta modifiche
+        boolean placing;
+        long lastAccess;
+
+        ActiveCart(String keycloakId, Long orderId, int userId, String userName) {
+            this.keycloakId = keycloakId;
+            this.orderId = orderId;
+            this.userId = userId;
+            this.userName = userName;
+        }
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition flushed = lock.newCondition();
+        final Map<String, ActiveCart> carts = new HashMap<>();
+    }
+
+    // Valori copiati sotto lock: la scrittura su MySQL avviene fuori dal lock dello shard
+    private record LineState(Line line, long quantity) { }
+
+    private record FlushTask(ActiveCart cart, boolean clearAll, List<Long> deletes, List<LineState> inserts,
+                             List<LineState> quantityUpdates, long amount) { }
+
+    private final CartServiceImpl delegate;
+
+    private final OrderRepository orderRepository;
+
+    private final UserRepository userRepository;
+
+    private final ProductCache productCache;
+
+    private final InventoryService inventoryService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CartWriteAheadLog writeAheadLog;
+
+    private final Shard[] shards;
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+    private final long flushIntervalMillis;
+
+    private final long idleMillis;
+
+    // Id provvisori (negativi) per le righe non ancora scritte: restano stabili finché il carrello è in memoria
+    private final AtomicLong provisionalIds = new AtomicLong();
+
+    public WriteBehindCartService(CartServiceImpl delegate, OrderRepository orderRepository,
+                                  UserRepository userRepository, ProductCache productCache,
+                                  InventoryService inventoryService,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.cart.write-behind.wal-dir:data/cart-wal}") String walDir,
+                                  @Value("${app.cart.write-behind.sync-each-write:false}") boolean syncEachWrite,
+                                  @Value("${app.cart.write-behind.shards:64}") int shardCount,
+                                  @Value("${app.cart.write-behind.flush-interval-ms:1000}") long flushIntervalMillis,
+                                  @Value("${app.cart.write-behind.idle-minutes:30}") long idleMinutes) throws IOException {
+        this.delegate = delegate;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+        this.productCache = productCache;
+        this.inventoryService = inventoryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeAheadLog = new CartWriteAheadLog(Paths.get(walDir).toAbsolutePath().normalize(), syncEachWrite);
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.idleMillis = Duration.ofMinutes(idleMinutes).toMillis();
+    }
+
+    // Il log si ripete prima che il server accetti richieste: nessuna modifica può precederlo
+    @PostConstruct
+    void start() throws IOException {
+        List<Mutation> mutations = writeAheadLog.readAll();
+        for (Mutation mutation : mutations) {
+            withCart(mutation.keycloakId(), cart -> {
+                if (cart != null) {
+                    apply(cart, mutation);
+                }
+                return null;
+            });
+        }
+        flush();
+        if (!mutations.isEmpty()) {
+            System.out.println("Cart write-ahead log replayed: " + mutations.size() + " mutations.");
+        }
+
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("cart-flush-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.initialize();
+        // Il primo flush periodico parte dopo un intervallo: quello appena fatto ha già svuotato il log
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, Instant.now().plusMillis(flushIntervalMillis),
+                Duration.ofMillis(flushIntervalMillis));
+    }
+
+    // Il web server è già fermo quando i bean vengono distrutti: si svuota la memoria e si chiude il log
+    @PreDestroy
+    void stop() throws IOException {
+        scheduler.shutdown();
+        flush();
+        writeAheadLog.close();
+    }
+
+    @Override
+    public ResponseEntity<?> addProductToCart(AddProductInCartDto addProductInCartDto) {
+        try {
+            Optional<ProductSummary> optionalProduct = productCache.get(addProductInCartDto.getProductId());
+            if (optionalProduct.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User or Product not found");
+            }
+            ProductSummary product = optionalProduct.get();
+            return withCart(addProductInCartDto.getUserId(), cart -> {
+                if (cart == null) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User or Product not found");
+                }
+                if (cart.lines.containsKey(product.id())) {
+                    return ResponseEntity.status(HttpStatus.OK).body(toDto(cart));
+                }
+                if (!inventoryService.reserve(addProductInCartDto.getUserId(), product.id(), 1)) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body("Product out of stock");
+                }
+                Mutation mutation = new Mutation(Operation.ADD, addProductInCartDto.getUserId(), product.id(),
+                        product.price() == null ? 0L : product.price());
+                try {
+                    writeAheadLog.append(mutation);
+                } catch (RuntimeException e) {
+                    // Riga non registrata: la prenotazione appena fatta non deve restare bloccata fino alla scadenza
+                    inventoryService.reserve(addProductInCartDto.getUserId(), product.id(), 0);
+                    throw e;
+                }
+                apply(cart, mutation, product);
+                return ResponseEntity.status(HttpStatus.CREATED).body(toDto(cart));
+            });
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error adding product to cart: " + e.getMessage());
+        }
+    }
+
+    public OrderDto getCartByUserId(String keycloakId) {
+        return withCart(keycloakId, cart -> cart == null ? null : toDto(cart));
+    }
+
+    public OrderDto increaseProductQuantity(AddProductInCartDto addProductInCartDto) {
+        return changeQuantity(addProductInCartDto, 1);
+    }
+
+    public OrderDto decreaseProductQuantity(AddProductInCartDto addProductInCartDto) {
+        return changeQuantity(addProductInCartDto, -1);
+    }
+
+    // Ogni operazione diventa una riga del log; le aggiunte usano un solo lookup dei prodotti, fatto fuori dal lock
+    public OrderDto applyCartOperations(CartBatchDto cartBatchDto) {
+        delegate.validateOperations(cartBatchDto.getOperations());
+        String keycloakId = cartBatchDto.getUserId();
+        Set<Long> productIds = new HashSet<>();
+        for (CartOperationDto operation : cartBatchDto.getOperations()) {
+            if (operation.getType() != CartOperationType.REMOVE) {
+                productIds.add(operation.getProductId());
+            }
+        }
+        Map<Long, ProductSummary> products = productCache.getAll(productIds);
+
+        return withCart(keycloakId, cart -> {
+            if (cart == null) {
+                return null;
+            }
+            Map<Long, Long> targets = CartServiceImpl.targetQuantities(cartBatchDto.getOperations(),
+                    productId -> cart.lines.containsKey(productId) ? cart.lines.get(productId).quantity : 0L);
+
+            // Prima le prenotazioni, tutte o nessuna: con un prodotto esaurito il carrello resta com'era
+            Map<Long, Long> reservations = new HashMap<>();
+            Map<Long, Long> previousQuantities = new HashMap<>();
+            targets.forEach((productId, quantity) -> {
+                Line line = cart.lines.get(productId);
+                if (line != null && quantity != line.quantity) {
+                    reservations.put(productId, quantity);
+                    previousQuantities.put(productId, line.quantity);
+                } else if (line == null && quantity > 0 && products.containsKey(productId)) {
+                    reservations.put(productId, quantity);
+                }
+            });
+            inventoryService.reserveAll(keycloakId, reservations, previousQuantities);
+            try {
+                applyTargets(cart, keycloakId, targets, products);
+            } catch (RuntimeException e) {
+                // Log non scrivibile a metà: le prenotazioni tornano a quanto il carrello contiene davvero
+                for (Long productId : reservations.keySet()) {
+                    Line line = cart.lines.get(productId);
+                    inventoryService.reserve(keycloakId, productId, line == null ? 0 : line.quantity);
+                }
+                throw e;
+            }
+            return toDto(cart);
+        });
+    }
+
+    private void applyTargets(ActiveCart cart, String keycloakId, Map<Long, Long> targets, Map<Long, ProductSummary> products) {
+        for (Map.Entry<Long, Long> target : targets.entrySet()) {
+            Long productId = target.getKey();
+            long quantity = target.getValue();
+            Line line = cart.lines.get(productId);
+            if (line != null && quantity == 0) {
+                Mutation mutation = new Mutation(Operation.REMOVE, keycloakId, productId, null);
+                writeAheadLog.append(mutation);
+                apply(cart, mutation);
+                continue;
+            }
+            if (line == null) {
+                // Un prodotto uscito dal catalogo nel frattempo si salta, come farebbe la singola aggiunta
+                ProductSummary product = products.get(productId);
+                if (product == null || quantity == 0) {
+                    continue;
+                }
+                Mutation mutation = new Mutation(Operation.ADD, keycloakId, productId,
+                        product.price() == null ? 0L : product.price());
+                writeAheadLog.append(mutation);
+                apply(cart, mutation, product);
+                line = cart.lines.get(productId);
+            }
+            if (line.quantity != quantity) {
+                Mutation mutation = new Mutation(Operation.QUANTITY, keycloakId, productId, quantity);
+                writeAheadLog.append(mutation);
+                apply(cart, mutation);
+            }
+        }
+    }
+
+    // Si scrive solo il carrello dell'utente, sotto il lock del suo shard; la conferma sul database avviene fuori dal lock
+    public OrderDto placeOrder(PlaceOrderDto placeOrderDto) {
+        String keycloakId = placeOrderDto.getUserId();
+        Shard shard = shardFor(keycloakId);
+        ActiveCart cart;
+        shard.lock.lock();
+        try {
+            cart = shard.carts.get(keycloakId);
+            awaitFlush(shard, cart);
+            if (cart != null) {
+                if (cart.placing) {
+                    throw new IllegalStateException("Order is already being placed");
+                }
+                flushCart(cart);
+                cart.placing = true;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        try {
+            OrderDto orderDto = delegate.placeOrder(placeOrderDto);
+            if (cart != null) {
+                // Il carrello su MySQL è diventato un ordine: quello in memoria non serve più
+                shard.lock.lock();
+                try {
+                    shard.carts.remove(keycloakId, cart);
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return orderDto;
+        } finally {
+            if (cart != null) {
+                shard.lock.lock();
+                try {
+                    cart.placing = false;
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Chiamato con il lock dello shard: un flush periodico in volo su questo carrello va prima concluso
+    private void awaitFlush(Shard shard, ActiveCart cart) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(PLACE_ORDER_WAIT_MILLIS);
+        try {
+            while (cart != null && cart.flushing) {
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Cart is being saved, retry placing the order");
+                }
+                remaining = shard.flushed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while placing the order", e);
+        }
+    }
+
+    public OrderPageDto getMyPlacedOrders(String keycloakId, String cursor, Integer limit, LocalDate from, LocalDate to) {
+        return delegate.getMyPlacedOrders(keycloakId, cursor, limit, from, to);
+    }
+
+    @Override
+    public void removeCartItem(Long cartItemId, String keycloakId) {
+        withCart(keycloakId, cart -> {
+            if (cart == null) {
+                return null;
+            }
+            for (Line line : cart.lines.values()) {
+                if (cartItemId != null && (line.itemId == cartItemId || line.provisionalId == cartItemId)) {
+                    Mutation mutation = new Mutation(Operation.REMOVE, keycloakId, line.productId, null);
+                    writeAheadLog.append(mutation);
+                    apply(cart, mutation);
+                    inventoryService.reserve(keycloakId, line.productId, 0);
+                    break;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void clearCart(String keycloakId) {
+        withCart(keycloakId, cart -> {
+            if (cart != null && (!cart.lines.isEmpty() || !cart.removedPersisted.isEmpty())) {
+                Mutation mutation = new Mutation(Operation.CLEAR, keycloakId, null, null);
+                writeAheadLog.append(mutation);
+                apply(cart, mutation);
+            }
+            inventoryService.releaseAll(keycloakId);
+            return null;
+        });
+    }
+
+    // Nel log finisce la quantità risultante, non il delta: la ripetizione resta idempotente
+    private OrderDto changeQuantity(AddProductInCartDto addProductInCartDto, long delta) {
+        return withCart(addProductInCartDto.getUserId(), cart -> {
+            Line line = cart == null ? null : cart.lines.get(addProductInCartDto.getProductId());
+            if (line == null) {
+                return null;
+            }
+            // Sotto un pezzo non si scende: per toglierlo si rimuove la riga
+            if (line.quantity + delta >= 1) {
+                if (!inventoryService.reserve(addProductInCartDto.getUserId(), line.productId, line.quantity + delta)) {
+                    throw new OutOfStockException(line.productId);
+                }
+                Mutation mutation = new Mutation(Operation.QUANTITY, addProductInCartDto.getUserId(), line.productId,
+                        line.quantity + delta);
+                try {
+                    writeAheadLog.append(mutation);
+                } catch (RuntimeException e) {
+                    inventoryService.reserve(addProductInCartDto.getUserId(), line.productId, line.quantity);
+                    throw e;
+                }
+                apply(cart, mutation);
+            }
+            return toDto(cart);
+        });
+    }
+
+    private <T> T withCart(String keycloakId, Function<ActiveCart, T> action) {
+        Shard shard = shardFor(keycloakId);
+        shard.lock.lock();
+        try {
+            ActiveCart cart = shard.carts.get(keycloakId);
+            if (cart == null) {
+                cart = loadCart(keycloakId);
+                if (cart != null) {
+                    shard.carts.put(keycloakId, cart);
+                }
+            }
+            if (cart != null) {
+                if (cart.placing) {
+                    throw new IllegalStateException("Order is being placed, retry");
+                }
+                cart.lastAccess = System.currentTimeMillis();
+            }
+            return action.apply(cart);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private Shard shardFor(String keycloakId) {
+        return shards[Math.floorMod(Objects.hashCode(keycloakId), shards.length)];
+    }
+
+    // Un solo SELECT con righe e prodotti; l'ordine pending vuoto si crea solo al primo accesso dell'utente
+    private ActiveCart loadCart(String keycloakId) {
+        Optional<Order> optionalCart = orderRepository.findCartByKeycloakId(keycloakId);
+        if (optionalCart.isEmpty()) {
+            Optional<User> optionalUser = userRepository.findByKeycloakId(keycloakId);
+            if (optionalUser.isEmpty()) {
+                return null;
+            }
+            // Query di modifica: fuori da CartServiceImpl serve una transazione esplicita
+            transactionTemplate.executeWithoutResult(status ->
+                    orderRepository.insertCartIfAbsent(optionalUser.get().getId(), OrderStatus.Pending.ordinal()));
+            optionalCart = orderRepository.findCartByKeycloakId(keycloakId);
+            if (optionalCart.isEmpty()) {
+                return null;
+            }
+        }
+        Order order = optionalCart.get();
+
+        ActiveCart cart = new ActiveCart(keycloakId, order.getId(), order.getUser().getId(), order.getUser().getName());
+        if (order.getCartItems() != null) {
+            for (CartItems item : order.getCartItems()) {
+                Product product = item.getProduct();
+                Line line = new Line(item.getId(), product.getId(), item.getPrice(),
+                        item.getQuantity() == null ? 1L : item.getQuantity(), product.getName(),
+                        product.getImageHash(), product.getCategory() != null ? product.getCategory().getName() : null);
+                line.persisted = true;
+                cart.lines.put(product.getId(), line);
+            }
+        }
+        return cart;
+    }
+
+    private void apply(ActiveCart cart, Mutation mutation) {
+        if (mutation.operation() == Operation.ADD) {
+            // In ripetizione del log il prodotto può essere sparito dal catalogo: l'operazione si scarta
+            productCache.get(mutation.productId()).ifPresent(product -> apply(cart, mutation, product));
+            return;
+        }
+        if (mutation.operation() == Operation.QUANTITY) {
+            Line line = cart.lines.get(mutation.productId());
+            if (line == null) {
+                return;
+            }
+            line.quantity = mutation.value();
+            line.quantityChanged = true;
+        } else if (mutation.operation() == Operation.REMOVE) {
+            Line line = cart.lines.remove(mutation.productId());
+            if (line != null && line.persisted) {
+                cart.removedPersisted.add(line.productId);
+            }
+        } else {
+            cart.clearPersisted = true;
+            cart.lines.clear();
+            cart.removedPersisted.clear();
+        }
+        cart.dirty = true;
+    }
+
+    private void apply(ActiveCart cart, Mutation mutation, ProductSummary product) {
+        if (cart.lines.containsKey(product.id())) {
+            return;
+        }
+        cart.lines.put(product.id(), new Line(provisionalIds.decrementAndGet(), product.id(), mutation.value(), 1L,
+                product.name(), product.imageHash(), product.categoryName()));
+        cart.dirty = true;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.out.println("Cart flush failed: " + e.getMessage());
+        }
+    }
+
+    // Un flush alla volta (periodico, spegnimento); i segmenti del log si cancellano solo se tutti i carrelli sono stati scritti
+    synchronized void flush() throws IOException {
+        List<Long> closedSegments = writeAheadLog.rotate();
+        List<FlushTask> tasks = snapshotDirtyCarts();
+        boolean failed = false;
+        if (!tasks.isEmpty()) {
+            try {
+                assignItemIds(tasks, write(tasks));
+            } catch (RuntimeException e) {
+                restore(tasks);
+                // Un carrello non scrivibile non deve bloccare gli altri: si riprova un carrello alla volta
+                for (FlushTask task : tasks) {
+                    failed |= !retryCart(task.cart());
+                }
+            }
+        }
+        if (!failed) {
+            writeAheadLog.delete(closedSegments);
+        }
+        evictIdleCarts();
+    }
+
+    private boolean retryCart(ActiveCart cart) {
+        Shard shard = shardFor(cart.keycloakId);
+        shard.lock.lock();
+        try {
+            if (shard.carts.get(cart.keycloakId) == cart) {
+                flushCart(cart);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            System.out.println("Cart flush failed for order " + cart.orderId + ": " + e.getMessage());
+            return false;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Chiamato con il lock dello shard. Se la scrittura fallisce per un prodotto eliminato dal catalogo
+    // (chiave esterna di cart_items), la riga si scarta e si riprova una volta
+    private void flushCart(ActiveCart cart) {
+        if (!cart.dirty) {
+            return;
+        }
+        FlushTask task = snapshot(cart);
+        try {
+            assignItemIds(List.of(task), write(List.of(task)));
+        } catch (RuntimeException e) {
+            restore(List.of(task));
+            if (dropDeletedProducts(cart) == 0) {
+                throw e;
+            }
+            FlushTask retry = snapshot(cart);
+            try {
+                assignItemIds(List.of(retry), write(List.of(retry)));
+            } catch (RuntimeException retryFailure) {
+                restore(List.of(retry));
+                throw retryFailure;
+            }
+        }
+    }
+
+    // Chiamato con il lock dello shard; restituisce quante righe sono state tolte dal carrello
+    private int dropDeletedProducts(ActiveCart cart) {
+        List<Long> pending = new ArrayList<>();
+        for (Line line : cart.lines.values()) {
+            if (!line.persisted) {
+                pending.add(line.productId);
+            }
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(pending.size(), "?"));
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(String.format(SELECT_PRODUCT_IDS_SQL, placeholders),
+                Long.class, pending.toArray()));
+        int dropped = 0;
+        for (Long productId : pending) {
+            if (existing.contains(productId)) {
+                continue;
+            }
+            // Anche nel log, così una ripetizione dopo un crash non la ripropone
+            Mutation mutation = new Mutation(Operation.REMOVE, cart.keycloakId, productId, null);
+            writeAheadLog.append(mutation);
+            apply(cart, mutation);
+            inventoryService.reserve(cart.keycloakId, productId, 0);
+            dropped++;
+        }
+        if (dropped > 0) {
+            System.out.println("Cart of order " + cart.orderId + ": dropped " + dropped + " lines of deleted products");
+        }
+        return dropped;
+    }
+
+    private List<FlushTask> snapshotDirtyCarts() {
+        List<FlushTask> tasks = new ArrayList<>();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (ActiveCart cart : shard.carts.values()) {
+                    if (cart.dirty) {
+                        FlushTask task = snapshot(cart);
+                        cart.flushing = true;
+                        tasks.add(task);
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return tasks;
+    }
+
+    // Chiamato con il lock dello shard
+    private FlushTask snapshot(ActiveCart cart) {
+        List<LineState> inserts = new ArrayList<>();
+        List<LineState> quantityUpdates = new ArrayList<>();
+        long amount = 0;
+        for (Line line : cart.lines.values()) {
+            amount += line.amount();
+            if (!line.persisted) {
+                inserts.add(new LineState(line, line.quantity));
+                // Segnata subito come scritta: una rimozione durante il flush la cancellerà al giro dopo
+                line.persisted = true;
+            } else if (line.quantityChanged) {
+                quantityUpdates.add(new LineState(line, line.quantity));
+            }
+            line.quantityChanged = false;
+        }
+        FlushTask task = new FlushTask(cart, cart.clearPersisted, new ArrayList<>(cart.removedPersisted), inserts,
+                quantityUpdates, amount);
+        cart.clearPersisted = false;
+        cart.removedPersisted.clear();
+        cart.dirty = false;
+        return task;
+    }
+
+    // I carrelli passati finiscono in pochi batch JDBC e una transazione.
+    // Restituisce, per ogni ordine con righe nuove, gli id di cart_items per prodotto
+    private Map<Long, Map<Long, Long>> write(List<FlushTask> tasks) {
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> quantities = new ArrayList<>();
+        List<Object[]> totals = new ArrayList<>(tasks.size());
+        Set<Long> insertedOrders = new LinkedHashSet<>();
+        for (FlushTask task : tasks) {
+            Long orderId = task.cart().orderId;
+            if (task.clearAll()) {
+                clears.add(new Object[]{orderId});
+            }
+            for (Long productId : task.deletes()) {
+                deletes.add(new Object[]{orderId, productId});
+            }
+            if (!task.inserts().isEmpty()) {
+                insertedOrders.add(orderId);
+            }
+            for (LineState state : task.inserts()) {
+                inserts.add(new Object[]{state.line().price, state.quantity(), state.line().productId, task.cart().userId, orderId});
+            }
+            for (LineState state : task.quantityUpdates()) {
+                quantities.add(new Object[]{state.quantity(), orderId, state.line().productId});
+            }
+            totals.add(new Object[]{task.amount(), task.amount(), orderId});
+        }
+        return transactionTemplate.execute(status -> {
+            if (!clears.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_ALL_ITEMS_SQL, clears);
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_ITEM_SQL, deletes);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, inserts);
+            }
+            if (!quantities.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_QUANTITY_SQL, quantities);
+            }
+            jdbcTemplate.batchUpdate(UPDATE_TOTALS_SQL, totals);
+            Map<Long, Map<Long, Long>> itemIds = new HashMap<>();
+            if (!insertedOrders.isEmpty()) {
+                String placeholders = String.join(", ", Collections.nCopies(insertedOrders.size(), "?"));
+                jdbcTemplate.query(String.format(SELECT_ITEM_IDS_SQL, placeholders), rs -> {
+                    itemIds.computeIfAbsent(rs.getLong("order_id"), id -> new HashMap<>())
+                            .put(rs.getLong("product_id"), rs.getLong("id"));
+                }, insertedOrders.toArray());
+            }
+            return itemIds;
+        });
+    }
+
+    // Le righe appena scritte prendono l'id reale: è quello che il client rivedrà anche dopo un nuovo caricamento
+    private void assignItemIds(List<FlushTask> tasks, Map<Long, Map<Long, Long>> itemIds) {
+        for (FlushTask task : tasks) {
+            Map<Long, Long> ids = itemIds.getOrDefault(task.cart().orderId, Map.of());
+            Shard shard = shardFor(task.cart().keycloakId);
+            shard.lock.lock();
+            try {
+                for (LineState state : task.inserts()) {
+                    Long itemId = ids.get(state.line().productId);
+                    if (itemId != null && task.cart().lines.get(state.line().productId) == state.line()) {
+                        state.line().itemId = itemId;
+                    }
+                }
+                task.cart().flushing = false;
+                shard.flushed.signalAll();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Transazione annullata: i carrelli tornano da scrivere, il log resta su disco fino al prossimo flush riuscito
+    private void restore(List<FlushTask> tasks) {
+        for (FlushTask task : tasks) {
+            ActiveCart cart = task.cart();
+            Shard shard = shardFor(cart.keycloakId);
+            shard.lock.lock();
+            try {
+                cart.clearPersisted |= task.clearAll();
+                cart.removedPersisted.addAll(task.deletes());
+                for (LineState state : task.inserts()) {
+                    if (cart.lines.get(state.line().productId) == state.line()) {
+                        state.line().persisted = false;
+                    }
+                }
+                for (LineState state : task.quantityUpdates()) {
+                    state.line().quantityChanged = true;
+                }
+                cart.dirty = true;
+                cart.flushing = false;
+                shard.flushed.signalAll();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private void evictIdleCarts() {
+        long now = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.carts.values().removeIf(cart -> !cart.dirty && now - cart.lastAccess > idleMillis);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private static OrderDto toDto(ActiveCart cart) {
+        List<CartItemsDto> cartItemsDtoList = new ArrayList<>(cart.lines.size());
+        long amount = 0;
+        for (Line line : cart.lines.values()) {
+            CartItemsDto cartItemsDto = new CartItemsDto();
+            cartItemsDto.setId(line.itemId);
+            cartItemsDto.setPrice(line.price);
+            cartItemsDto.setProductId(line.productId);
+            cartItemsDto.setUserId((long) cart.userId);
+            cartItemsDto.setProductName(line.productName);
+            cartItemsDto.setImageUrl(ImageUtils.productImageUrl(line.productId, line.imageHash));
+            cartItemsDto.setCategoryName(line.categoryName);
+            cartItemsDto.setQuantity(line.quantity);
+            cartItemsDtoList.add(cartItemsDto);
+            amount += line.amount();
+        }
+
+        OrderDto orderDto = new OrderDto();
+        orderDto.setId(cart.orderId);
+        orderDto.setAmount(amount);
+        orderDto.setTotalAmount(amount);
+        orderDto.setOrderStatus(OrderStatus.Pending);
+        orderDto.setCartItems(cartItemsDtoList);
+        orderDto.setUserName(cart.userName);
+        return orderDto;
+    }
+
+}
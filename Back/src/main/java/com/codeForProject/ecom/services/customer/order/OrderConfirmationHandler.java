@@ -0,0 +1,14 @@
+package com.codeForProject.ecom.services.customer.order;
+
+import com.codeForProject.ecom.entity.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OrderConfirmationHandler implements OrderEventHandler {
+
+    // Nessun canale di notifica configurato: nel log solo l'id, niente dati del cliente né codice di tracking
+    public void onOrderPlaced(Order order) {
+        System.out.println("Order " + order.getId() + " confirmed");
+    }
+
+}
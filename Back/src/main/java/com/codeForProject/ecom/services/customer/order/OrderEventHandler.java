@@ -0,0 +1,12 @@
+package com.codeForProject.ecom.services.customer.order;
+
+import com.codeForProject.ecom.entity.Order;
+
+// Passo a valle della conferma, eseguito dai worker dell'outbox e non dalla richiesta HTTP.
+// Un evento fallito viene ripetuto per intero: ogni handler deve tollerare più esecuzioni.
+public interface OrderEventHandler {
+
+    // Ordine con utente, righe e prodotti già caricati
+    void onOrderPlaced(Order order);
+
+}
@@ -0,0 +1,11 @@
+package com.codeForProject.ecom.services.customer.order;
+
+public interface OrderOutboxService {
+
+    // Da chiamare dentro la transazione che conferma l'ordine
+    void recordOrderPlaced(Long orderId);
+
+    // Prende in carico gli eventi pronti e li passa ai worker; restituisce quanti ne ha inviati
+    int dispatchReadyEvents();
+
+}
@@ -0,0 +1,174 @@
+package com.codeForProject.ecom.services.customer.order;
+
+import com.codeForProject.ecom.config.AsyncConfiguration;
+import com.codeForProject.ecom.entity.Order;
+import com.codeForProject.ecom.entity.OrderOutboxEvent;
+import com.codeForProject.ecom.enums.OrderEventType;
+import com.codeForProject.ecom.enums.OutboxStatus;
+import com.codeForProject.ecom.repository.OrderOutboxRepository;
+import com.codeForProject.ecom.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class OrderOutboxServiceImpl implements OrderOutboxService {
+
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final OrderOutboxRepository outboxRepository;
+
+    private final OrderRepository orderRepository;
+
+    private final List<OrderEventHandler> handlers;
+
+    private final TaskExecutor executor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Un solo thread di dispatch: polling periodico e risvegli dopo il commit non si sovrappongono mai
+    private final ThreadPoolTaskScheduler dispatcher = new ThreadPoolTaskScheduler();
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final long pollIntervalMillis;
+
+    public OrderOutboxServiceImpl(OrderOutboxRepository outboxRepository, OrderRepository orderRepository,
+                                  List<OrderEventHandler> handlers,
+                                  @Qualifier(AsyncConfiguration.ORDER_EVENT_EXECUTOR) TaskExecutor executor,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.orders.outbox.batch-size:50}") int batchSize,
+                                  @Value("${app.orders.outbox.max-attempts:5}") int maxAttempts,
+                                  @Value("${app.orders.outbox.poll-interval-ms:1000}") long pollIntervalMillis) {
+        this.outboxRepository = outboxRepository;
+        this.orderRepository = orderRepository;
+        this.handlers = handlers;
+        this.executor = executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        // Eventi presi in carico da un processo terminato prima di completarli
+        int released = outboxRepository.transitionAll(OutboxStatus.Processing, OutboxStatus.Pending);
+        if (released > 0) {
+            System.out.println("Order outbox: " + released + " interrupted events released.");
+        }
+        dispatcher.setPoolSize(1);
+        dispatcher.setThreadNamePrefix("order-outbox-");
+        dispatcher.setWaitForTasksToCompleteOnShutdown(true);
+        dispatcher.setAwaitTerminationSeconds(30);
+        dispatcher.initialize();
+        dispatcher.scheduleWithFixedDelay(this::dispatchQuietly, Duration.ofMillis(pollIntervalMillis));
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdown();
+    }
+
+    public void recordOrderPlaced(Long orderId) {
+        OrderOutboxEvent event = new OrderOutboxEvent();
+        event.setOrderId(orderId);
+        event.setType(OrderEventType.OrderPlaced);
+        event.setStatus(OutboxStatus.Pending);
+        event.setCreatedAt(new Date());
+        event.setAvailableAt(event.getCreatedAt());
+        outboxRepository.save(event);
+
+        // Dopo il commit si risveglia il dispatcher, senza aspettare il prossimo polling
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        }
+    }
+
+    public int dispatchReadyEvents() {
+        List<Long> ids = outboxRepository.findReadyIds(OutboxStatus.Pending, new Date(), PageRequest.of(0, batchSize));
+        int dispatched = 0;
+        for (Long id : ids) {
+            if (outboxRepository.transition(id, OutboxStatus.Pending, OutboxStatus.Processing) == 0) {
+                continue;
+            }
+            try {
+                executor.execute(() -> process(id));
+                dispatched++;
+            } catch (TaskRejectedException e) {
+                // Worker saturi: l'evento torna in coda e il resto del lotto aspetta il prossimo giro
+                outboxRepository.transition(id, OutboxStatus.Processing, OutboxStatus.Pending);
+                break;
+            }
+        }
+        return dispatched;
+    }
+
+    private void wakeUp() {
+        try {
+            dispatcher.execute(this::dispatchQuietly);
+        } catch (TaskRejectedException e) {
+            // Dispatcher fermo durante lo shutdown: l'evento resta Pending e riparte al prossimo avvio
+        }
+    }
+
+    private void dispatchQuietly() {
+        try {
+            dispatchReadyEvents();
+        } catch (Exception e) {
+            System.out.println("Order outbox dispatch failed: " + e.getMessage());
+        }
+    }
+
+    private void process(Long id) {
+        Optional<OrderOutboxEvent> optionalEvent = outboxRepository.findById(id);
+        if (optionalEvent.isEmpty()) {
+            return;
+        }
+        OrderOutboxEvent event = optionalEvent.get();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Optional<Order> optionalOrder = orderRepository.findWithItemsById(event.getOrderId());
+                // Ordine cancellato nel frattempo: non c'è più nulla da notificare
+                if (optionalOrder.isPresent() && event.getType() == OrderEventType.OrderPlaced) {
+                    for (OrderEventHandler handler : handlers) {
+                        handler.onOrderPlaced(optionalOrder.get());
+                    }
+                }
+            });
+            outboxRepository.deleteById(id);
+        } catch (Exception e) {
+            int attempts = event.getAttempts() + 1;
+            boolean exhausted = attempts >= maxAttempts;
+            long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 16));
+            String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            outboxRepository.reschedule(id, exhausted ? OutboxStatus.Failed : OutboxStatus.Pending, attempts,
+                    new Date(System.currentTimeMillis() + backoffSeconds * 1000),
+                    error.length() > 500 ? error.substring(0, 500) : error);
+            System.out.println("Order outbox event " + id + " failed (attempt " + attempts + "): " + error);
+        }
+    }
+
+}
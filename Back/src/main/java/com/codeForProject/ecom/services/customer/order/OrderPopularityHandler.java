@@ -0,0 +1,38 @@
+package com.codeForProject.ecom.services.customer.order;
+
+import com.codeForProject.ecom.entity.CartItems;
+import com.codeForProject.ecom.entity.Order;
+import com.codeForProject.ecom.services.search.ProductSuggester;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// I prodotti acquistati salgono nei suggerimenti in proporzione ai pezzi ordinati; è l'unica fonte della popolarità
+@Component
+public class OrderPopularityHandler implements OrderEventHandler {
+
+    private final ProductSuggester productSuggester;
+
+    // Ordini già contati: un evento ripetuto per colpa di un altro handler non conta due volte.
+    // Dopo un riavvio la popolarità riparte dal database, che esclude gli ordini ancora nell'outbox.
+    private final Cache<Long, Boolean> countedOrders = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofDays(1))
+            .build();
+
+    public OrderPopularityHandler(ProductSuggester productSuggester) {
+        this.productSuggester = productSuggester;
+    }
+
+    public void onOrderPlaced(Order order) {
+        if (countedOrders.asMap().putIfAbsent(order.getId(), Boolean.TRUE) != null) {
+            return;
+        }
+        for (CartItems item : order.getCartItems()) {
+            productSuggester.bumpPopularity(item.getProduct().getId(), item.getQuantity() == null ? 1L : item.getQuantity());
+        }
+    }
+
+}
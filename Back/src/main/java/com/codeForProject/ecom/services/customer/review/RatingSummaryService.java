@@ -0,0 +1,10 @@
+package com.codeForProject.ecom.services.customer.review;
+
+public interface RatingSummaryService {
+
+    void recordRating(Long productId, long rating);
+
+    // Ricalcola tutti gli aggregati dalle recensioni esistenti, ritorna il numero di prodotti
+    int rebuild();
+
+}
@@ -0,0 +1,43 @@
+package com.codeForProject.ecom.services.customer.review;
+
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.ProductRatingSummaryRepository;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.product.ProductCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class RatingSummaryServiceImpl implements RatingSummaryService {
+
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
+
+    private final ProductCache productCache;
+
+    private final CatalogVersion catalogVersion;
+
+    @Transactional
+    public void recordRating(Long productId, long rating) {
+        if (rating < 1 || rating > 5) {
+            throw new ValidationException("Rating must be between 1 and 5");
+        }
+        int star = (int) rating;
+        ratingSummaryRepository.addRating(productId, rating,
+                star == 1 ? 1 : 0, star == 2 ? 1 : 0, star == 3 ? 1 : 0, star == 4 ? 1 : 0, star == 5 ? 1 : 0);
+        // Media e conteggio fanno parte del ProductSummary in cache
+        productCache.invalidate(productId);
+        catalogVersion.bump();
+    }
+
+    @Transactional
+    public int rebuild() {
+        ratingSummaryRepository.deleteAllRows();
+        int products = ratingSummaryRepository.insertFromReviews();
+        productCache.invalidateAll();
+        catalogVersion.bump();
+        return products;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.codeForProject.ecom.services.customer.review;
 
 import com.codeForProject.ecom.dto.OrderedProductsResponseDto;
 import com.codeForProject.ecom.dto.ReviewDto;
+import com.codeForProject.ecom.dto.ReviewPageDto;
 
 import java.io.IOException;
 
@@ -11,4 +12,6 @@ public interface ReviewService {
 
     ReviewDto giveReview(ReviewDto reviewDto) throws IOException;
 
+    ReviewPageDto getProductReviews(Long productId, String cursor, Integer limit);
+
 }
@@ -2,19 +2,32 @@ package com.codeForProject.ecom.services.customer.review;
 
 import com.codeForProject.ecom.dto.OrderedProductsResponseDto;
 import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductSummary;
 import com.codeForProject.ecom.dto.ReviewDto;
+import com.codeForProject.ecom.dto.ReviewPageDto;
+import com.codeForProject.ecom.dto.ReviewSummary;
 import com.codeForProject.ecom.entity.*;
+import com.codeForProject.ecom.exceptions.ValidationException;
 import com.codeForProject.ecom.repository.OrderRepository;
 import com.codeForProject.ecom.repository.ProductRepository;
 import com.codeForProject.ecom.repository.ReviewRepository;
 import com.codeForProject.ecom.repository.UserRepository;
+import com.codeForProject.ecom.services.blob.BlobStore;
+import com.codeForProject.ecom.services.image.ImageUtils;
+import com.codeForProject.ecom.services.product.ProductCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +37,15 @@ public class ReviewServiceImpl implements ReviewService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final ReviewRepository reviewRepository;
+    private final ProductCache productCache;
+    private final BlobStore blobStore;
+    private final RatingSummaryService ratingSummaryService;
+
+    @Value("${app.reviews.page-size.default:10}")
+    private int defaultPageSize;
+
+    @Value("${app.reviews.page-size.max:100}")
+    private int maxPageSize;
 
     public OrderedProductsResponseDto getOrderedProductsDetailsByOrderId(Long orderId) {
         Optional<Order> optionalOrder = orderRepository.findById(orderId);
@@ -40,7 +62,7 @@ public class ReviewServiceImpl implements ReviewService {
                 productDto.setPrice(cartItems.getProduct().getPrice());
                 productDto.setQuantity(1L);
 
-                productDto.setByteImg(cartItems.getProduct().getImage());
+                productDto.setImageUrl(ImageUtils.productImageUrl(cartItems.getProduct().getId(), cartItems.getProduct().getImageHash()));
 
                 productDtoList.add(productDto);
             }
@@ -49,8 +71,13 @@ public class ReviewServiceImpl implements ReviewService {
         return orderedProductsResponseDto;
     }
 
+    // Recensione e aggregato nella stessa transazione: il riepilogo non diverge mai dalle righe
+    @Transactional
     public ReviewDto giveReview(ReviewDto reviewDto) throws IOException {
-        Optional<Product> optionalProduct = productRepository.findById(reviewDto.getProductId());
+        if (reviewDto.getRating() == null || reviewDto.getRating() < 1 || reviewDto.getRating() > 5) {
+            throw new ValidationException("Rating must be between 1 and 5");
+        }
+        Optional<ProductSummary> optionalProduct = productCache.get(reviewDto.getProductId());
         Optional<User> optionalUser = userRepository.findByKeycloakId(reviewDto.getUserId());
 
         if (optionalProduct.isPresent() && optionalUser.isPresent()) {
@@ -59,12 +86,62 @@ public class ReviewServiceImpl implements ReviewService {
             review.setRating(reviewDto.getRating());
             review.setDescription(reviewDto.getDescription());
             review.setUser(optionalUser.get());
-            review.setProduct(optionalProduct.get());
-            review.setImg(reviewDto.getImg().getBytes());
+            review.setProduct(productRepository.getReferenceById(optionalProduct.get().id()));
+            if (reviewDto.getImg() != null && !reviewDto.getImg().isEmpty()) {
+                String imgHash = blobStore.put(reviewDto.getImg().getInputStream());
+                review.setImgHash(imgHash);
+                releaseOnRollback(imgHash);
+            }
 
-            return reviewRepository.save(review).getDto();
+            Review savedReview = reviewRepository.save(review);
+            ratingSummaryService.recordRating(reviewDto.getProductId(), reviewDto.getRating());
+            return savedReview.getDto();
         }
         return null;
     }
 
+    // Il blob è già scritto: se la recensione non arriva al commit il riferimento va rilasciato
+    private void releaseOnRollback(String imgHash) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        blobStore.release(imgHash);
+                    }
+                }
+            });
+        }
+    }
+
+    public ReviewPageDto getProductReviews(Long productId, String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                beforeId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Invalid cursor");
+            }
+        }
+        // Una riga in più per sapere se esiste una pagina successiva
+        List<ReviewSummary> reviews = reviewRepository.findPageByProductId(productId, beforeId, PageRequest.of(0, pageSize + 1));
+        String nextCursor = null;
+        if (reviews.size() > pageSize) {
+            reviews = reviews.subList(0, pageSize);
+            nextCursor = String.valueOf(reviews.get(pageSize - 1).id());
+        }
+        return new ReviewPageDto(reviews.stream().map(ReviewSummary::toDto).collect(Collectors.toList()), nextCursor);
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
 }
@@ -0,0 +1,10 @@
+package com.codeForProject.ecom.services.customer.waitingroom;
+
+import com.codeForProject.ecom.dto.WaitingRoomDto;
+
+public interface WaitingRoomService {
+
+    // null se la richiesta può proseguire, altrimenti posizione e attesa stimata nella coda del prodotto
+    WaitingRoomDto admit(String keycloakId, Long productId);
+
+}
@@ -0,0 +1,212 @@
+package com.codeForProject.ecom.services.customer.waitingroom;
+
+import com.codeForProject.ecom.dto.WaitingRoomDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sala d'attesa per i prodotti presi d'assalto. Sotto soglia le richieste passano senza alcuna coda;
+// oltre la soglia il prodotto apre una sala: ogni utente riceve un biglietto in ordine d'arrivo e i biglietti
+// vengono ammessi a velocità costante. Chi è in coda riceve subito posizione e attesa, senza occupare thread
+// né connessioni al database, così il resto del negozio non rallenta. Chi è ammesso riceve un pass valido per
+// qualche minuto, che copre le richieste successive sullo stesso prodotto.
+@Service
+public class WaitingRoomServiceImpl implements WaitingRoomService {
+
+    private record PassKey(String keycloakId, Long productId) { }
+
+    // Richieste per prodotto nel secondo corrente
+    private static final class RateWindow {
+
+        final AtomicLong count = new AtomicLong();
+
+        volatile long second;
+
+        volatile long lastRate;
+
+    }
+
+    private static final class Room {
+
+        // Biglietti in attesa o ammessi ma non ancora usati, per utente
+        final Map<String, Long> tickets = new HashMap<>();
+
+        long issued;
+
+        // Biglietti ammessi finora: cresce di admitPerSecond al secondo, con al massimo burst di anticipo
+        double admitted;
+
+        long lastAdvance;
+
+        long quietSince;
+
+    }
+
+    private final Map<Long, RateWindow> rates = new ConcurrentHashMap<>();
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    private final Map<PassKey, Long> passes = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+    private final boolean enabled;
+
+    private final long hotThresholdPerSecond;
+
+    private final double admitPerSecond;
+
+    // Ammissioni disponibili subito all'apertura: un secondo di portata, almeno una
+    private final double burst;
+
+    private final long passMillis;
+
+    private final long cooldownMillis;
+
+    public WaitingRoomServiceImpl(@Value("${app.waiting-room.enabled:true}") boolean enabled,
+                                  @Value("${app.waiting-room.hot-threshold-per-second:200}") long hotThresholdPerSecond,
+                                  @Value("${app.waiting-room.admit-per-second:50}") double admitPerSecond,
+                                  @Value("${app.waiting-room.pass-minutes:10}") long passMinutes,
+                                  @Value("${app.waiting-room.cooldown-seconds:30}") long cooldownSeconds) {
+        this.enabled = enabled;
+        this.hotThresholdPerSecond = hotThresholdPerSecond;
+        this.admitPerSecond = Math.max(0.1, admitPerSecond);
+        this.burst = Math.max(1, this.admitPerSecond);
+        this.passMillis = Duration.ofMinutes(passMinutes).toMillis();
+        this.cooldownMillis = Duration.ofSeconds(cooldownSeconds).toMillis();
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("waiting-room-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::cleanUpQuietly, Duration.ofSeconds(1));
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdown();
+    }
+
+    public WaitingRoomDto admit(String keycloakId, Long productId) {
+        if (!enabled || productId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long rate = count(productId, now);
+
+        Room room = rooms.get(productId);
+        if (room == null) {
+            if (rate <= hotThresholdPerSecond) {
+                return null;
+            }
+            room = rooms.computeIfAbsent(productId, id -> openRoom(id, now));
+        }
+
+        PassKey passKey = new PassKey(keycloakId, productId);
+        Long pass = passes.get(passKey);
+        if (pass != null && pass > now) {
+            return null;
+        }
+
+        // Lock per prodotto: le operazioni sono solo aritmetica in memoria
+        synchronized (room) {
+            advance(room, now);
+            Long ticket = room.tickets.get(keycloakId);
+            if (ticket == null) {
+                ticket = room.issued++;
+                room.tickets.put(keycloakId, ticket);
+            }
+            if (ticket < (long) room.admitted) {
+                room.tickets.remove(keycloakId);
+                passes.put(passKey, now + passMillis);
+                return null;
+            }
+            long position = ticket - (long) room.admitted + 1;
+            return new WaitingRoomDto(productId, position, (long) Math.ceil(position / admitPerSecond));
+        }
+    }
+
+    private long count(Long productId, long now) {
+        long second = now / 1000;
+        RateWindow window = rates.computeIfAbsent(productId, id -> new RateWindow());
+        if (window.second != second) {
+            synchronized (window) {
+                if (window.second != second) {
+                    // Il secondo appena chiuso diventa la velocità di riferimento per la chiusura della sala
+                    window.lastRate = window.second == second - 1 ? window.count.get() : 0;
+                    window.count.set(0);
+                    window.second = second;
+                }
+            }
+        }
+        return window.count.incrementAndGet();
+    }
+
+    private Room openRoom(Long productId, long now) {
+        Room room = new Room();
+        // L'apertura non blocca chi arriva per primo
+        room.admitted = burst;
+        room.lastAdvance = now;
+        System.out.println("Waiting room opened for product " + productId);
+        return room;
+    }
+
+    private void advance(Room room, long now) {
+        double credit = (now - room.lastAdvance) * admitPerSecond / 1000.0;
+        room.admitted = Math.min(room.issued + burst, room.admitted + credit);
+        room.lastAdvance = now;
+    }
+
+    private void cleanUpQuietly() {
+        try {
+            cleanUp(System.currentTimeMillis());
+        } catch (Exception e) {
+            System.out.println("Waiting room clean-up failed: " + e.getMessage());
+        }
+    }
+
+    private void cleanUp(long now) {
+        passes.entrySet().removeIf(entry -> entry.getValue() <= now);
+        long second = now / 1000;
+        // Finestre dei prodotti senza richieste nell'ultimo minuto
+        rates.entrySet().removeIf(entry -> entry.getValue().second < second - 60 && !rooms.containsKey(entry.getKey()));
+
+        for (Map.Entry<Long, Room> entry : rooms.entrySet()) {
+            Room room = entry.getValue();
+            RateWindow window = rates.get(entry.getKey());
+            long rate = window == null || window.second < second - 1 ? 0
+                    : window.second == second ? window.lastRate : window.count.get();
+            synchronized (room) {
+                advance(room, now);
+                // Biglietti ammessi da più di un pass senza che l'utente sia tornato
+                long abandonedBelow = (long) (room.admitted - admitPerSecond * passMillis / 1000.0);
+                room.tickets.values().removeIf(ticket -> ticket < abandonedBelow);
+
+                if (rate > hotThresholdPerSecond) {
+                    room.quietSince = 0;
+                    continue;
+                }
+                if (room.quietSince == 0) {
+                    room.quietSince = now;
+                }
+                // Si chiude solo a coda vuota: chi arriva dopo non deve scavalcare chi aspetta
+                boolean drained = room.admitted >= room.issued;
+                if (drained && now - room.quietSince >= cooldownMillis) {
+                    rooms.remove(entry.getKey(), room);
+                    System.out.println("Waiting room closed for product " + entry.getKey());
+                }
+            }
+        }
+    }
+
+}
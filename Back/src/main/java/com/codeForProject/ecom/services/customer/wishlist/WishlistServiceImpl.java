@@ -1,12 +1,14 @@
 package com.codeForProject.ecom.services.customer.wishlist;
 
+import com.codeForProject.ecom.dto.ProductSummary;
 import com.codeForProject.ecom.dto.WishlistDto;
-import com.codeForProject.ecom.entity.Product;
 import com.codeForProject.ecom.entity.User;
 import com.codeForProject.ecom.entity.Wishlist;
 import com.codeForProject.ecom.repository.ProductRepository;
 import com.codeForProject.ecom.repository.UserRepository;
 import com.codeForProject.ecom.repository.WishlistRepository;
+import com.codeForProject.ecom.services.image.ImageUtils;
+import com.codeForProject.ecom.services.product.ProductCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -24,31 +26,43 @@ public class WishlistServiceImpl implements WishlistService {
 
     private final WishlistRepository wishlistRepository;
 
+    private final ProductCache productCache;
+
     public WishlistDto addProductToWishlist(WishlistDto wishlistDto) {
         System.out.println("WishlistService: Adding product - productId: " + wishlistDto.getProductId() + ", userId: " + wishlistDto.getUserId());
-        Optional<Product> optionalProduct = productRepository.findById(wishlistDto.getProductId());
+        Optional<ProductSummary> optionalProduct = productCache.get(wishlistDto.getProductId());
         Optional<User> optionalUser = userRepository.findByKeycloakId(wishlistDto.getUserId());
 
         if (optionalProduct.isPresent() && optionalUser.isPresent()) {
             System.out.println("WishlistService: Both product and user found, creating wishlist entry");
             User user = optionalUser.get();
-            Product product = optionalProduct.get();
+            ProductSummary product = optionalProduct.get();
 
             // Controllo duplicati: se esiste già una wishlist per (user, product), non aggiungere
-            boolean exists = wishlistRepository.existsByUserIdAndProductId((long) user.getId(), product.getId());
+            boolean exists = wishlistRepository.existsByUserIdAndProductId((long) user.getId(), product.id());
             if (exists) {
-                System.out.println("WishlistService: Duplicate detected for userId=" + user.getId() + " and productId=" + product.getId());
+                System.out.println("WishlistService: Duplicate detected for userId=" + user.getId() + " and productId=" + product.id());
                 // Restituisci null per segnalare al controller un tentativo duplicato
                 return null;
             }
 
             Wishlist wishlist = new Wishlist();
-            wishlist.setProduct(product);
+            wishlist.setProduct(productRepository.getReferenceById(product.id()));
             wishlist.setUser(user);
 
             Wishlist savedWishlist = wishlistRepository.save(wishlist);
             System.out.println("WishlistService: Wishlist saved with ID: " + savedWishlist.getId());
-            return savedWishlist.getWishlistDto();
+
+            // DTO costruito dalla cache: il proxy del prodotto non viene inizializzato
+            WishlistDto savedDto = new WishlistDto();
+            savedDto.setId(savedWishlist.getId());
+            savedDto.setProductId(product.id());
+            savedDto.setImageUrl(ImageUtils.productImageUrl(product.id(), product.imageHash()));
+            savedDto.setProductName(product.name());
+            savedDto.setProductDescription(product.description());
+            savedDto.setPrice(product.price());
+            savedDto.setUserId(String.valueOf(user.getId()));
+            return savedDto;
         }
         System.out.println("WishlistService: Product or user not found - product present: " + optionalProduct.isPresent() + ", user present: " + optionalUser.isPresent());
         return null;
@@ -0,0 +1,11 @@
+package com.codeForProject.ecom.services.image;
+
+public interface ImageDerivativeService {
+
+    void scheduleProductDerivatives(Long productId, String imageHash);
+
+    void generateProductDerivatives(Long productId, String imageHash);
+
+    void deleteProductDerivatives(Long productId);
+
+}
@@ -0,0 +1,198 @@
+package com.codeForProject.ecom.services.image;
+
+import com.codeForProject.ecom.config.AsyncConfiguration;
+import com.codeForProject.ecom.entity.ProductImageVariant;
+import com.codeForProject.ecom.enums.ImageVariantStatus;
+import com.codeForProject.ecom.repository.ProductImageVariantRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.services.blob.BlobStore;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.product.ProductCache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+@Service
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+
+    private final ProductRepository productRepository;
+
+    private final ProductImageVariantRepository variantRepository;
+
+    private final ProductCache productCache;
+
+    private final BlobStore blobStore;
+
+    private final CatalogVersion catalogVersion;
+
+    private final TaskExecutor executor;
+
+    private final int[] widths;
+
+    private final float quality;
+
+    public ImageDerivativeServiceImpl(ProductRepository productRepository,
+                                      ProductImageVariantRepository variantRepository,
+                                      ProductCache productCache,
+                                      BlobStore blobStore,
+                                      CatalogVersion catalogVersion,
+                                      @Qualifier(AsyncConfiguration.IMAGE_EXECUTOR) TaskExecutor executor,
+                                      @Value("${app.images.derivatives.widths:160,480,1200}") int[] widths,
+                                      @Value("${app.images.derivatives.jpeg-quality:0.8}") float quality) {
+        this.productRepository = productRepository;
+        this.variantRepository = variantRepository;
+        this.productCache = productCache;
+        this.blobStore = blobStore;
+        this.catalogVersion = catalogVersion;
+        this.executor = executor;
+        this.widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        this.quality = quality;
+    }
+
+    // Ritorna subito: la richiesta admin non aspetta il ridimensionamento
+    public void scheduleProductDerivatives(Long productId, String imageHash) {
+        if (imageHash == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> generateProductDerivatives(productId, imageHash));
+        } catch (TaskRejectedException e) {
+            // Coda piena: il prodotto resta Pending e verrà ripreso al prossimo avvio
+            System.out.println("Image derivatives queue full, product " + productId + " left pending");
+        }
+    }
+
+    public void generateProductDerivatives(Long productId, String imageHash) {
+        try {
+            Optional<String> currentHash = productRepository.findImageHashById(productId);
+            if (currentHash.isEmpty() || !imageHash.equals(currentHash.get())) {
+                // Immagine sostituita o prodotto eliminato prima che il job partisse
+                return;
+            }
+            Optional<Path> original = blobStore.locate(imageHash);
+            BufferedImage source = original.isPresent() ? ImageIO.read(original.get().toFile()) : null;
+            if (source == null) {
+                markStatus(productId, imageHash, ImageVariantStatus.Failed);
+                return;
+            }
+
+            for (int width : targetWidths(source.getWidth())) {
+                BufferedImage scaled = scale(source, width);
+                saveVariant(productId, imageHash, scaled, encodeJpeg(scaled));
+            }
+            List<String> staleBlobs = variantRepository.findStaleBlobHashes(productId, imageHash);
+            variantRepository.deleteStale(productId, imageHash);
+            staleBlobs.forEach(blobStore::release);
+            markStatus(productId, imageHash, ImageVariantStatus.Ready);
+        } catch (Exception e) {
+            System.out.println("Image derivatives failed for product " + productId + ": " + e.getMessage());
+            markStatus(productId, imageHash, ImageVariantStatus.Failed);
+        }
+    }
+
+    public void deleteProductDerivatives(Long productId) {
+        List<String> blobs = variantRepository.findBlobHashesByProductId(productId);
+        variantRepository.deleteAllByProductId(productId);
+        blobs.forEach(blobStore::release);
+    }
+
+    // La stessa immagine può essere rigenerata (backfill all'avvio, stesso file ricaricato): la variante esistente
+    // viene aggiornata invece di duplicata
+    private void saveVariant(Long productId, String imageHash, BufferedImage scaled, byte[] data) throws IOException {
+        ProductImageVariant variant = variantRepository
+                .findByProductIdAndSourceHashAndWidth(productId, imageHash, scaled.getWidth())
+                .orElseGet(ProductImageVariant::new);
+        String previousBlob = variant.getBlobHash();
+        String blobHash = blobStore.put(data);
+        variant.setProductId(productId);
+        variant.setSourceHash(imageHash);
+        variant.setWidth(scaled.getWidth());
+        variant.setHeight(scaled.getHeight());
+        variant.setContentType("image/jpeg");
+        variant.setByteSize(data.length);
+        variant.setBlobHash(blobHash);
+        try {
+            variantRepository.save(variant);
+        } catch (DataIntegrityViolationException e) {
+            // Un altro job ha inserito la stessa variante nel frattempo: si tiene la sua
+            blobStore.release(blobHash);
+            return;
+        }
+        if (previousBlob != null) {
+            blobStore.release(previousBlob);
+        }
+    }
+
+    // Solo riduzioni: le larghezze maggiori dell'originale collassano in una copia ricompressa a grandezza piena
+    private TreeSet<Integer> targetWidths(int sourceWidth) {
+        TreeSet<Integer> result = new TreeSet<>();
+        for (int width : widths) {
+            result.add(Math.min(width, sourceWidth));
+        }
+        return result;
+    }
+
+    private BufferedImage scale(BufferedImage source, int width) {
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+        // RGB senza alpha: il JPEG non supporta la trasparenza, lo sfondo diventa bianco
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void markStatus(Long productId, String imageHash, ImageVariantStatus status) {
+        productRepository.updateImageVariantStatus(productId, imageHash, status);
+        productCache.invalidate(productId);
+        catalogVersion.bump();
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.codeForProject.ecom.services.image;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface ImageService {
+
+    Optional<String> getProductImageHash(Long productId);
+
+    Optional<Integer> findProductVariantWidth(Long productId, String imageHash, int requestedWidth);
+
+    Optional<String> getProductVariantHash(Long productId, String imageHash, int width);
+
+    Optional<String> getReviewImageHash(Long reviewId);
+
+    Optional<String> getUserImageHash(Integer userId);
+
+    Optional<Path> getImageFile(String hash);
+
+}
@@ -0,0 +1,63 @@
+package com.codeForProject.ecom.services.image;
+
+import com.codeForProject.ecom.repository.ProductImageVariantRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.repository.ReviewRepository;
+import com.codeForProject.ecom.repository.UserRepository;
+import com.codeForProject.ecom.services.blob.BlobStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class ImageServiceImpl implements ImageService {
+
+    private final ProductRepository productRepository;
+
+    private final ReviewRepository reviewRepository;
+
+    private final UserRepository userRepository;
+
+    private final ProductImageVariantRepository variantRepository;
+
+    private final BlobStore blobStore;
+
+    public Optional<String> getProductImageHash(Long productId) {
+        return productRepository.findImageHashById(productId);
+    }
+
+    // La variante più piccola larga almeno quanto richiesto, altrimenti la più larga disponibile
+    public Optional<Integer> findProductVariantWidth(Long productId, String imageHash, int requestedWidth) {
+        List<Integer> widths = variantRepository.findWidths(productId, imageHash);
+        if (widths.isEmpty()) {
+            return Optional.empty();
+        }
+        for (Integer width : widths) {
+            if (width >= requestedWidth) {
+                return Optional.of(width);
+            }
+        }
+        return Optional.of(widths.get(widths.size() - 1));
+    }
+
+    public Optional<String> getProductVariantHash(Long productId, String imageHash, int width) {
+        return variantRepository.findBlobHash(productId, imageHash, width);
+    }
+
+    public Optional<String> getReviewImageHash(Long reviewId) {
+        return reviewRepository.findImgHashById(reviewId);
+    }
+
+    public Optional<String> getUserImageHash(Integer userId) {
+        return userRepository.findImageHashById(userId);
+    }
+
+    public Optional<Path> getImageFile(String hash) {
+        return blobStore.locate(hash);
+    }
+
+}
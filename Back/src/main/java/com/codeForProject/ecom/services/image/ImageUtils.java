@@ -0,0 +1,26 @@
+package com.codeForProject.ecom.services.image;
+
+public final class ImageUtils {
+
+    public static final String PRODUCT_IMAGE_PATH = "/api/images/product/";
+
+    public static final String REVIEW_IMAGE_PATH = "/api/images/review/";
+
+    public static final String USER_IMAGE_PATH = "/api/images/user/";
+
+    private ImageUtils() { }
+
+    // L'hash nella query string versiona l'URL: quando l'immagine cambia cambia anche l'URL
+    public static String productImageUrl(Long productId, String hash) {
+        return hash == null ? null : PRODUCT_IMAGE_PATH + productId + "?v=" + hash;
+    }
+
+    public static String reviewImageUrl(Long reviewId, String hash) {
+        return hash == null ? null : REVIEW_IMAGE_PATH + reviewId + "?v=" + hash;
+    }
+
+    public static String userImageUrl(Integer userId, String hash) {
+        return hash == null ? null : USER_IMAGE_PATH + userId + "?v=" + hash;
+    }
+
+}
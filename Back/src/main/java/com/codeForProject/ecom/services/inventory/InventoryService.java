@@ -0,0 +1,29 @@
+package com.codeForProject.ecom.services.inventory;
+
+import java.util.Map;
+
+public interface InventoryService {
+
+    // Porta la prenotazione dell'utente sul prodotto a quantity pezzi (0 = rilascio); false se i pezzi non bastano.
+    // I prodotti senza giacenza registrata non hanno limiti e restituiscono sempre true.
+    boolean reserve(String keycloakId, Long productId, long quantity);
+
+    // Più prenotazioni, tutte o nessuna: se un prodotto non basta le altre tornano a previousQuantities
+    // (0 se assente) e parte una OutOfStockException
+    void reserveAll(String keycloakId, Map<Long, Long> quantities, Map<Long, Long> previousQuantities);
+
+    void releaseAll(String keycloakId);
+
+    // Trasforma le prenotazioni in vendite dentro la transazione dell'ordine; OutOfStockException se un prodotto non basta
+    void commitSale(String keycloakId, Long orderId, Map<Long, Long> quantities);
+
+    // Carico (delta positivo) o scarico dei soli pezzi liberi, delta 0 non ammesso; restituisce la variazione applicata
+    long adjustStock(Long productId, long delta);
+
+    // Pezzi né venduti né prenotati, null se il prodotto non ha giacenza registrata
+    Long getAvailable(Long productId);
+
+    // Riporta su product_inventory un blocco di vendite; restituisce quante ne ha elaborate
+    int reconcile();
+
+}
@@ -0,0 +1,339 @@
+package com.codeForProject.ecom.services.inventory;
+
+import com.codeForProject.ecom.entity.InventoryMovement;
+import com.codeForProject.ecom.entity.ProductInventory;
+import com.codeForProject.ecom.exceptions.OutOfStockException;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.InventoryMovementRepository;
+import com.codeForProject.ecom.repository.ProductInventoryRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Disponibilità in memoria: prenotazioni e vendite non toccano la riga del prodotto su MySQL.
+// Una vendita scrive una riga in inventory_movement con l'ordine; la riconciliazione periodica le somma
+// su product_inventory con un UPDATE per prodotto. All'avvio la disponibilità è giacenza meno vendite
+// non ancora riconciliate; le prenotazioni invece vivono solo in memoria, come i carrelli che le generano
+// e che al checkout le richiedono di nuovo. Pensato per una sola istanza dell'applicazione.
+@Service
+public class InventoryServiceImpl implements InventoryService {
+
+    private record ReservationKey(String keycloakId, Long productId) { }
+
+    private record Reservation(long quantity, long expiresAt) { }
+
+    private final ProductInventoryRepository inventoryRepository;
+
+    private final InventoryMovementRepository movementRepository;
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+    private final Map<Long, StripedStock> stocks = new ConcurrentHashMap<>();
+
+    private final Map<ReservationKey, Reservation> reservations = new ConcurrentHashMap<>();
+
+    private final int stripeCount;
+
+    private final long reservationTtlMillis;
+
+    private final int reconcileBatchSize;
+
+    private final long reconcileIntervalMillis;
+
+    public InventoryServiceImpl(ProductInventoryRepository inventoryRepository,
+                                InventoryMovementRepository movementRepository,
+                                ProductRepository productRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.inventory.stripes:16}") int stripeCount,
+                                @Value("${app.inventory.reservation-ttl-minutes:15}") long reservationTtlMinutes,
+                                @Value("${app.inventory.reconcile-batch-size:1000}") int reconcileBatchSize,
+                                @Value("${app.inventory.reconcile-interval-ms:2000}") long reconcileIntervalMillis) {
+        this.inventoryRepository = inventoryRepository;
+        this.movementRepository = movementRepository;
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripeCount = stripeCount;
+        this.reservationTtlMillis = Duration.ofMinutes(reservationTtlMinutes).toMillis();
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.reconcileIntervalMillis = reconcileIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        loadAvailability();
+
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("inventory-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly, Duration.ofMillis(reconcileIntervalMillis));
+    }
+
+    void loadAvailability() {
+        Map<Long, Long> unreconciled = new HashMap<>();
+        for (Object[] row : movementRepository.sumGroupByProductId()) {
+            unreconciled.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        for (ProductInventory inventory : inventoryRepository.findAll()) {
+            long available = inventory.getStock() - unreconciled.getOrDefault(inventory.getProductId(), 0L);
+            stocks.put(inventory.getProductId(), new StripedStock(stripeCount, Math.max(0, available)));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdown();
+    }
+
+    public boolean reserve(String keycloakId, Long productId, long quantity) {
+        StripedStock stock = stocks.get(productId);
+        if (stock == null) {
+            return true;
+        }
+        ReservationKey key = new ReservationKey(keycloakId, productId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return apply(key, stock, quantity);
+        }
+        // Dentro la transazione del carrello: gli aumenti valgono subito (i pezzi vanno bloccati prima delle scritture),
+        // le riduzioni solo al commit; con un rollback la prenotazione torna com'era all'inizio della transazione
+        PendingReservations pending = pendingReservations();
+        Reservation current = reservations.get(key);
+        long held = current == null ? 0 : current.quantity();
+        pending.original.putIfAbsent(key, held);
+        if (quantity < held) {
+            pending.shrinks.put(key, quantity);
+            return true;
+        }
+        pending.shrinks.remove(key);
+        return apply(key, stock, quantity);
+    }
+
+    private boolean apply(ReservationKey key, StripedStock stock, long quantity) {
+        boolean[] reserved = {true};
+        // compute blocca solo la coppia utente/prodotto: utenti diversi prenotano in parallelo
+        reservations.compute(key, (k, current) -> {
+            long held = current == null ? 0 : current.quantity();
+            if (quantity > held && !stock.take(quantity - held)) {
+                reserved[0] = false;
+                return current;
+            }
+            if (quantity < held) {
+                stock.give(held - quantity);
+            }
+            return quantity <= 0 ? null : new Reservation(quantity, System.currentTimeMillis() + reservationTtlMillis);
+        });
+        return reserved[0];
+    }
+
+    // Prenotazioni toccate dalla transazione corrente, una sola sincronizzazione per transazione
+    private PendingReservations pendingReservations() {
+        PendingReservations pending = (PendingReservations) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingReservations();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private final class PendingReservations implements TransactionSynchronization {
+
+        // Quantità prenotata prima della prima modifica nella transazione
+        final Map<ReservationKey, Long> original = new HashMap<>();
+
+        final Map<ReservationKey, Long> shrinks = new HashMap<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(InventoryServiceImpl.this);
+            Map<ReservationKey, Long> targets = status == STATUS_COMMITTED ? shrinks : original;
+            targets.forEach((key, quantity) -> {
+                StripedStock stock = stocks.get(key.productId());
+                if (stock != null) {
+                    apply(key, stock, quantity);
+                }
+            });
+        }
+
+    }
+
+    public void reserveAll(String keycloakId, Map<Long, Long> quantities, Map<Long, Long> previousQuantities) {
+        List<Long> reserved = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Long> entry : quantities.entrySet()) {
+            if (!reserve(keycloakId, entry.getKey(), entry.getValue())) {
+                for (Long productId : reserved) {
+                    reserve(keycloakId, productId, previousQuantities.getOrDefault(productId, 0L));
+                }
+                throw new OutOfStockException(entry.getKey());
+            }
+            reserved.add(entry.getKey());
+        }
+    }
+
+    // Scansione completa: lo svuotamento del carrello è raro rispetto alle prenotazioni
+    public void releaseAll(String keycloakId) {
+        for (ReservationKey key : List.copyOf(reservations.keySet())) {
+            if (key.keycloakId().equals(keycloakId)) {
+                reserve(keycloakId, key.productId(), 0);
+            }
+        }
+    }
+
+    public void commitSale(String keycloakId, Long orderId, Map<Long, Long> quantities) {
+        Map<Long, Long> taken = new HashMap<>();
+        for (Map.Entry<Long, Long> entry : quantities.entrySet()) {
+            StripedStock stock = stocks.get(entry.getKey());
+            if (stock == null) {
+                continue;
+            }
+            Reservation reservation = reservations.remove(new ReservationKey(keycloakId, entry.getKey()));
+            long held = reservation == null ? 0 : reservation.quantity();
+            long quantity = entry.getValue();
+            // Prenotazione scaduta o più piccola del carrello: si prova a prendere la differenza
+            if (quantity > held && !stock.take(quantity - held)) {
+                stock.give(held);
+                giveBack(taken);
+                throw new OutOfStockException(entry.getKey());
+            }
+            if (held > quantity) {
+                stock.give(held - quantity);
+            }
+            taken.put(entry.getKey(), quantity);
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+
+        List<InventoryMovement> movements = new ArrayList<>(taken.size());
+        Date now = new Date();
+        taken.forEach((productId, quantity) -> {
+            InventoryMovement movement = new InventoryMovement();
+            movement.setProductId(productId);
+            movement.setOrderId(orderId);
+            movement.setQuantity(quantity);
+            movement.setCreatedAt(now);
+            movements.add(movement);
+        });
+        movementRepository.saveAll(movements);
+
+        // Se l'ordine non arriva al commit i pezzi tornano disponibili
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        giveBack(taken);
+                    }
+                }
+            });
+        }
+    }
+
+    public long adjustStock(Long productId, long delta) {
+        // Con delta 0 nascerebbe una giacenza vuota: un prodotto senza limiti diventerebbe non acquistabile
+        if (delta == 0) {
+            throw new ValidationException("delta must not be zero");
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new ValidationException("Product not found with ID: " + productId);
+        }
+        if (delta > 0) {
+            transactionTemplate.executeWithoutResult(status -> inventoryRepository.addStock(productId, delta));
+            stocks.computeIfAbsent(productId, id -> new StripedStock(stripeCount, 0)).give(delta);
+            return delta;
+        }
+        StripedStock stock = stocks.get(productId);
+        if (stock == null) {
+            return 0;
+        }
+        // Si scaricano solo pezzi liberi: quelli prenotati o venduti restano coperti
+        long taken = stock.takeUpTo(-delta);
+        try {
+            transactionTemplate.executeWithoutResult(status -> inventoryRepository.addStock(productId, -taken));
+        } catch (RuntimeException e) {
+            stock.give(taken);
+            throw e;
+        }
+        return -taken;
+    }
+
+    public Long getAvailable(Long productId) {
+        StripedStock stock = stocks.get(productId);
+        return stock == null ? null : stock.available();
+    }
+
+    public int reconcile() {
+        Integer processed = transactionTemplate.execute(status -> {
+            List<InventoryMovement> movements = movementRepository.findOldest(PageRequest.of(0, reconcileBatchSize));
+            if (movements.isEmpty()) {
+                return 0;
+            }
+            // Ordine fisso degli UPDATE per prodotto
+            Map<Long, Long> sold = new TreeMap<>();
+            List<Long> ids = new ArrayList<>(movements.size());
+            for (InventoryMovement movement : movements) {
+                sold.merge(movement.getProductId(), movement.getQuantity(), Long::sum);
+                ids.add(movement.getId());
+            }
+            sold.forEach(inventoryRepository::recordSold);
+            // Cancellazione per id: una vendita ancora in transazione non è stata letta e non va toccata
+            movementRepository.deleteAllByIdInBatch(ids);
+            return movements.size();
+        });
+        return processed == null ? 0 : processed;
+    }
+
+    private void maintainQuietly() {
+        try {
+            releaseExpired();
+            // Arretrato dopo un picco di vendite: si prosegue finché i blocchi escono pieni
+            int processed;
+            do {
+                processed = reconcile();
+            } while (processed == reconcileBatchSize);
+        } catch (Exception e) {
+            System.out.println("Inventory reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    void releaseExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<ReservationKey, Reservation> entry : reservations.entrySet()) {
+            Reservation reservation = entry.getValue();
+            // remove(key, value) fallisce se nel frattempo la prenotazione è stata rinnovata
+            if (reservation.expiresAt() < now && reservations.remove(entry.getKey(), reservation)) {
+                StripedStock stock = stocks.get(entry.getKey().productId());
+                if (stock != null) {
+                    stock.give(reservation.quantity());
+                }
+            }
+        }
+    }
+
+    private void giveBack(Map<Long, Long> taken) {
+        taken.forEach((productId, quantity) -> stocks.get(productId).give(quantity));
+    }
+
+}
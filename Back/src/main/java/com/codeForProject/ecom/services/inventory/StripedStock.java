@@ -0,0 +1,73 @@
+package com.codeForProject.ecom.services.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pezzi disponibili di un prodotto divisi in più contatori: acquisti concorrenti dello stesso prodotto
+// partono da contatori diversi invece di contendersi un solo valore.
+class StripedStock {
+
+    private final AtomicLong[] stripes;
+
+    StripedStock(int stripeCount, long available) {
+        this.stripes = new AtomicLong[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new AtomicLong();
+        }
+        give(available);
+    }
+
+    // Tutto o niente: se i contatori non bastano quanto preso viene restituito
+    boolean take(long quantity) {
+        long taken = takeUpTo(quantity);
+        if (taken < quantity) {
+            give(taken);
+            return false;
+        }
+        return true;
+    }
+
+    long takeUpTo(long quantity) {
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        long taken = 0;
+        for (int i = 0; i < stripes.length && taken < quantity; i++) {
+            AtomicLong stripe = stripes[(start + i) % stripes.length];
+            long current = stripe.get();
+            while (current > 0) {
+                long part = Math.min(current, quantity - taken);
+                if (stripe.compareAndSet(current, current - part)) {
+                    taken += part;
+                    break;
+                }
+                current = stripe.get();
+            }
+        }
+        return taken;
+    }
+
+    // Ripartito su tutti i contatori, così i prelievi successivi trovano pezzi ovunque partano
+    void give(long quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        long share = quantity / stripes.length;
+        long remainder = quantity % stripes.length;
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            long part = share + (i < remainder ? 1 : 0);
+            if (part > 0) {
+                stripes[(start + i) % stripes.length].addAndGet(part);
+            }
+        }
+    }
+
+    // Somma non atomica: durante i prelievi concorrenti è una stima
+    long available() {
+        long total = 0;
+        for (AtomicLong stripe : stripes) {
+            total += stripe.get();
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.codeForProject.ecom.services.product;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Esegue un'azione quando la transazione corrente è confermata; senza transazione la esegue subito.
+// Cache e versione del catalogo devono cambiare solo quando i lettori possono già vedere le nuove righe.
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+}
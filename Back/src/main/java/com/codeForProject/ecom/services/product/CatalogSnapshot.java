@@ -0,0 +1,14 @@
+package com.codeForProject.ecom.services.product;
+
+// Pagina di default già serializzata in JSON (e compressa) per una versione del catalogo
+public record CatalogSnapshot(long version, byte[] json, byte[] gzip, String nextCursor, int productCount) {
+
+    public String etag() {
+        return CatalogVersion.etag(version);
+    }
+
+    public boolean empty() {
+        return productCount == 0;
+    }
+
+}
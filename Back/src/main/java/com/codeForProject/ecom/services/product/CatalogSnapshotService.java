@@ -0,0 +1,9 @@
+package com.codeForProject.ecom.services.product;
+
+public interface CatalogSnapshotService {
+
+    // Prima pagina con ordinamento e dimensione di default; categoryName null = tutte le categorie.
+    // Le categorie senza prodotti (anche i nomi inesistenti) vengono servite ma non restano in cache
+    CatalogSnapshot getDefaultPage(String categoryName);
+
+}
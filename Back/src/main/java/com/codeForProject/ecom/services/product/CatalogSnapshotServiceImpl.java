@@ -0,0 +1,120 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.config.AsyncConfiguration;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class CatalogSnapshotServiceImpl implements CatalogSnapshotService {
+
+    private static final String ALL_CATEGORIES = "";
+
+    private final ProductPageService productPageService;
+
+    private final CatalogVersion catalogVersion;
+
+    private final ObjectMapper objectMapper;
+
+    private final TaskExecutor executor;
+
+    // Limitata: il path della categoria arriva dal client e i nomi inventati non devono occupare posto per sempre
+    private final Cache<String, CatalogSnapshot> snapshots;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    public CatalogSnapshotServiceImpl(ProductPageService productPageService, CatalogVersion catalogVersion,
+                                      ObjectMapper objectMapper,
+                                      @Qualifier(AsyncConfiguration.SNAPSHOT_EXECUTOR) TaskExecutor executor,
+                                      @Value("${app.products.snapshots.max-entries:64}") int maxEntries) {
+        this.productPageService = productPageService;
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxEntries))
+                .build();
+    }
+
+    public CatalogSnapshot getDefaultPage(String categoryName) {
+        String key = categoryName == null ? ALL_CATEGORIES : categoryName;
+        CatalogSnapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot == null) {
+            // Rendering fuori da qualsiasi lock della cache: due prime richieste concorrenti al massimo lo fanno due volte
+            CatalogSnapshot rendered = render(key);
+            if (rendered.empty() && !ALL_CATEGORIES.equals(key)) {
+                // Categoria inesistente o vuota: risposta servita ma non tenuta in cache
+                return rendered;
+            }
+            CatalogSnapshot existing = snapshots.asMap().putIfAbsent(key, rendered);
+            return existing == null ? rendered : existing;
+        }
+        if (snapshot.version() != catalogVersion.current()) {
+            // Finché il rebuild non termina si serve lo snapshot precedente, con il suo ETag
+            scheduleRebuild();
+        }
+        return snapshot;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::rebuildStale);
+        } catch (TaskRejectedException e) {
+            rebuildScheduled.set(false);
+        }
+    }
+
+    private void rebuildStale() {
+        try {
+            Map<String, CatalogSnapshot> entries = snapshots.asMap();
+            for (Map.Entry<String, CatalogSnapshot> entry : Map.copyOf(entries).entrySet()) {
+                if (entry.getValue().version() != catalogVersion.current()) {
+                    // replace: una chiave rimossa dall'eviction nel frattempo non torna in cache
+                    entries.replace(entry.getKey(), entry.getValue(), render(entry.getKey()));
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Catalog snapshot rebuild failed: " + e.getMessage());
+        } finally {
+            // Una modifica arrivata durante il rebuild verrà ripresa dalla prossima richiesta
+            rebuildScheduled.set(false);
+        }
+    }
+
+    private CatalogSnapshot render(String key) {
+        // La versione si legge prima della query: al peggio lo snapshot risulta vecchio e viene ricostruito
+        long version = catalogVersion.current();
+        ProductPageDto page = productPageService.findPage(ALL_CATEGORIES.equals(key) ? null : key, null, null, null);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(page.getProducts());
+            return new CatalogSnapshot(version, json, gzip(json), page.getNextCursor(), page.getProducts().size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+}
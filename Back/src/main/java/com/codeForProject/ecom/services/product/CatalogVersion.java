@@ -0,0 +1,31 @@
+package com.codeForProject.ecom.services.product;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Versione del catalogo: cresce a ogni modifica che cambia ciò che vedono gli endpoint di lettura del negozio
+@Component
+public class CatalogVersion {
+
+    // Parte dall'ora di avvio: dopo un riavvio non riusa versioni (ed ETag) già emesse
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    // Dentro una transazione la versione cresce solo al commit: prima un lettore salverebbe i dati vecchi col nuovo ETag
+    public void bump() {
+        AfterCommit.run(version::incrementAndGet);
+    }
+
+    public String etag() {
+        return etag(current());
+    }
+
+    public static String etag(long version) {
+        return "\"catalog-" + version + "\"";
+    }
+
+}
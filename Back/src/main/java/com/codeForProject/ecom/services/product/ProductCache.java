@@ -0,0 +1,114 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Cache read-through dei prodotti (senza immagine), limitata in byte e con eviction W-TinyLFU di Caffeine
+@Component
+public class ProductCache {
+
+    private final LoadingCache<Long, ProductSummary> cache;
+
+    private final long maxBytes;
+
+    public ProductCache(ProductRepository productRepository,
+                        @Value("${app.cache.products.max-bytes:67108864}") long maxBytes,
+                        @Value("${app.cache.products.expire-after-write-minutes:30}") long expireAfterWriteMinutes) {
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long id, ProductSummary product) -> estimateBytes(product))
+                // Rete di sicurezza per scritture che non passano dall'admin service
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ProductSummary load(Long id) {
+                        return productRepository.findSummaryById(id).orElse(null);
+                    }
+
+                    // I prodotti mancanti arrivano con un solo SELECT ... WHERE id IN
+                    @Override
+                    public Map<Long, ProductSummary> loadAll(Set<? extends Long> ids) {
+                        Map<Long, ProductSummary> loaded = new HashMap<>();
+                        for (ProductSummary product : productRepository.findSummariesByIdIn(List.copyOf(ids))) {
+                            loaded.put(product.id(), product);
+                        }
+                        return loaded;
+                    }
+                });
+    }
+
+    public Optional<ProductSummary> get(Long productId) {
+        if (productId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(productId));
+    }
+
+    // Prodotti esistenti tra quelli richiesti; gli id sconosciuti mancano dalla mappa
+    public Map<Long, ProductSummary> getAll(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return cache.getAll(productIds);
+    }
+
+    // Si invalida subito e di nuovo al commit: una lettura concorrente alla transazione rimetterebbe in cache la riga vecchia
+    public void invalidate(Long productId) {
+        cache.invalidate(productId);
+        AfterCommit.run(() -> cache.invalidate(productId));
+    }
+
+    public void invalidateAll(Collection<Long> productIds) {
+        List<Long> ids = List.copyOf(productIds);
+        cache.invalidateAll(ids);
+        AfterCommit.run(() -> cache.invalidateAll(ids));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        AfterCommit.run(cache::invalidateAll);
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("weightedBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+
+    // Stima grossolana dell'occupazione: header oggetti + caratteri UTF-16 delle stringhe
+    private static int estimateBytes(ProductSummary product) {
+        int chars = length(product.name()) + length(product.description())
+                + length(product.imageHash()) + length(product.categoryName());
+        return 128 + chars * 2;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+}
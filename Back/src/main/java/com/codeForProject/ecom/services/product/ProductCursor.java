@@ -0,0 +1,57 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.enums.ProductSort;
+import com.codeForProject.ecom.exceptions.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Cursore opaco per la paginazione keyset: chiave di ordinamento + (valore, id) dell'ultima riga restituita.
+// Il valore porta un prefisso: "=" seguito dal valore, oppure "!" se l'ultima riga aveva prezzo o nome null
+public record ProductCursor(ProductSort sort, Long id, String value) {
+
+    private static final char VALUE_PREFIX = '=';
+
+    private static final char NULL_VALUE = '!';
+
+    public String encode() {
+        String encodedValue = sort == ProductSort.ID ? "" : value == null ? String.valueOf(NULL_VALUE) : VALUE_PREFIX + value;
+        String raw = sort.name() + "|" + id + "|" + encodedValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token, ProductSort expectedSort) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            ProductSort sort = ProductSort.valueOf(parts[0]);
+            if (sort != expectedSort) {
+                throw new ValidationException("Cursor was issued for sort " + sort + ", not " + expectedSort);
+            }
+            return new ProductCursor(sort, Long.parseLong(parts[1]), decodeValue(sort, parts.length > 2 ? parts[2] : ""));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+
+    private static String decodeValue(ProductSort sort, String encoded) {
+        if (sort == ProductSort.ID) {
+            return null;
+        }
+        if (encoded.length() == 1 && encoded.charAt(0) == NULL_VALUE) {
+            return null;
+        }
+        if (!encoded.isEmpty() && encoded.charAt(0) == VALUE_PREFIX) {
+            return encoded.substring(1);
+        }
+        throw new ValidationException("Invalid cursor");
+    }
+
+    public boolean hasNullValue() {
+        return sort != ProductSort.ID && value == null;
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.codeForProject.ecom.services.product;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ProductExportService {
+
+    // Scrive l'intero catalogo come NDJSON (un prodotto per riga) senza materializzarlo in memoria
+    long exportNdjson(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,102 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.services.image.ImageUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@Service
+public class ProductExportServiceImpl implements ProductExportService {
+
+    private static final String EXPORT_SQL = "SELECT p.id, p.name, p.price, p.description, p.image_hash, " +
+            "p.image_variant_status, c.id AS category_id, c.name AS category_name " +
+            "FROM product p JOIN category c ON c.id = p.category_id ORDER BY p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final int fetchSize;
+
+    private final int flushEvery;
+
+    public ProductExportServiceImpl(JdbcTemplate jdbcTemplate,
+                                    ObjectMapper objectMapper,
+                                    @Value("${app.export.fetch-size:500}") int fetchSize,
+                                    @Value("${app.export.flush-every:1000}") int flushEvery) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = Math.max(1, fetchSize);
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    public long exportNdjson(OutputStream out) throws IOException {
+        long[] written = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // Un oggetto per riga: il separatore di default tra valori root sarebbe uno spazio
+            generator.setRootValueSeparator(null);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            // Cursore forward-only: le righe vengono lette a blocchi di fetchSize e scritte subito
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // Il driver MySQL ignora un fetch size positivo senza useCursorFetch e caricherebbe tutto il risultato:
+                // Integer.MIN_VALUE attiva lo streaming riga per riga solo su questo statement
+                statement.setFetchSize(isMySql(connection) ? Integer.MIN_VALUE : fetchSize);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    writeProduct(generator, rs);
+                    written[0]++;
+                    if (written[0] % flushEvery == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    // Client disconnesso: interrompe la lettura del cursore
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written[0];
+    }
+
+    private static boolean isMySql(Connection connection) throws SQLException {
+        return "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+
+    private void writeProduct(JsonGenerator generator, ResultSet rs) throws IOException, SQLException {
+        long id = rs.getLong("id");
+        generator.writeStartObject();
+        generator.writeNumberField("id", id);
+        generator.writeStringField("name", rs.getString("name"));
+        long price = rs.getLong("price");
+        if (rs.wasNull()) {
+            generator.writeNullField("price");
+        } else {
+            generator.writeNumberField("price", price);
+        }
+        generator.writeStringField("description", rs.getString("description"));
+        generator.writeStringField("imageUrl", ImageUtils.productImageUrl(id, rs.getString("image_hash")));
+        generator.writeStringField("imageStatus", rs.getString("image_variant_status"));
+        generator.writeNumberField("categoryId", rs.getLong("category_id"));
+        generator.writeStringField("categoryName", rs.getString("category_name"));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.dto.ProductFacetPageDto;
+import com.codeForProject.ecom.dto.ProductFilterDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+
+public interface ProductPageService {
+
+    // categoryName è opzionale (null = tutte le categorie)
+    ProductPageDto findPage(String categoryName, String cursor, Integer limit, String sort);
+
+    // Filtri e faccette dal catalogo in memoria; facets null se non richieste
+    ProductFacetPageDto browse(ProductFilterDto filter, String cursor, Integer limit, String sort, boolean includeFacets);
+
+    // Ricerca full-text sull'indice in memoria; sort null = per rilevanza, altrimenti id, prezzo o nome
+    ProductPageDto search(String query, String cursor, Integer limit, String sort);
+
+}
@@ -0,0 +1,229 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductFacetPageDto;
+import com.codeForProject.ecom.dto.ProductFacetsDto;
+import com.codeForProject.ecom.dto.ProductFilterDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.dto.ProductSummary;
+import com.codeForProject.ecom.enums.ProductSort;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ProductPageServiceImpl implements ProductPageService {
+
+    private final ProductRepository productRepository;
+
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ProductCatalogIndex productCatalogIndex;
+
+    @Value("${app.products.page-size.default:50}")
+    private int defaultPageSize;
+
+    @Value("${app.products.page-size.max:200}")
+    private int maxPageSize;
+
+    @Value("${app.products.facets.price-buckets:10}")
+    private int priceBuckets;
+
+    public ProductPageDto findPage(String categoryName, String cursor, Integer limit, String sort) {
+        ProductSort productSort = ProductSort.from(sort);
+        if (productSort == ProductSort.RELEVANCE) {
+            throw new ValidationException("Sort by relevance is only available for search");
+        }
+        ProductCursor after = ProductCursor.decode(cursor, productSort);
+        int pageSize = resolvePageSize(limit);
+
+        // L'ordine per nome viene solo dal catalogo in memoria, come in browse e nella ricerca:
+        // la collation di MySQL non coincide col comparatore dell'indice e i cursori non sarebbero intercambiabili
+        if (productSort == ProductSort.NAME) {
+            Long categoryId = categoryName == null ? null : productCatalogIndex.categoryId(categoryName);
+            if (categoryName != null && categoryId == null) {
+                return new ProductPageDto(List.of(), null);
+            }
+            ProductCatalogIndex.Filter indexFilter = new ProductCatalogIndex.Filter(categoryId, null, null);
+            return catalogPage(productCatalogIndex.page(indexFilter, productSort, catalogAfter(productSort, after), pageSize),
+                    productSort);
+        }
+
+        // Una riga in più per sapere se esiste una pagina successiva, senza query di count
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        Long afterId = after == null ? null : after.id();
+        boolean afterNull = after != null && after.hasNullValue();
+
+        List<ProductSummary> products = switch (productSort) {
+            case ID -> productRepository.findPageOrderById(categoryName, afterId, pageable);
+            case PRICE -> productRepository.findPageOrderByPrice(categoryName,
+                    afterId, afterNull, after == null ? null : parsePrice(after.value()), pageable);
+            case NAME, RELEVANCE -> throw new IllegalStateException();
+        };
+
+        String nextCursor = null;
+        if (products.size() > pageSize) {
+            products = products.subList(0, pageSize);
+            ProductSummary last = products.get(pageSize - 1);
+            nextCursor = new ProductCursor(productSort, last.id(), sortValue(productSort, last)).encode();
+        }
+
+        List<ProductDto> productDtos = products.stream().map(ProductSummary::toDto).collect(Collectors.toList());
+        return new ProductPageDto(productDtos, nextCursor);
+    }
+
+    public ProductPageDto search(String query, String cursor, Integer limit, String sort) {
+        // Senza sort i risultati restano ordinati per rilevanza
+        ProductSort productSort = sort == null || sort.isBlank() ? ProductSort.RELEVANCE : ProductSort.from(sort);
+        if (productSort != ProductSort.RELEVANCE) {
+            return searchSorted(query, cursor, limit, productSort);
+        }
+        ProductCursor after = ProductCursor.decode(cursor, ProductSort.RELEVANCE);
+        int pageSize = resolvePageSize(limit);
+
+        ProductSearchIndex.Hit afterHit = after == null ? null : new ProductSearchIndex.Hit(after.id(), parseScore(after.value()));
+        List<ProductSearchIndex.Hit> hits = productSearchIndex.search(query, afterHit, pageSize + 1);
+
+        String nextCursor = null;
+        if (hits.size() > pageSize) {
+            hits = hits.subList(0, pageSize);
+            ProductSearchIndex.Hit last = hits.get(pageSize - 1);
+            nextCursor = new ProductCursor(ProductSort.RELEVANCE, last.productId(), Float.toString(last.score())).encode();
+        }
+        if (hits.isEmpty()) {
+            return new ProductPageDto(List.of(), null);
+        }
+
+        List<Long> ids = hits.stream().map(ProductSearchIndex.Hit::productId).collect(Collectors.toList());
+        List<ProductDto> productDtos = loadInOrder(ids).stream().map(ProductSummary::toDto).collect(Collectors.toList());
+        return new ProductPageDto(productDtos, nextCursor);
+    }
+
+    // I match della ricerca ordinati per id, prezzo o nome dal catalogo in memoria, con lo stesso cursore di browse
+    private ProductPageDto searchSorted(String query, String cursor, Integer limit, ProductSort productSort) {
+        ProductCursor after = ProductCursor.decode(cursor, productSort);
+        int pageSize = resolvePageSize(limit);
+
+        ProductCatalogIndex.Page page = productCatalogIndex.page(productSearchIndex.matchingIds(query),
+                productSort, catalogAfter(productSort, after), pageSize);
+        return catalogPage(page, productSort);
+    }
+
+    public ProductFacetPageDto browse(ProductFilterDto filter, String cursor, Integer limit, String sort, boolean includeFacets) {
+        ProductSort productSort = ProductSort.from(sort);
+        if (productSort == ProductSort.RELEVANCE) {
+            throw new ValidationException("Sort by relevance is only available for search");
+        }
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new ValidationException("minPrice cannot be greater than maxPrice");
+        }
+        ProductCursor after = ProductCursor.decode(cursor, productSort);
+        int pageSize = resolvePageSize(limit);
+
+        ProductCatalogIndex.Filter indexFilter =
+                new ProductCatalogIndex.Filter(filter.getCategoryId(), filter.getMinPrice(), filter.getMaxPrice());
+
+        // Filtro e ordinamento in memoria, dal database si leggono solo le righe della pagina
+        ProductPageDto page = catalogPage(
+                productCatalogIndex.page(indexFilter, productSort, catalogAfter(productSort, after), pageSize), productSort);
+
+        ProductFacetsDto facets = null;
+        if (includeFacets) {
+            ProductCatalogIndex.Facets indexFacets = productCatalogIndex.facets(indexFilter, priceBuckets);
+            facets = new ProductFacetsDto(indexFacets.total(),
+                    indexFacets.categories().stream()
+                            .map(c -> new ProductFacetsDto.CategoryFacet(c.categoryId(), c.categoryName(), c.count()))
+                            .collect(Collectors.toList()),
+                    indexFacets.priceBuckets().stream()
+                            .map(b -> new ProductFacetsDto.PriceBucket(b.from(), b.to(), b.count()))
+                            .collect(Collectors.toList()));
+        }
+
+        return new ProductFacetPageDto(page.getProducts(), page.getNextCursor(), facets);
+    }
+
+    // Carica le righe di una pagina del catalogo in memoria e ne ricava il cursore successivo
+    private ProductPageDto catalogPage(ProductCatalogIndex.Page page, ProductSort productSort) {
+        List<ProductSummary> products = loadInOrder(page.productIds());
+
+        String nextCursor = null;
+        if (page.hasMore() && !products.isEmpty()) {
+            ProductSummary last = products.get(products.size() - 1);
+            nextCursor = new ProductCursor(productSort, last.id(), sortValue(productSort, last)).encode();
+        }
+
+        List<ProductDto> productDtos = products.stream().map(ProductSummary::toDto).collect(Collectors.toList());
+        return new ProductPageDto(productDtos, nextCursor);
+    }
+
+    // Gli indici in memoria restituiscono solo gli id: una sola query per chiave primaria carica la pagina
+    private List<ProductSummary> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductSummary> summaries = productRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductSummary::id, Function.identity()));
+        return ids.stream().map(summaries::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private ProductCatalogIndex.After catalogAfter(ProductSort sort, ProductCursor after) {
+        if (after == null) {
+            return null;
+        }
+        return new ProductCatalogIndex.After(after.id(),
+                sort == ProductSort.PRICE ? parsePrice(after.value()) : null,
+                sort == ProductSort.NAME ? after.value() : null);
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private String sortValue(ProductSort sort, ProductSummary product) {
+        return switch (sort) {
+            case ID -> null;
+            case PRICE -> product.price() == null ? null : String.valueOf(product.price());
+            case NAME -> product.name();
+            case RELEVANCE -> throw new IllegalStateException();
+        };
+    }
+
+    private float parseScore(String value) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+
+    private Long parsePrice(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+
+}
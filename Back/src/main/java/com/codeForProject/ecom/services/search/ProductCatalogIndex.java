@@ -0,0 +1,315 @@
+package com.codeForProject.ecom.services.search;
+
+import com.codeForProject.ecom.enums.ProductSort;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Catalogo in memoria a colonne (struct-of-arrays) per filtri e faccette senza interrogare il database:
+// ogni prodotto occupa uno slot, prezzi e categorie stanno in array primitivi, una bitset per categoria
+@Component
+public class ProductCatalogIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Comparator<String> NAME_ORDER =
+            Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()));
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    private long[] prices = new long[INITIAL_CAPACITY];
+
+    // Prodotti senza prezzo: in prices hanno 0, ma i filtri di prezzo li escludono e l'ordinamento li mette per primi come MySQL
+    private final BitSet unpriced = new BitSet();
+
+    private int[] categories = new int[INITIAL_CAPACITY];
+
+    // Solo per l'ordinamento per nome
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    private final BitSet live = new BitSet();
+
+    private final Map<Long, Integer> slotById = new HashMap<>();
+
+    private final Map<Long, Integer> categoryOrdinals = new HashMap<>();
+
+    private final List<Long> categoryIds = new ArrayList<>();
+
+    private final List<String> categoryNames = new ArrayList<>();
+
+    private final List<BitSet> categoryBits = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Filter(Long categoryId, Long minPrice, Long maxPrice) { }
+
+    // Chiave di ordinamento dell'ultima riga già restituita
+    public record After(long id, Long price, String name) { }
+
+    public record CategoryCount(Long categoryId, String categoryName, long count) { }
+
+    // Intervallo [from, to] inclusivo
+    public record PriceBucket(long from, long to, long count) { }
+
+    public record Facets(long total, List<CategoryCount> categories, List<PriceBucket> priceBuckets) { }
+
+    public record Page(List<Long> productIds, boolean hasMore) { }
+
+    public void put(Long productId, String name, Long price, Long categoryId, String categoryName) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotById.get(productId);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                categoryBits.get(categories[slot]).clear(slot);
+            } else {
+                // Riusa il primo slot liberato da una rimozione
+                slot = live.nextClearBit(0);
+                if (slot >= ids.length) {
+                    grow(slot + 1);
+                }
+                slotById.put(productId, slot);
+                live.set(slot);
+            }
+            int ordinal = categoryOrdinal(categoryId, categoryName);
+            ids[slot] = productId;
+            prices[slot] = price == null ? 0L : price;
+            unpriced.set(slot, price == null);
+            categories[slot] = ordinal;
+            names[slot] = name;
+            categoryBits.get(ordinal).set(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(productId);
+            if (slot != null) {
+                live.clear(slot);
+                unpriced.clear(slot);
+                categoryBits.get(categories[slot]).clear(slot);
+                names[slot] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            live.clear();
+            unpriced.clear();
+            slotById.clear();
+            Arrays.fill(names, null);
+            for (BitSet bits : categoryBits) {
+                bits.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Id della categoria col nome indicato, confrontato senza distinguere maiuscole come la collation di MySQL;
+    // gli ordinali restano anche dopo clear(), quindi conta solo una categoria che ha ancora prodotti
+    public Long categoryId(String categoryName) {
+        lock.readLock().lock();
+        try {
+            for (int ordinal = 0; ordinal < categoryNames.size(); ordinal++) {
+                if (categoryName.equalsIgnoreCase(categoryNames.get(ordinal)) && !categoryBits.get(ordinal).isEmpty()) {
+                    return categoryIds.get(ordinal);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pagina keyset degli id che rispettano il filtro, nell'ordine richiesto
+    public Page page(Filter filter, ProductSort sort, After after, int limit) {
+        lock.readLock().lock();
+        try {
+            return pageOf(matches(filter, true), sort, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Come sopra, ma su un insieme di id già selezionato (es. i risultati della ricerca full-text)
+    public Page page(Collection<Long> productIds, ProductSort sort, After after, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet selected = new BitSet();
+            for (Long productId : productIds) {
+                Integer slot = slotById.get(productId);
+                if (slot != null) {
+                    selected.set(slot);
+                }
+            }
+            return pageOf(selected, sort, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Page pageOf(BitSet matches, ProductSort sort, After after, int limit) {
+        Comparator<Integer> order = slotOrder(sort);
+        // Max-heap limitato a limit + 1 elementi: O(n log k) invece di ordinare tutti i risultati
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, order.reversed());
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            if (after != null && !isAfter(slot, sort, after)) {
+                continue;
+            }
+            best.add(slot);
+            if (best.size() > limit + 1) {
+                best.poll();
+            }
+        }
+        List<Integer> slots = new ArrayList<>(best);
+        slots.sort(order);
+        boolean hasMore = slots.size() > limit;
+        List<Long> result = new ArrayList<>(Math.min(slots.size(), limit));
+        for (int i = 0; i < slots.size() && i < limit; i++) {
+            result.add(ids[slots.get(i)]);
+        }
+        return new Page(result, hasMore);
+    }
+
+    // Conteggi per categoria (ignorando il filtro categoria) e istogramma prezzi (ignorando il filtro prezzo),
+    // così ogni faccetta mostra le alternative disponibili rispetto agli altri filtri attivi
+    public Facets facets(Filter filter, int bucketCount) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = matches(filter, true);
+
+            long[] perCategory = new long[categoryIds.size()];
+            BitSet byPrice = matches(new Filter(null, filter.minPrice(), filter.maxPrice()), true);
+            for (int slot = byPrice.nextSetBit(0); slot >= 0; slot = byPrice.nextSetBit(slot + 1)) {
+                perCategory[categories[slot]]++;
+            }
+            List<CategoryCount> categoryCounts = new ArrayList<>();
+            for (int ordinal = 0; ordinal < perCategory.length; ordinal++) {
+                if (perCategory[ordinal] > 0) {
+                    categoryCounts.add(new CategoryCount(categoryIds.get(ordinal), categoryNames.get(ordinal), perCategory[ordinal]));
+                }
+            }
+
+            BitSet byCategory = matches(new Filter(filter.categoryId(), null, null), false);
+            byCategory.andNot(unpriced);
+            return new Facets(matches.cardinality(), categoryCounts, priceHistogram(byCategory, bucketCount));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<PriceBucket> priceHistogram(BitSet slots, int bucketCount) {
+        if (slots.isEmpty() || bucketCount < 1) {
+            return List.of();
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            min = Math.min(min, prices[slot]);
+            max = Math.max(max, prices[slot]);
+        }
+        // Larghezza uguale per tutti i bucket, almeno 1
+        long width = Math.max(1L, (max - min) / bucketCount + 1);
+        int buckets = (int) Math.min(bucketCount, (max - min) / width + 1);
+        long[] counts = new long[buckets];
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            counts[(int) ((prices[slot] - min) / width)]++;
+        }
+        List<PriceBucket> result = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            long from = min + i * width;
+            result.add(new PriceBucket(from, from + width - 1, counts[i]));
+        }
+        return result;
+    }
+
+    // Bitset degli slot che rispettano il filtro; la categoria restringe l'insieme prima della scansione dei prezzi
+    private BitSet matches(Filter filter, boolean applyPrice) {
+        BitSet result;
+        if (filter.categoryId() != null) {
+            Integer ordinal = categoryOrdinals.get(filter.categoryId());
+            if (ordinal == null) {
+                return new BitSet();
+            }
+            result = (BitSet) categoryBits.get(ordinal).clone();
+        } else {
+            result = (BitSet) live.clone();
+        }
+        if (applyPrice && (filter.minPrice() != null || filter.maxPrice() != null)) {
+            long min = filter.minPrice() == null ? Long.MIN_VALUE : filter.minPrice();
+            long max = filter.maxPrice() == null ? Long.MAX_VALUE : filter.maxPrice();
+            result.andNot(unpriced);
+            for (int slot = result.nextSetBit(0); slot >= 0; slot = result.nextSetBit(slot + 1)) {
+                if (prices[slot] < min || prices[slot] > max) {
+                    result.clear(slot);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Comparator<Integer> slotOrder(ProductSort sort) {
+        Comparator<Integer> byId = Comparator.comparingLong(slot -> ids[slot]);
+        return switch (sort) {
+            case PRICE -> Comparator.<Integer, Boolean>comparing(slot -> !unpriced.get(slot))
+                    .thenComparingLong(slot -> prices[slot]).thenComparing(byId);
+            case NAME -> Comparator.<Integer, String>comparing(slot -> names[slot], NAME_ORDER).thenComparing(byId);
+            default -> byId;
+        };
+    }
+
+    private boolean isAfter(int slot, ProductSort sort, After after) {
+        int cmp = switch (sort) {
+            // Come la query su MySQL: dopo una riga senza prezzo vengono le altre senza prezzo e poi tutte le valorizzate
+            case PRICE -> after.price() == null
+                    ? (unpriced.get(slot) ? 0 : 1)
+                    : (unpriced.get(slot) ? -1 : Long.compare(prices[slot], after.price()));
+            case NAME -> NAME_ORDER.compare(names[slot], after.name());
+            default -> 0;
+        };
+        return cmp > 0 || (cmp == 0 && ids[slot] > after.id());
+    }
+
+    private int categoryOrdinal(Long categoryId, String categoryName) {
+        Integer ordinal = categoryOrdinals.get(categoryId);
+        if (ordinal == null) {
+            ordinal = categoryIds.size();
+            categoryOrdinals.put(categoryId, ordinal);
+            categoryIds.add(categoryId);
+            categoryNames.add(categoryName);
+            categoryBits.add(new BitSet());
+        } else if (categoryName != null) {
+            categoryNames.set(ordinal, categoryName);
+        }
+        return ordinal;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+
+}
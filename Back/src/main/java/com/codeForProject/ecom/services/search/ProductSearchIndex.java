@@ -0,0 +1,241 @@
+package com.codeForProject.ecom.services.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Indice invertito in memoria su nome, descrizione e categoria dei prodotti
+@Component
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3f;
+
+    private static final float CATEGORY_WEIGHT = 2f;
+
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    // Soglia minima di similarità (Jaccard sui trigrammi) per considerare un termine come refuso
+    private static final double MIN_FUZZY_SIMILARITY = 0.4;
+
+    private static final int MIN_FUZZY_TOKEN_LENGTH = 4;
+
+    // Numero massimo di termini del vocabolario espansi per prefisso sull'ultima parola digitata
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    // term -> (productId -> peso del termine nel prodotto)
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+    private final Map<String, Set<String>> trigramTerms = new HashMap<>();
+
+    private final NavigableSet<String> vocabulary = new TreeSet<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Hit(Long productId, float score) { }
+
+    public void index(Long productId, String name, String description, String categoryName) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, name, NAME_WEIGHT);
+        addField(weights, categoryName, CATEGORY_WEIGHT);
+        addField(weights, description, DESCRIPTION_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            for (Map.Entry<String, Float> entry : weights.entrySet()) {
+                String term = entry.getKey();
+                Map<Long, Float> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    termPostings = new HashMap<>();
+                    postings.put(term, termPostings);
+                    vocabulary.add(term);
+                    for (String trigram : TextNormalizer.trigrams(term)) {
+                        trigramTerms.computeIfAbsent(trigram, k -> new HashSet<>()).add(term);
+                    }
+                }
+                termPostings.put(productId, entry.getValue());
+            }
+            documentTerms.put(productId, weights.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+            trigramTerms.clear();
+            vocabulary.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Risultati ordinati per punteggio decrescente e id crescente; "after" è l'ultimo hit della pagina precedente
+    public List<Hit> search(String query, Hit after, int limit) {
+        List<String> queryTokens = TextNormalizer.tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return topHits(scores(queryTokens), after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tutti i prodotti che soddisfano la query, senza punteggio: l'ordinamento lo decide il chiamante
+    public Set<Long> matchingIds(String query) {
+        List<String> queryTokens = TextNormalizer.tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Set.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(scores(queryTokens).keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Float> scores(List<String> queryTokens) {
+        Map<Long, Float> scores = new HashMap<>();
+        int documentCount = Math.max(1, documentTerms.size());
+        for (int i = 0; i < queryTokens.size(); i++) {
+            boolean lastToken = i == queryTokens.size() - 1;
+            Map<String, Double> matches = matchTerms(queryTokens.get(i), lastToken);
+
+            // Per ogni token della query conta solo il miglior termine che lo soddisfa in ciascun prodotto
+            Map<Long, Float> tokenScores = new HashMap<>();
+            for (Map.Entry<String, Double> match : matches.entrySet()) {
+                Map<Long, Float> termPostings = postings.get(match.getKey());
+                double idf = Math.log(1.0 + (double) documentCount / termPostings.size());
+                for (Map.Entry<Long, Float> posting : termPostings.entrySet()) {
+                    float score = (float) (posting.getValue() * idf * match.getValue());
+                    tokenScores.merge(posting.getKey(), score, Math::max);
+                }
+            }
+            tokenScores.forEach((productId, score) -> scores.merge(productId, score, Float::sum));
+        }
+        return scores;
+    }
+
+    private Map<String, Double> matchTerms(String token, boolean allowPrefix) {
+        Map<String, Double> matches = new HashMap<>();
+        if (postings.containsKey(token)) {
+            matches.put(token, 1.0);
+        }
+
+        if (allowPrefix) {
+            int expanded = 0;
+            for (String term : vocabulary.subSet(token, false, token + Character.MAX_VALUE, false)) {
+                if (expanded++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                // Un completamento vale un po' meno del termine esatto
+                matches.putIfAbsent(term, 0.8 * token.length() / term.length() + 0.2);
+            }
+        }
+
+        if (matches.isEmpty() && token.length() >= MIN_FUZZY_TOKEN_LENGTH) {
+            Set<String> queryTrigrams = TextNormalizer.trigrams(token);
+            Map<String, Integer> shared = new HashMap<>();
+            for (String trigram : queryTrigrams) {
+                Set<String> terms = trigramTerms.get(trigram);
+                if (terms != null) {
+                    for (String term : terms) {
+                        shared.merge(term, 1, Integer::sum);
+                    }
+                }
+            }
+            for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+                int termTrigrams = TextNormalizer.trigrams(entry.getKey()).size();
+                double similarity = (double) entry.getValue() / (queryTrigrams.size() + termTrigrams - entry.getValue());
+                if (similarity >= MIN_FUZZY_SIMILARITY) {
+                    matches.put(entry.getKey(), similarity * 0.7);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private List<Hit> topHits(Map<Long, Float> scores, Hit after, int limit) {
+        Comparator<Hit> ranking = Comparator.<Hit>comparingDouble(Hit::score).reversed().thenComparing(Hit::productId);
+        // Min-heap dei migliori "limit" risultati: O(n log k) invece di ordinare tutti i match
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, ranking.reversed());
+        for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+            Hit hit = new Hit(entry.getKey(), entry.getValue());
+            if (after != null && ranking.compare(hit, after) <= 0) {
+                continue;
+            }
+            heap.offer(hit);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(ranking);
+        return hits;
+    }
+
+    private void addField(Map<String, Float> weights, String text, float weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            weights.merge(token, weight, Float::sum);
+        }
+    }
+
+    private void removeInternal(Long productId) {
+        Set<String> terms = documentTerms.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Float> termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+            termPostings.remove(productId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+                vocabulary.remove(term);
+                for (String trigram : TextNormalizer.trigrams(term)) {
+                    Set<String> trigramSet = trigramTerms.get(trigram);
+                    if (trigramSet != null) {
+                        trigramSet.remove(term);
+                        if (trigramSet.isEmpty()) {
+                            trigramTerms.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+package com.codeForProject.ecom.services.search;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trie dei nomi prodotto per il typeahead: ogni nodo tiene in cache i top-K id del suo sottoalbero.
+// La popolarità cresce su contatori per prodotto senza lock; i top-K toccati si ricalcolano a intervalli
+// sotto un solo write lock, così gli acquisti non si contendono il trie.
+@Component
+public class ProductSuggester {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // Oltre questa lunghezza il prefisso digitato è già abbastanza selettivo
+    private static final int MAX_KEY_LENGTH = 40;
+
+    private static final long[] NO_IDS = new long[0];
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        long[] terminalIds = NO_IDS;
+        long[] top = NO_IDS;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrCreateChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && terminalIds.length == 0;
+        }
+    }
+
+    private final Node root = new Node();
+
+    private final Map<Long, List<String>> keysByProduct = new HashMap<>();
+
+    private final Map<Long, LongAdder> popularity = new ConcurrentHashMap<>();
+
+    // Prodotti con popolarità cambiata dall'ultimo ricalcolo
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+    private final long refreshIntervalMillis;
+
+    public ProductSuggester(@Value("${app.search.popularity-refresh-ms:5000}") long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("suggester-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, Duration.ofMillis(refreshIntervalMillis));
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdown();
+    }
+
+    public List<Long> suggest(String prefix, int limit) {
+        String key = toKey(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            int size = Math.min(limit, node.top.length);
+            List<Long> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(node.top[i]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Inserisce o aggiorna il nome di un prodotto (anche ogni parola interna è un punto di ingresso)
+    public void put(Long productId, String name) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            List<String> keys = keysFor(name);
+            for (String key : keys) {
+                insertKey(key, productId, true);
+            }
+            keysByProduct.put(productId, keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caricamento massivo all'avvio: inserisce senza ricalcolare i top-K, finishLoad() li calcola una volta sola
+    public void load(Long productId, String name) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            List<String> keys = keysFor(name);
+            for (String key : keys) {
+                insertKey(key, productId, false);
+            }
+            keysByProduct.put(productId, keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishLoad() {
+        lock.writeLock().lock();
+        try {
+            // Il ricalcolo completo copre anche la popolarità impostata durante il caricamento
+            dirty.clear();
+            recomputeSubtree(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+            popularity.remove(productId);
+            dirty.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Senza lock: l'ordine nei suggerimenti si aggiorna al prossimo refreshPopularity()
+    public void bumpPopularity(Long productId, long delta) {
+        popularity.computeIfAbsent(productId, id -> new LongAdder()).add(delta);
+        dirty.add(productId);
+    }
+
+    // Valore assoluto, per il caricamento all'avvio
+    public void setPopularity(Long productId, long value) {
+        LongAdder counter = new LongAdder();
+        counter.add(value);
+        popularity.put(productId, counter);
+        dirty.add(productId);
+    }
+
+    public long getPopularity(Long productId) {
+        LongAdder counter = popularity.get(productId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // Ricalcola i top-K lungo i percorsi dei prodotti cambiati; restituisce quanti prodotti ha elaborato
+    public int refreshPopularity() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        List<Long> changed = new ArrayList<>(dirty);
+        dirty.removeAll(changed);
+        lock.writeLock().lock();
+        try {
+            for (Long productId : changed) {
+                refreshPaths(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return changed.size();
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.keys = new char[0];
+            root.children = new Node[0];
+            root.terminalIds = NO_IDS;
+            root.top = NO_IDS;
+            keysByProduct.clear();
+            popularity.clear();
+            dirty.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insertKey(String key, long productId, boolean recompute) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+            path.add(node);
+        }
+        if (!contains(node.terminalIds, productId)) {
+            long[] ids = Arrays.copyOf(node.terminalIds, node.terminalIds.length + 1);
+            ids[ids.length - 1] = productId;
+            node.terminalIds = ids;
+        }
+        if (recompute) {
+            recomputeBottomUp(path);
+        }
+    }
+
+    private void removeInternal(Long productId) {
+        List<String> keys = keysByProduct.remove(productId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            List<Node> path = pathTo(key);
+            if (path == null) {
+                continue;
+            }
+            Node last = path.get(path.size() - 1);
+            last.terminalIds = Arrays.stream(last.terminalIds).filter(id -> id != productId).toArray();
+            // Pota i nodi rimasti vuoti risalendo verso la radice
+            for (int i = path.size() - 1; i > 0 && path.get(i).isEmpty(); i--) {
+                path.get(i - 1).removeChild(key.charAt(i - 1));
+                path.remove(i);
+            }
+            recomputeBottomUp(path);
+        }
+    }
+
+    private void refreshPaths(Long productId) {
+        List<String> keys = keysByProduct.get(productId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            List<Node> path = pathTo(key);
+            if (path != null) {
+                recomputeBottomUp(path);
+            }
+        }
+    }
+
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return null;
+            }
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void recomputeBottomUp(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            recomputeTop(path.get(i));
+        }
+    }
+
+    private void recomputeSubtree(Node node) {
+        for (Node child : node.children) {
+            recomputeSubtree(child);
+        }
+        recomputeTop(node);
+    }
+
+    // Il top-K di un nodo si ricava dai suoi terminali e dai top-K dei figli
+    private void recomputeTop(Node node) {
+        LinkedHashSet<Long> candidates = new LinkedHashSet<>();
+        for (long id : node.terminalIds) {
+            candidates.add(id);
+        }
+        for (Node child : node.children) {
+            for (long id : child.top) {
+                candidates.add(id);
+            }
+        }
+        // I contatori cambiano anche durante l'ordinamento: si ordina su una fotografia dei valori
+        Map<Long, Long> scores = new HashMap<>(candidates.size() * 2);
+        for (Long id : candidates) {
+            scores.put(id, getPopularity(id));
+        }
+        node.top = candidates.stream()
+                .sorted(Comparator.comparingLong((Long id) -> scores.get(id)).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .limit(MAX_SUGGESTIONS)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshPopularity();
+        } catch (Exception e) {
+            System.out.println("Suggestion popularity refresh failed: " + e.getMessage());
+        }
+    }
+
+    private static List<String> keysFor(String name) {
+        List<String> tokens = TextNormalizer.tokenize(name);
+        List<String> keys = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            String key = toKey(String.join(" ", tokens.subList(i, tokens.size())));
+            if (!key.isEmpty() && !keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String toKey(String text) {
+        String key = String.join(" ", TextNormalizer.tokenize(text));
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        for (long candidate : ids) {
+            if (candidate == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
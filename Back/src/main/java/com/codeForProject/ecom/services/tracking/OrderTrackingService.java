@@ -0,0 +1,14 @@
+package com.codeForProject.ecom.services.tracking;
+
+import com.codeForProject.ecom.dto.OrderDto;
+
+import java.util.UUID;
+
+public interface OrderTrackingService {
+
+    // null se nessun ordine ha questo tracking id
+    OrderDto findByTrackingId(UUID trackingId);
+
+    void invalidate(UUID trackingId);
+
+}
@@ -0,0 +1,54 @@
+package com.codeForProject.ecom.services.tracking;
+
+import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.entity.Order;
+import com.codeForProject.ecom.repository.OrderRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+// Ricerca pubblica degli ordini per tracking id. I corrieri interrogano lo stesso ordine di continuo:
+// con un TTL di pochi secondi il database vede al più una query per ordine per intervallo.
+// Anche i tracking id inesistenti restano in cache, così chi tenta id a caso non arriva a MySQL due volte.
+@Service
+public class OrderTrackingServiceImpl implements OrderTrackingService {
+
+    private final LoadingCache<UUID, Optional<OrderDto>> cache;
+
+    public OrderTrackingServiceImpl(OrderRepository orderRepository,
+                                    @Value("${app.tracking.cache.ttl-seconds:30}") long ttlSeconds,
+                                    @Value("${app.tracking.cache.max-entries:10000}") long maxEntries) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build(trackingId -> orderRepository.findByTrackingId(trackingId).map(Order::getOrderDto));
+    }
+
+    public OrderDto findByTrackingId(UUID trackingId) {
+        return cache.get(trackingId).orElse(null);
+    }
+
+    public void invalidate(UUID trackingId) {
+        if (trackingId == null) {
+            return;
+        }
+        cache.invalidate(trackingId);
+        // Una lettura concorrente al commit potrebbe rimettere in cache lo stato vecchio: si ripete dopo il commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(trackingId);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.codeForProject.ecom.services.tracking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Token bucket per IP client sulla ricerca pubblica: capacity richieste subito, poi refillPerSecond al secondo.
+// I bucket inattivi scadono dopo il tempo necessario a riempirsi, quindi perderli non regala richieste.
+@Component
+public class TrackingRateLimiter {
+
+    private static final class TokenBucket {
+
+        double tokens;
+
+        long lastRefill;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+    }
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final double capacity;
+
+    private final double refillPerSecond;
+
+    public TrackingRateLimiter(@Value("${app.tracking.rate-limit.capacity:20}") double capacity,
+                               @Value("${app.tracking.rate-limit.refill-per-second:1}") double refillPerSecond,
+                               @Value("${app.tracking.rate-limit.max-clients:100000}") long maxClients) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerSecond = refillPerSecond;
+        long secondsToFill = (long) Math.ceil(this.capacity / refillPerSecond);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofSeconds(Math.max(1, secondsToFill)))
+                .build();
+    }
+
+    // 0 se la richiesta passa, altrimenti i secondi da attendere prima del prossimo token
+    public long tryAcquire(String clientKey) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(clientKey, key -> new TokenBucket(capacity, now));
+        synchronized (bucket) {
+            double elapsedSeconds = Math.max(0, now - bucket.lastRefill) / 1_000_000_000.0;
+            bucket.tokens = Math.min(capacity, bucket.tokens + elapsedSeconds * refillPerSecond);
+            bucket.lastRefill = Math.max(bucket.lastRefill, now);
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / refillPerSecond));
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.codeForProject.ecom.services.admin.adminproduct;
+
+import com.codeForProject.ecom.dto.BulkProductUpdateDto;
+import com.codeForProject.ecom.dto.BulkProductUpdateResultDto;
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.services.product.CatalogVersion;
+import com.codeForProject.ecom.services.product.ProductCache;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        "app.products.bulk-update.chunk-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProductBulkUpdateServiceImpl.class, ProductCache.class, CatalogVersion.class, ProductSearchIndex.class,
+        ProductCatalogIndex.class})
+class ProductBulkUpdateServiceImplTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductBulkUpdateService productBulkUpdateService;
+
+    private Long booksId;
+
+    private Long saleId;
+
+    private List<Long> bookIds;
+
+    @BeforeEach
+    void setUp() {
+        Category books = persistCategory("Books");
+        booksId = books.getId();
+        saleId = persistCategory("Sale").getId();
+        bookIds = List.of(
+                persistProduct("Novel 1", 100L, books),
+                persistProduct("Novel 2", 200L, books),
+                persistProduct("Novel 3", 300L, books));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void requestWithoutFilterIsRejectedUnlessAllIsSet() {
+        BulkProductUpdateDto request = new BulkProductUpdateDto();
+        request.setPriceDelta(-10L);
+
+        assertThrows(ValidationException.class, () -> productBulkUpdateService.bulkUpdate(request));
+
+        request.setAll(true);
+        assertEquals(3, productBulkUpdateService.bulkUpdate(request).getUpdated());
+    }
+
+    @Test
+    void productsChangedByPriceAndCategoryAreCountedOnce() {
+        BulkProductUpdateDto request = new BulkProductUpdateDto();
+        request.setCategoryId(booksId);
+        request.setPricePercent(-20.0);
+        request.setTargetCategoryId(saleId);
+
+        BulkProductUpdateResultDto result = productBulkUpdateService.bulkUpdate(request);
+
+        assertEquals(3, result.getUpdated());
+        assertEquals(2, result.getChunks());
+        entityManager.clear();
+        Product first = entityManager.find(Product.class, bookIds.get(0));
+        assertEquals(80L, first.getPrice());
+        assertEquals(saleId, first.getCategory().getId());
+    }
+
+    private Category persistCategory(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setDescription(name);
+        return entityManager.persist(category);
+    }
+
+    private Long persistProduct(String name, Long price, Category category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        product.setDescription(name);
+        product.setCategory(category);
+        return entityManager.persist(product).getId();
+    }
+
+}
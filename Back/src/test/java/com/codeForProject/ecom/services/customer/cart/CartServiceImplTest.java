@@ -0,0 +1,377 @@
+package com.codeForProject.ecom.services.customer.cart;
+
+import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartBatchDto;
+import com.codeForProject.ecom.dto.CartOperationDto;
+import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.dto.OrderPageDto;
+import com.codeForProject.ecom.dto.PlaceOrderDto;
+import com.codeForProject.ecom.entity.CartItems;
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Order;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.entity.User;
+import com.codeForProject.ecom.enums.CartOperationType;
+import com.codeForProject.ecom.enums.OrderStatus;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.services.customer.order.OrderOutboxService;
+import com.codeForProject.ecom.services.inventory.InventoryService;
+import com.codeForProject.ecom.services.product.ProductCache;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CartServiceImpl.class, ProductCache.class})
+class CartServiceImplTest {
+
+    private static final String KEYCLOAK_ID = "customer-1";
+
+    // Lettura del carrello, INSERT della riga e UPDATE dei totali
+    private static final long MUTATION_STATEMENT_BUDGET = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @MockitoBean
+    private OrderOutboxService orderOutboxService;
+
+    @MockitoBean
+    private InventoryService inventoryService;
+
+    private Statistics statistics;
+
+    private Long newProductId;
+
+    private Long firstProductId;
+
+    private Long orderId;
+
+    private int userId;
+
+    private Long cartItemId;
+
+    @BeforeEach
+    void setUp() {
+        Category category = persistCategory("Electronics");
+        User user = new User();
+        user.setKeycloakId(KEYCLOAK_ID);
+        user.setName("Mario");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setOrderStatus(OrderStatus.Pending);
+        order.setAmount(0L);
+        order.setTotalAmount(0L);
+        entityManager.persist(order);
+        orderId = order.getId();
+
+        for (int i = 1; i <= 3; i++) {
+            Product product = persistProduct("Phone " + i, 100L * i, category);
+            CartItems item = new CartItems();
+            item.setProduct(product);
+            item.setUser(user);
+            item.setOrder(order);
+            item.setPrice(product.getPrice());
+            item.setQuantity(1L);
+            entityManager.persist(item);
+            order.setAmount(order.getAmount() + product.getPrice());
+            order.setTotalAmount(order.getTotalAmount() + product.getPrice());
+            cartItemId = item.getId();
+            if (firstProductId == null) {
+                firstProductId = product.getId();
+            }
+        }
+        newProductId = persistProduct("Tablet", 450L, category).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Il prodotto da aggiungere arriva dalla cache, come in produzione dopo la navigazione del catalogo
+        productCache.invalidateAll();
+        productCache.get(newProductId);
+
+        // Giacenze fuori dal perimetro di questi test: ogni prenotazione riesce
+        when(inventoryService.reserve(anyString(), anyLong(), anyLong())).thenReturn(true);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void cartIsReadWithSingleStatement() {
+        OrderDto cart = cartService.getCartByUserId(KEYCLOAK_ID);
+
+        assertEquals(3, cart.getCartItems().size());
+        assertTrue(cart.getCartItems().stream().allMatch(item -> "Electronics".equals(item.getCategoryName())));
+        assertEquals("Mario", cart.getUserName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void addingProductStaysWithinStatementBudget() {
+        ResponseEntity<?> response = cartService.addProductToCart(addRequest(newProductId));
+        entityManager.flush();
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        OrderDto cart = (OrderDto) response.getBody();
+        assertEquals(4, cart.getCartItems().size());
+        assertEquals(1050L, cart.getTotalAmount());
+        assertEquals("Tablet", cart.getCartItems().get(3).getProductName());
+        assertTrue(statistics.getPrepareStatementCount() <= MUTATION_STATEMENT_BUDGET,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void addingProductAlreadyInCartOnlyReadsTheCart() {
+        Long existingProductId = cartService.getCartByUserId(KEYCLOAK_ID).getCartItems().get(0).getProductId();
+        productCache.get(existingProductId);
+        statistics.clear();
+
+        ResponseEntity<?> response = cartService.addProductToCart(addRequest(existingProductId));
+        entityManager.flush();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void removingItemStaysWithinStatementBudget() {
+        cartService.removeCartItem(cartItemId, KEYCLOAK_ID);
+        entityManager.flush();
+
+        assertTrue(statistics.getPrepareStatementCount() <= MUTATION_STATEMENT_BUDGET,
+                "statements: " + statistics.getPrepareStatementCount());
+        entityManager.clear();
+        assertEquals(300L, cartService.getCartByUserId(KEYCLOAK_ID).getTotalAmount());
+    }
+
+    @Test
+    void clearingCartStaysWithinStatementBudget() {
+        cartService.clearCart(KEYCLOAK_ID);
+        entityManager.flush();
+
+        assertTrue(statistics.getPrepareStatementCount() <= MUTATION_STATEMENT_BUDGET,
+                "statements: " + statistics.getPrepareStatementCount());
+        entityManager.clear();
+        assertTrue(cartService.getCartByUserId(KEYCLOAK_ID).getCartItems().isEmpty());
+    }
+
+    @Test
+    void quantityChangeUsesAtomicDeltas() {
+        OrderDto cart = cartService.increaseProductQuantity(addRequest(firstProductId));
+        entityManager.flush();
+
+        assertEquals(2L, cart.getCartItems().get(0).getQuantity());
+        assertEquals(700L, cart.getTotalAmount());
+        assertTrue(statistics.getPrepareStatementCount() <= MUTATION_STATEMENT_BUDGET,
+                "statements: " + statistics.getPrepareStatementCount());
+        entityManager.clear();
+        assertEquals(700L, entityManager.find(Order.class, orderId).getAmount());
+    }
+
+    @Test
+    void quantityNeverDropsBelowOne() {
+        OrderDto cart = cartService.decreaseProductQuantity(addRequest(firstProductId));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1L, cart.getCartItems().get(0).getQuantity());
+        assertEquals(600L, entityManager.find(Order.class, orderId).getAmount());
+    }
+
+    @Test
+    void userCannotHaveTwoActiveCarts() {
+        Order duplicate = new Order();
+        duplicate.setUser(entityManager.find(User.class, userId));
+        duplicate.setOrderStatus(OrderStatus.Pending);
+        duplicate.setAmount(0L);
+        duplicate.setTotalAmount(0L);
+
+        assertThrows(PersistenceException.class, () -> entityManager.persistAndFlush(duplicate));
+    }
+
+    @Test
+    void firstCartRequestCreatesSingleCart() {
+        User user = new User();
+        user.setKeycloakId("customer-2");
+        user.setName("Luigi");
+        entityManager.persistAndFlush(user);
+
+        Long firstId = cartService.getCartByUserId("customer-2").getId();
+        Long secondId = cartService.getCartByUserId("customer-2").getId();
+
+        assertNotNull(firstId);
+        assertEquals(firstId, secondId);
+    }
+
+    @Test
+    void batchAppliesAllOperationsInOneTransaction() {
+        CartBatchDto batch = new CartBatchDto();
+        batch.setUserId(KEYCLOAK_ID);
+        batch.setOperations(List.of(
+                operation(CartOperationType.ADD, newProductId, null),
+                operation(CartOperationType.SET_QUANTITY, firstProductId, 3L),
+                operation(CartOperationType.REMOVE, firstProductId + 1, null)));
+
+        OrderDto cart = cartService.applyCartOperations(batch);
+        entityManager.flush();
+
+        // Lettura, totali, DELETE, INSERT e UPDATE della quantità: il prodotto nuovo arriva dalla cache
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+                "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(3, cart.getCartItems().size());
+        assertEquals(1050L, cart.getTotalAmount());
+        entityManager.clear();
+        assertEquals(1050L, entityManager.find(Order.class, orderId).getAmount());
+        assertEquals(1050L, cartService.getCartByUserId(KEYCLOAK_ID).getTotalAmount());
+    }
+
+    @Test
+    void batchRejectsInvalidQuantity() {
+        CartBatchDto batch = new CartBatchDto();
+        batch.setUserId(KEYCLOAK_ID);
+        batch.setOperations(List.of(operation(CartOperationType.SET_QUANTITY, firstProductId, 0L)));
+
+        assertThrows(ValidationException.class, () -> cartService.applyCartOperations(batch));
+    }
+
+    @Test
+    void placingOrderTwiceWithSameKeyHasOneEffect() {
+        PlaceOrderDto request = new PlaceOrderDto();
+        request.setUserId(KEYCLOAK_ID);
+        request.setAddress("Via Roma 1");
+        request.setIdempotencyKey("checkout-1");
+
+        OrderDto first = cartService.placeOrder(request);
+        OrderDto retry = cartService.placeOrder(request);
+
+        assertEquals(orderId, first.getId());
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(first.getTrackingId(), retry.getTrackingId());
+        verify(orderOutboxService, times(1)).recordOrderPlaced(orderId);
+    }
+
+    @Test
+    void orderHistoryIsPagedWithSingleStatementPerPage() {
+        User user = entityManager.find(User.class, userId);
+        for (int i = 0; i < 5; i++) {
+            Order placed = new Order();
+            placed.setUser(user);
+            placed.setOrderStatus(OrderStatus.Delivered);
+            placed.setAmount(100L);
+            placed.setTotalAmount(100L);
+            placed.setDate(new Date());
+            entityManager.persist(placed);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        OrderPageDto first = cartService.getMyPlacedOrders(KEYCLOAK_ID, null, 3, null, null);
+
+        assertEquals(3, first.getOrders().size());
+        assertTrue(first.getOrders().stream().allMatch(order -> "Mario".equals(order.getUserName())));
+        assertNotNull(first.getNextCursor());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        OrderPageDto second = cartService.getMyPlacedOrders(KEYCLOAK_ID, first.getNextCursor(), 3, null, null);
+
+        assertEquals(2, second.getOrders().size());
+        assertNull(second.getNextCursor());
+        assertTrue(second.getOrders().get(0).getId() < first.getOrders().get(2).getId());
+        // Il carrello (Pending) non compare nello storico
+        assertTrue(second.getOrders().stream().noneMatch(order -> orderId.equals(order.getId())));
+    }
+
+    @Test
+    void orderHistoryFiltersByDateRange() {
+        Order placed = new Order();
+        placed.setUser(entityManager.find(User.class, userId));
+        placed.setOrderStatus(OrderStatus.Placed);
+        placed.setAmount(100L);
+        placed.setTotalAmount(100L);
+        placed.setDate(new Date());
+        entityManager.persistAndFlush(placed);
+        LocalDate today = LocalDate.now();
+
+        assertEquals(1, cartService.getMyPlacedOrders(KEYCLOAK_ID, null, null, today, today).getOrders().size());
+        assertTrue(cartService.getMyPlacedOrders(KEYCLOAK_ID, null, null, today.plusDays(1), null).getOrders().isEmpty());
+        assertThrows(ValidationException.class,
+                () -> cartService.getMyPlacedOrders(KEYCLOAK_ID, null, null, today, today.minusDays(1)));
+    }
+
+    private static CartOperationDto operation(CartOperationType type, Long productId, Long quantity) {
+        CartOperationDto operation = new CartOperationDto();
+        operation.setType(type);
+        operation.setProductId(productId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
+    private AddProductInCartDto addRequest(Long productId) {
+        AddProductInCartDto request = new AddProductInCartDto();
+        request.setUserId(KEYCLOAK_ID);
+        request.setProductId(productId);
+        return request;
+    }
+
+    private Category persistCategory(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setDescription(name);
+        return entityManager.persist(category);
+    }
+
+    private Product persistProduct(String name, Long price, Category category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        product.setDescription("Description of " + name);
+        product.setCategory(category);
+        return entityManager.persist(product);
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.codeForProject.ecom.services.customer.cart;
+
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Mutation;
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Operation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mutationsAreReadBackInOrderAcrossSegments() throws IOException {
+        CartWriteAheadLog log = new CartWriteAheadLog(directory, false);
+        log.append(new Mutation(Operation.ADD, "customer-1", 10L, 250L));
+        log.rotate();
+        log.append(new Mutation(Operation.QUANTITY, "customer-1", 10L, 3L));
+        log.append(new Mutation(Operation.REMOVE, "customer-1", 11L, null));
+        log.append(new Mutation(Operation.CLEAR, "customer-2", null, null));
+        log.close();
+
+        List<Mutation> mutations = new CartWriteAheadLog(directory, false).readAll();
+
+        assertEquals(List.of(
+                new Mutation(Operation.ADD, "customer-1", 10L, 250L),
+                new Mutation(Operation.QUANTITY, "customer-1", 10L, 3L),
+                new Mutation(Operation.REMOVE, "customer-1", 11L, null),
+                new Mutation(Operation.CLEAR, "customer-2", null, null)), mutations);
+    }
+
+    @Test
+    void deletedSegmentsAreNotReplayed() throws IOException {
+        CartWriteAheadLog log = new CartWriteAheadLog(directory, true);
+        log.append(new Mutation(Operation.ADD, "customer-1", 10L, 250L));
+        List<Long> closed = log.rotate();
+        log.append(new Mutation(Operation.ADD, "customer-1", 11L, 300L));
+
+        log.delete(closed);
+
+        assertEquals(List.of(new Mutation(Operation.ADD, "customer-1", 11L, 300L)), log.readAll());
+        log.close();
+    }
+
+    @Test
+    void truncatedLineIsSkipped() throws IOException {
+        CartWriteAheadLog log = new CartWriteAheadLog(directory, false);
+        log.append(new Mutation(Operation.ADD, "customer-1", 10L, 250L));
+        log.close();
+        try (var files = Files.list(directory)) {
+            Path segment = files.sorted().reduce((first, second) -> second).orElseThrow();
+            // Crash a metà scrittura: la riga resta senza prezzo e senza a capo
+            Files.writeString(segment, "A|customer-1|11", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        assertEquals(List.of(new Mutation(Operation.ADD, "customer-1", 10L, 250L)),
+                new CartWriteAheadLog(directory, false).readAll());
+    }
+
+}
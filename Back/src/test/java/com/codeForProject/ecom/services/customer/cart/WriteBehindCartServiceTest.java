@@ -0,0 +1,264 @@
+package com.codeForProject.ecom.services.customer.cart;
+
+import com.codeForProject.ecom.dto.AddProductInCartDto;
+import com.codeForProject.ecom.dto.CartItemsDto;
+import com.codeForProject.ecom.dto.OrderDto;
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.entity.User;
+import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.repository.OrderRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import com.codeForProject.ecom.repository.UserRepository;
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Mutation;
+import com.codeForProject.ecom.services.customer.cart.CartWriteAheadLog.Operation;
+import com.codeForProject.ecom.services.customer.order.OrderOutboxService;
+import com.codeForProject.ecom.services.inventory.InventoryService;
+import com.codeForProject.ecom.services.product.ProductCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CartServiceImpl.class, ProductCache.class})
+// Il flush apre le sue transazioni: i test guardano ciò che arriva davvero su MySQL
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WriteBehindCartServiceTest {
+
+    private static final String KEYCLOAK_ID = "customer-1";
+
+    private static final String OTHER_KEYCLOAK_ID = "customer-2";
+
+    @TempDir
+    Path walDir;
+
+    @TempDir
+    Path scratchDir;
+
+    @Autowired
+    private CartServiceImpl delegate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private OrderOutboxService orderOutboxService;
+
+    @MockitoBean
+    private InventoryService inventoryService;
+
+    private final List<WriteBehindCartService> started = new ArrayList<>();
+
+    private Long phoneId;
+
+    private Long tabletId;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Electronics");
+        category.setDescription("Electronics");
+        category = categoryRepository.save(category);
+        phoneId = persistProduct("Phone", 100L, category);
+        tabletId = persistProduct("Tablet", 450L, category);
+        User user = new User();
+        user.setKeycloakId(KEYCLOAK_ID);
+        user.setName("Mario");
+        userRepository.save(user);
+        productCache.invalidateAll();
+
+        when(inventoryService.reserve(anyString(), anyLong(), anyLong())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (WriteBehindCartService service : started) {
+            service.stop();
+        }
+        jdbcTemplate.update("DELETE FROM cart_items");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM product");
+        jdbcTemplate.update("DELETE FROM category");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void flushWritesTheCartAndAssignsRealItemIds() throws IOException {
+        WriteBehindCartService service = start();
+        OrderDto cart = (OrderDto) service.addProductToCart(addRequest(phoneId)).getBody();
+        long provisionalId = cart.getCartItems().get(0).getId();
+        assertTrue(provisionalId < 0);
+        service.increaseProductQuantity(addRequest(phoneId));
+
+        service.flush();
+
+        Long itemId = jdbcTemplate.queryForObject("SELECT id FROM cart_items WHERE product_id = ?", Long.class, phoneId);
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT quantity FROM cart_items WHERE id = ?", Long.class, itemId));
+        assertEquals(200L, orderRepository.findById(cart.getId()).orElseThrow().getAmount());
+        assertEquals(itemId, service.getCartByUserId(KEYCLOAK_ID).getCartItems().get(0).getId());
+
+        // L'id provvisorio già restituito al client continua a funzionare
+        service.removeCartItem(provisionalId, KEYCLOAK_ID);
+        service.flush();
+        assertEquals(0, countItems());
+    }
+
+    @Test
+    void deletedProductIsDroppedWithoutBlockingOtherCarts() throws IOException {
+        User other = new User();
+        other.setKeycloakId(OTHER_KEYCLOAK_ID);
+        other.setName("Luigi");
+        userRepository.save(other);
+        WriteBehindCartService service = start();
+        service.addProductToCart(addRequest(phoneId));
+        service.addProductToCart(addRequest(tabletId));
+        AddProductInCartDto otherRequest = addRequest(phoneId);
+        otherRequest.setUserId(OTHER_KEYCLOAK_ID);
+        service.addProductToCart(otherRequest);
+        // Il prodotto esce dal catalogo ma resta in cache: l'INSERT viola la foreign key e il batch si annulla
+        jdbcTemplate.update("DELETE FROM product WHERE id = ?", tabletId);
+
+        service.flush();
+
+        // Riprova carrello per carrello: la riga del prodotto eliminato si scarta, il resto arriva su MySQL
+        assertEquals(2, countItems());
+        OrderDto cart = service.getCartByUserId(KEYCLOAK_ID);
+        assertEquals(List.of(phoneId), cart.getCartItems().stream().map(CartItemsDto::getProductId).toList());
+        assertEquals(100L, orderRepository.findById(cart.getId()).orElseThrow().getAmount());
+        // Resta solo la rimozione registrata dal flush, che il giro successivo cancella
+        assertEquals(List.of(new Mutation(Operation.REMOVE, KEYCLOAK_ID, tabletId, null)), readLog());
+        service.flush();
+        assertTrue(readLog().isEmpty());
+    }
+
+    @Test
+    void logIsReplayedOnStartup() throws IOException {
+        // Carrello creato e poi lasciato solo nel log, come dopo un crash prima del flush
+        start().getCartByUserId(KEYCLOAK_ID);
+        CartWriteAheadLog log = new CartWriteAheadLog(walDir, false);
+        log.append(new Mutation(Operation.ADD, KEYCLOAK_ID, phoneId, 100L));
+        log.append(new Mutation(Operation.ADD, KEYCLOAK_ID, tabletId, 450L));
+        log.append(new Mutation(Operation.QUANTITY, KEYCLOAK_ID, tabletId, 2L));
+        log.append(new Mutation(Operation.REMOVE, KEYCLOAK_ID, phoneId, null));
+        log.close();
+
+        WriteBehindCartService restarted = start();
+
+        assertEquals(1, countItems());
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT quantity FROM cart_items WHERE product_id = ?", Long.class, tabletId));
+        OrderDto cart = restarted.getCartByUserId(KEYCLOAK_ID);
+        assertEquals(900L, cart.getTotalAmount());
+        assertTrue(cart.getCartItems().get(0).getId() > 0);
+        assertTrue(readLog().isEmpty());
+    }
+
+    @Test
+    void shutdownDrainsPendingChanges() throws IOException {
+        WriteBehindCartService service = start();
+        service.addProductToCart(addRequest(phoneId));
+        service.addProductToCart(addRequest(tabletId));
+        assertEquals(0, countItems());
+
+        started.remove(service);
+        service.stop();
+
+        assertEquals(2, countItems());
+        assertTrue(readLog().isEmpty());
+    }
+
+    // Flush periodico di fatto disattivato: lo chiamano i test
+    private WriteBehindCartService start() throws IOException {
+        WriteBehindCartService service = new WriteBehindCartService(delegate, orderRepository, userRepository,
+                productCache, inventoryService, jdbcTemplate, transactionManager, walDir.toString(), false, 4,
+                3_600_000, 30);
+        service.start();
+        started.add(service);
+        return service;
+    }
+
+    // Si legge una copia: aprire un secondo log nella stessa cartella creerebbe un segmento che il servizio poi cancella
+    private List<Mutation> readLog() throws IOException {
+        Path copy = Files.createTempDirectory(scratchDir, "wal-");
+        try (Stream<Path> segments = Files.list(walDir)) {
+            for (Path segment : segments.toList()) {
+                Files.copy(segment, copy.resolve(segment.getFileName()));
+            }
+        }
+        CartWriteAheadLog log = new CartWriteAheadLog(copy, false);
+        try {
+            return log.readAll();
+        } finally {
+            log.close();
+        }
+    }
+
+    private int countItems() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items", Integer.class);
+    }
+
+    private AddProductInCartDto addRequest(Long productId) {
+        AddProductInCartDto request = new AddProductInCartDto();
+        request.setUserId(KEYCLOAK_ID);
+        request.setProductId(productId);
+        return request;
+    }
+
+    private Long persistProduct(String name, Long price, Category category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        product.setDescription(name);
+        product.setCategory(category);
+        return productRepository.save(product).getId();
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.codeForProject.ecom.services.customer.waitingroom;
+
+import com.codeForProject.ecom.dto.WaitingRoomDto;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitingRoomServiceImplTest {
+
+    private static final Long HOT_PRODUCT = 1L;
+
+    @Test
+    void quietProductsNeverQueue() {
+        WaitingRoomServiceImpl waitingRoom = new WaitingRoomServiceImpl(true, 1_000, 50, 10, 30);
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(waitingRoom.admit("user-" + i, HOT_PRODUCT));
+        }
+    }
+
+    @Test
+    void hotProductQueuesUsersInArrivalOrder() {
+        // Soglia 0: la sala apre alla prima richiesta; un'ammissione ogni 10 secondi
+        WaitingRoomServiceImpl waitingRoom = new WaitingRoomServiceImpl(true, 0, 0.1, 10, 30);
+
+        assertNull(waitingRoom.admit("first", HOT_PRODUCT));
+        WaitingRoomDto second = waitingRoom.admit("second", HOT_PRODUCT);
+        WaitingRoomDto third = waitingRoom.admit("third", HOT_PRODUCT);
+
+        assertEquals(1, second.getPosition());
+        assertEquals(2, third.getPosition());
+        assertTrue(third.getEtaSeconds() > second.getEtaSeconds());
+        // Riprovare non fa perdere il posto
+        assertEquals(1, waitingRoom.admit("second", HOT_PRODUCT).getPosition());
+        // Il pass copre le richieste successive di chi è già entrato
+        assertNull(waitingRoom.admit("first", HOT_PRODUCT));
+        // Ogni prodotto ha la sua coda: su un altro si entra subito
+        assertNull(waitingRoom.admit("third", 2L));
+    }
+
+}
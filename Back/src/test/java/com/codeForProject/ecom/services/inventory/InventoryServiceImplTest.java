@@ -0,0 +1,234 @@
+package com.codeForProject.ecom.services.inventory;
+
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.entity.ProductInventory;
+import com.codeForProject.ecom.exceptions.OutOfStockException;
+import com.codeForProject.ecom.exceptions.ValidationException;
+import com.codeForProject.ecom.repository.CategoryRepository;
+import com.codeForProject.ecom.repository.InventoryMovementRepository;
+import com.codeForProject.ecom.repository.ProductInventoryRepository;
+import com.codeForProject.ecom.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Le transazioni le aprono i test: rollback e commit delle prenotazioni sono proprio ciò che si verifica
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryServiceImplTest {
+
+    private static final String USER = "customer-1";
+
+    private static final String OTHER_USER = "customer-2";
+
+    @Autowired
+    private ProductInventoryRepository inventoryRepository;
+
+    @Autowired
+    private InventoryMovementRepository movementRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private InventoryServiceImpl inventory;
+
+    private Long productId;
+
+    private Long otherProductId;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Electronics");
+        category.setDescription("Electronics");
+        category = categoryRepository.save(category);
+        productId = persistProduct("Phone", category);
+        otherProductId = persistProduct("Tablet", category);
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        inventory = newInventory(15);
+    }
+
+    @AfterEach
+    void tearDown() {
+        movementRepository.deleteAll();
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void reservationsGrowAndShrink() {
+        inventory.adjustStock(productId, 10);
+
+        assertTrue(inventory.reserve(USER, productId, 3));
+        assertEquals(7, inventory.getAvailable(productId));
+        assertTrue(inventory.reserve(USER, productId, 5));
+        assertEquals(5, inventory.getAvailable(productId));
+        assertTrue(inventory.reserve(USER, productId, 2));
+        assertEquals(8, inventory.getAvailable(productId));
+
+        assertFalse(inventory.reserve(OTHER_USER, productId, 9));
+        assertEquals(8, inventory.getAvailable(productId));
+        assertTrue(inventory.reserve(USER, productId, 0));
+        assertEquals(10, inventory.getAvailable(productId));
+    }
+
+    @Test
+    void productsWithoutStockAreUnlimited() {
+        assertTrue(inventory.reserve(USER, otherProductId, 1_000));
+        assertNull(inventory.getAvailable(otherProductId));
+
+        assertThrows(ValidationException.class, () -> inventory.adjustStock(otherProductId, 0));
+        assertNull(inventory.getAvailable(otherProductId));
+        assertFalse(inventoryRepository.existsById(otherProductId));
+    }
+
+    @Test
+    void reserveAllIsAllOrNothing() {
+        inventory.adjustStock(productId, 5);
+        inventory.adjustStock(otherProductId, 1);
+
+        assertThrows(OutOfStockException.class,
+                () -> inventory.reserveAll(USER, Map.of(productId, 3L, otherProductId, 2L), Map.of()));
+
+        assertEquals(5, inventory.getAvailable(productId));
+        assertEquals(1, inventory.getAvailable(otherProductId));
+    }
+
+    @Test
+    void rollbackRestoresTheReservation() {
+        inventory.adjustStock(productId, 10);
+        inventory.reserve(USER, productId, 2);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(inventory.reserve(USER, productId, 6));
+            assertTrue(inventory.reserve(USER, productId, 1));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(8, inventory.getAvailable(productId));
+    }
+
+    @Test
+    void shrinkReleasesUnitsOnlyAtCommit() {
+        inventory.adjustStock(productId, 10);
+        inventory.reserve(USER, productId, 4);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            inventory.reserve(USER, productId, 1);
+            assertEquals(6, inventory.getAvailable(productId));
+        });
+
+        assertEquals(9, inventory.getAvailable(productId));
+    }
+
+    @Test
+    void rolledBackSaleGivesUnitsBack() {
+        inventory.adjustStock(productId, 10);
+        inventory.reserve(USER, productId, 4);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            inventory.commitSale(USER, 1L, Map.of(productId, 4L));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(10, inventory.getAvailable(productId));
+        assertEquals(0, movementRepository.count());
+    }
+
+    @Test
+    void committedSaleIsReconciled() {
+        inventory.adjustStock(productId, 10);
+        inventory.reserve(USER, productId, 4);
+
+        transactionTemplate.executeWithoutResult(status -> inventory.commitSale(USER, 1L, Map.of(productId, 4L)));
+
+        assertEquals(6, inventory.getAvailable(productId));
+        assertEquals(1, inventory.reconcile());
+        assertEquals(0, inventory.reconcile());
+        ProductInventory row = inventoryRepository.findById(productId).orElseThrow();
+        assertEquals(6, row.getStock());
+        assertEquals(4, row.getSold());
+        assertEquals(6, inventory.getAvailable(productId));
+    }
+
+    @Test
+    void expiredReservationsAreReleased() {
+        InventoryServiceImpl shortLived = newInventory(0);
+        shortLived.adjustStock(productId, 10);
+        shortLived.reserve(USER, productId, 3);
+        assertEquals(7, shortLived.getAvailable(productId));
+
+        sleep(5);
+        shortLived.releaseExpired();
+
+        assertEquals(10, shortLived.getAvailable(productId));
+    }
+
+    @Test
+    void startupSubtractsUnreconciledSales() {
+        inventory.adjustStock(productId, 10);
+        transactionTemplate.executeWithoutResult(status -> inventory.commitSale(USER, 1L, Map.of(productId, 4L)));
+
+        assertEquals(6, newInventory(15).getAvailable(productId));
+
+        inventory.reconcile();
+        assertEquals(6, newInventory(15).getAvailable(productId));
+    }
+
+    // Senza scheduler: la riconciliazione la chiamano i test
+    private InventoryServiceImpl newInventory(long reservationTtlMinutes) {
+        InventoryServiceImpl service = new InventoryServiceImpl(inventoryRepository, movementRepository, productRepository,
+                transactionManager, 4, reservationTtlMinutes, 1_000, 60_000);
+        service.loadAvailability();
+        return service;
+    }
+
+    private Long persistProduct(String name, Category category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(100L);
+        product.setDescription(name);
+        product.setCategory(category);
+        return productRepository.save(product).getId();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
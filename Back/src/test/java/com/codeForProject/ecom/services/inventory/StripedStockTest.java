@@ -0,0 +1,68 @@
+package com.codeForProject.ecom.services.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockTest {
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        StripedStock stock = new StripedStock(16, 100);
+        int buyers = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                int bought = 0;
+                for (int attempt = 0; attempt < 10; attempt++) {
+                    if (stock.take(1)) {
+                        bought++;
+                    }
+                }
+                return bought;
+            }));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Integer> result : results) {
+            sold += result.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 320 tentativi su 100 pezzi: si vendono tutti e non uno di più
+        assertEquals(100, sold);
+        assertEquals(0, stock.available());
+    }
+
+    @Test
+    void takeIsAllOrNothing() {
+        StripedStock stock = new StripedStock(4, 5);
+
+        assertFalse(stock.take(6));
+        assertEquals(5, stock.available());
+        assertTrue(stock.take(5));
+        assertEquals(0, stock.available());
+    }
+
+    @Test
+    void partialTakeOnlyRemovesWhatIsFree() {
+        StripedStock stock = new StripedStock(4, 3);
+
+        assertEquals(3, stock.takeUpTo(10));
+        assertEquals(0, stock.available());
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.codeForProject.ecom.services.product;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogVersionTest {
+
+    @Test
+    void bumpOutsideTransactionIsImmediate() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        long before = catalogVersion.current();
+
+        catalogVersion.bump();
+
+        assertEquals(before + 1, catalogVersion.current());
+    }
+
+    @Test
+    void bumpInsideTransactionWaitsForCommit() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        long before = catalogVersion.current();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            catalogVersion.bump();
+            assertEquals(before, catalogVersion.current());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(before + 1, catalogVersion.current());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void bumpIsDroppedOnRollback() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        long before = catalogVersion.current();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            catalogVersion.bump();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(before, catalogVersion.current());
+    }
+
+}
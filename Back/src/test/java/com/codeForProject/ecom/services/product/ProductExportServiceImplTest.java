@@ -0,0 +1,115 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Product;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductExportServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("Books");
+        category.setDescription("Books");
+        entityManager.persist(category);
+        for (int i = 1; i <= 5; i++) {
+            Product product = new Product();
+            product.setName("Novel " + i);
+            product.setPrice(i == 3 ? null : 10L * i);
+            product.setDescription("Novel " + i);
+            product.setCategory(category);
+            entityManager.persist(product);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void writesOneProductPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = new ProductExportServiceImpl(jdbcTemplate, objectMapper, 2, 1000).exportNdjson(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, written);
+        assertEquals(5, lines.length);
+        List<String> names = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode product = objectMapper.readTree(line);
+            names.add(product.get("name").asText());
+            assertEquals("Books", product.get("categoryName").asText());
+        }
+        assertEquals(List.of("Novel 1", "Novel 2", "Novel 3", "Novel 4", "Novel 5"), names);
+        assertTrue(objectMapper.readTree(lines[2]).get("price").isNull());
+    }
+
+    @Test
+    void flushesEveryConfiguredRows() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+
+        new ProductExportServiceImpl(jdbcTemplate, objectMapper, 500, 2).exportNdjson(out);
+
+        // Righe 2 e 4, più il flush finale e la chiusura del generatore
+        assertEquals(4, out.flushes);
+    }
+
+    @Test
+    void nonPositiveSettingsDoNotBreakTheExport() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+
+        long written = new ProductExportServiceImpl(jdbcTemplate, objectMapper, 0, 0).exportNdjson(out);
+
+        assertEquals(5, written);
+        // flushEvery=0 vale come 1: un flush per riga, più il flush finale e la chiusura del generatore
+        assertEquals(7, out.flushes);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private int flushes;
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.codeForProject.ecom.services.product;
+
+import com.codeForProject.ecom.dto.ProductDto;
+import com.codeForProject.ecom.dto.ProductPageDto;
+import com.codeForProject.ecom.entity.Category;
+import com.codeForProject.ecom.entity.Product;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex;
+import com.codeForProject.ecom.services.search.ProductSearchIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ecom;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProductPageServiceImpl.class, ProductSearchIndex.class, ProductCatalogIndex.class})
+class ProductPageServiceImplTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductPageService productPageService;
+
+    @Autowired
+    private ProductCatalogIndex productCatalogIndex;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // Il contesto è condiviso fra i test, il database no
+        productCatalogIndex.clear();
+        Category electronics = persistCategory("Electronics");
+        Category books = persistCategory("Books");
+        for (int i = 1; i <= 6; i++) {
+            persistProduct("Phone " + i, 100L * i, electronics);
+            persistProduct("Novel " + i, 10L * i, books);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingPageRunsSingleStatement() {
+        ProductPageDto page = productPageService.findPage(null, null, 5, "price");
+
+        assertEquals(5, page.getProducts().size());
+        assertNotNull(page.getProducts().get(0).getCategoryName());
+        assertNotNull(page.getNextCursor());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void categoryPageRunsSingleStatement() {
+        ProductPageDto page = productPageService.findPage("Books", null, 10, null);
+
+        assertEquals(6, page.getProducts().size());
+        assertTrue(page.getProducts().stream().allMatch(p -> "Books".equals(p.getCategoryName())));
+        assertNull(page.getNextCursor());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cursorContinuesWhereThePreviousPageStopped() {
+        ProductPageDto first = productPageService.findPage(null, null, 7, "price");
+        ProductPageDto second = productPageService.findPage(null, first.getNextCursor(), 7, "price");
+
+        assertEquals(7, first.getProducts().size());
+        assertEquals(5, second.getProducts().size());
+        assertNull(second.getNextCursor());
+        assertTrue(first.getProducts().get(6).getPrice() <= second.getProducts().get(0).getPrice());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void namePageComesFromTheCatalogIndex() {
+        ProductPageDto first = productPageService.findPage("books", null, 4, "name");
+        ProductPageDto second = productPageService.findPage("books", first.getNextCursor(), 4, "name");
+
+        assertEquals(List.of("Novel 1", "Novel 2", "Novel 3", "Novel 4"),
+                first.getProducts().stream().map(ProductDto::getName).toList());
+        assertEquals(List.of("Novel 5", "Novel 6"), second.getProducts().stream().map(ProductDto::getName).toList());
+        assertNull(second.getNextCursor());
+        // Solo il caricamento delle righe per chiave primaria
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertTrue(productPageService.findPage("Unknown", null, 4, "name").getProducts().isEmpty());
+    }
+
+    @Test
+    void rowsWithNullSortKeyArePagedLikeTheOthers() {
+        Category misc = persistCategory("Misc");
+        persistProduct("Unpriced 1", null, misc);
+        persistProduct("Unpriced 2", null, misc);
+        persistProduct(null, 5L, misc);
+        entityManager.flush();
+        entityManager.clear();
+
+        for (String sort : new String[] {"price", "name"}) {
+            Set<Long> seen = new HashSet<>();
+            String cursor = null;
+            do {
+                ProductPageDto page = productPageService.findPage(null, cursor, 2, sort);
+                page.getProducts().forEach(product -> assertTrue(seen.add(product.getId()), "duplicate " + product.getId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(15, seen.size(), "sort " + sort);
+        }
+    }
+
+    private Category persistCategory(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setDescription(name);
+        return entityManager.persist(category);
+    }
+
+    private void persistProduct(String name, Long price, Category category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        product.setDescription("Description of " + name);
+        product.setCategory(category);
+        entityManager.persist(product);
+        productCatalogIndex.put(product.getId(), name, price, category.getId(), category.getName());
+    }
+
+}
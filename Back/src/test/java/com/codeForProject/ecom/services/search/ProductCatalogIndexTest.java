@@ -0,0 +1,130 @@
+package com.codeForProject.ecom.services.search;
+
+import com.codeForProject.ecom.enums.ProductSort;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex.After;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex.CategoryCount;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex.Facets;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex.Filter;
+import com.codeForProject.ecom.services.search.ProductCatalogIndex.Page;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCatalogIndexTest {
+
+    private static final Filter NO_FILTER = new Filter(null, null, null);
+
+    private ProductCatalogIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductCatalogIndex();
+        index.put(1L, "Phone", 500L, 10L, "Electronics");
+        index.put(2L, "Novel", 20L, 20L, "Books");
+        index.put(3L, "Tablet", 300L, 10L, "Electronics");
+        index.put(4L, "atlas", 80L, 20L, "Books");
+        index.put(5L, "Cable", 10L, 10L, "Electronics");
+    }
+
+    @Test
+    void filtersByCategoryAndPriceRange() {
+        assertEquals(List.of(1L, 3L, 5L), index.page(new Filter(10L, null, null), ProductSort.ID, null, 10).productIds());
+        assertEquals(List.of(2L, 4L, 5L), index.page(new Filter(null, null, 100L), ProductSort.ID, null, 10).productIds());
+        assertEquals(List.of(3L), index.page(new Filter(10L, 100L, 400L), ProductSort.ID, null, 10).productIds());
+        assertTrue(index.page(new Filter(99L, null, null), ProductSort.ID, null, 10).productIds().isEmpty());
+    }
+
+    @Test
+    void sortsByPriceAndCaseInsensitiveName() {
+        assertEquals(List.of(5L, 2L, 4L, 3L, 1L), index.page(NO_FILTER, ProductSort.PRICE, null, 10).productIds());
+        assertEquals(List.of(4L, 5L, 2L, 1L, 3L), index.page(NO_FILTER, ProductSort.NAME, null, 10).productIds());
+    }
+
+    @Test
+    void cursorWalksEveryProductOnce() {
+        List<Long> seen = new ArrayList<>();
+        After after = null;
+        Page page;
+        do {
+            page = index.page(NO_FILTER, ProductSort.PRICE, after, 2);
+            seen.addAll(page.productIds());
+            long lastId = page.productIds().get(page.productIds().size() - 1);
+            after = new After(lastId, priceOf(lastId), null);
+        } while (page.hasMore());
+
+        assertEquals(List.of(5L, 2L, 4L, 3L, 1L), seen);
+    }
+
+    @Test
+    void pagesAnExplicitSetOfIds() {
+        // Id sconosciuti (es. un risultato di ricerca non ancora nel catalogo) vengono ignorati
+        List<Long> ids = List.of(1L, 3L, 4L, 99L);
+
+        assertEquals(List.of(4L, 3L, 1L), index.page(ids, ProductSort.PRICE, null, 10).productIds());
+        Page first = index.page(ids, ProductSort.NAME, null, 2);
+        assertEquals(List.of(4L, 1L), first.productIds());
+        assertTrue(first.hasMore());
+        Page second = index.page(ids, ProductSort.NAME, new After(1L, null, "Phone"), 2);
+        assertEquals(List.of(3L), second.productIds());
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void unpricedProductsAreExcludedByPriceFiltersAndSortFirst() {
+        index.put(6L, "Gift card", null, 10L, "Electronics");
+        index.put(7L, "Voucher", null, 10L, "Electronics");
+
+        assertEquals(List.of(5L), index.page(new Filter(null, 0L, 10L), ProductSort.ID, null, 10).productIds());
+        assertEquals(List.of(2L, 4L, 5L), index.page(new Filter(null, null, 100L), ProductSort.ID, null, 10).productIds());
+        assertEquals(List.of(6L, 7L, 5L), index.page(NO_FILTER, ProductSort.PRICE, null, 3).productIds());
+        // Dopo una riga senza prezzo: le altre senza prezzo e poi tutte le valorizzate
+        assertEquals(List.of(7L, 5L, 2L), index.page(NO_FILTER, ProductSort.PRICE, new After(6L, null, null), 3).productIds());
+        assertEquals(List.of(2L, 4L), index.page(NO_FILTER, ProductSort.PRICE, new After(5L, 10L, null), 2).productIds());
+        // L'istogramma conta solo i prezzi noti
+        assertEquals(5, index.facets(NO_FILTER, 10).priceBuckets().stream().mapToLong(b -> b.count()).sum());
+    }
+
+    @Test
+    void productChangesAreReflectedImmediately() {
+        // Cambio di categoria e prezzo: il prodotto lascia la bitset della vecchia categoria
+        index.put(3L, "Tablet", 30L, 20L, "Books");
+        index.remove(1L);
+        index.put(6L, "Lamp", 40L, 30L, "Home");
+
+        assertEquals(List.of(5L), index.page(new Filter(10L, null, null), ProductSort.ID, null, 10).productIds());
+        assertEquals(List.of(2L, 3L, 4L), index.page(new Filter(20L, null, null), ProductSort.ID, null, 10).productIds());
+        assertEquals(5, index.size());
+
+        Facets facets = index.facets(NO_FILTER, 10);
+        assertEquals(5, facets.total());
+        assertEquals(List.of(new CategoryCount(10L, "Electronics", 1), new CategoryCount(20L, "Books", 3),
+                new CategoryCount(30L, "Home", 1)), facets.categories());
+    }
+
+    @Test
+    void clearAndReloadRebuildsTheIndex() {
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.page(NO_FILTER, ProductSort.ID, null, 10).productIds().isEmpty());
+
+        index.put(7L, "Desk", 150L, 30L, "Home");
+
+        assertEquals(List.of(7L), index.page(NO_FILTER, ProductSort.ID, null, 10).productIds());
+        assertTrue(index.page(new Filter(10L, null, null), ProductSort.ID, null, 10).productIds().isEmpty());
+    }
+
+    private static Long priceOf(long id) {
+        return switch ((int) id) {
+            case 1 -> 500L;
+            case 2 -> 20L;
+            case 3 -> 300L;
+            case 4 -> 80L;
+            default -> 10L;
+        };
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.codeForProject.ecom.services.search;
+
+import com.codeForProject.ecom.services.search.ProductSearchIndex.Hit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.index(1L, "Phone", "Smartphone with camera", "Electronics");
+        index.index(2L, "Phone case", "Protective case for phone", "Accessories");
+        index.index(3L, "Camera", "Digital camera", "Electronics");
+        index.index(4L, "Novel", "A long story", "Books");
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionMatches() {
+        assertEquals(List.of(3L, 1L), ids(index.search("camera", null, 10)));
+        // Maiuscole e accenti non contano
+        assertEquals(List.of(3L, 1L), ids(index.search("CAMÉRA", null, 10)));
+        // Il prodotto che soddisfa tutte le parole viene prima
+        assertEquals(List.of(2L, 1L), ids(index.search("phone case", null, 10)));
+    }
+
+    @Test
+    void lastWordIsCompletedAndTyposAreTolerated() {
+        assertEquals(Set.of(1L, 2L), Set.copyOf(ids(index.search("pho", null, 10))));
+        assertEquals(List.of(4L), ids(index.search("nov", null, 10)));
+        assertEquals(3L, index.search("camara", null, 10).get(0).productId());
+        assertTrue(index.search("xyz", null, 10).isEmpty());
+        assertTrue(index.search("  ", null, 10).isEmpty());
+    }
+
+    @Test
+    void cursorWalksEveryHitOnce() {
+        List<Hit> all = index.search("phone camera electronics", null, 10);
+
+        List<Hit> seen = new ArrayList<>();
+        Hit after = null;
+        List<Hit> page;
+        do {
+            page = index.search("phone camera electronics", after, 1);
+            seen.addAll(page);
+            after = page.isEmpty() ? null : page.get(0);
+        } while (!page.isEmpty());
+
+        assertEquals(all, seen);
+        assertEquals(Set.of(1L, 2L, 3L), Set.copyOf(ids(all)));
+    }
+
+    @Test
+    void matchingIdsIgnoreRanking() {
+        assertEquals(Set.of(1L, 2L), index.matchingIds("phone"));
+        assertEquals(Set.of(1L, 3L), index.matchingIds("electr"));
+        assertTrue(index.matchingIds("").isEmpty());
+    }
+
+    @Test
+    void removeAndReindexUpdateTheTerms() {
+        index.remove(3L);
+        assertEquals(List.of(1L), ids(index.search("camera", null, 10)));
+        assertEquals(3, index.size());
+
+        // Reindicizzare sostituisce i termini precedenti del prodotto
+        index.index(1L, "Phone", "Smartphone", "Electronics");
+        assertTrue(index.search("camera", null, 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search("smartphone", null, 10)));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.search("phone", null, 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<Hit> hits) {
+        return hits.stream().map(Hit::productId).toList();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.codeForProject.ecom.services.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSuggesterTest {
+
+    private ProductSuggester suggester;
+
+    // Senza scheduler: il ricalcolo lo chiamano i test
+    @BeforeEach
+    void setUp() {
+        suggester = new ProductSuggester(60_000);
+        suggester.put(1L, "Apple iPhone");
+        suggester.put(2L, "Apple Watch");
+        suggester.put(3L, "Samsung Phone");
+    }
+
+    @Test
+    void suggestsByPrefixOfAnyWord() {
+        assertEquals(List.of(1L, 2L), suggester.suggest("app", 10));
+        assertEquals(List.of(3L), suggester.suggest("phone", 10));
+        assertEquals(List.of(2L), suggester.suggest("wat", 10));
+        assertEquals(List.of(), suggester.suggest("xyz", 10));
+    }
+
+    @Test
+    void bumpsReorderOnlyAfterRefresh() {
+        suggester.bumpPopularity(2L, 5);
+
+        assertEquals(5, suggester.getPopularity(2L));
+        assertEquals(List.of(1L, 2L), suggester.suggest("app", 10));
+
+        assertEquals(1, suggester.refreshPopularity());
+        assertEquals(List.of(2L, 1L), suggester.suggest("app", 10));
+        assertEquals(0, suggester.refreshPopularity());
+    }
+
+    @Test
+    void concurrentBumpsAreAllCounted() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            long productId = i % 2 == 0 ? 1L : 2L;
+            pool.execute(() -> suggester.bumpPopularity(productId, 1));
+        }
+        suggester.bumpPopularity(2L, 1);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        suggester.refreshPopularity();
+
+        assertEquals(4_000, suggester.getPopularity(1L));
+        assertEquals(4_001, suggester.getPopularity(2L));
+        assertEquals(List.of(2L, 1L), suggester.suggest("apple", 10));
+    }
+
+    @Test
+    void startupLoadUsesSeededPopularity() {
+        suggester.clear();
+        suggester.load(1L, "Apple iPhone");
+        suggester.load(2L, "Apple Watch");
+        suggester.setPopularity(1L, 3);
+        suggester.setPopularity(2L, 7);
+        suggester.finishLoad();
+
+        assertEquals(List.of(2L, 1L), suggester.suggest("apple", 10));
+        assertEquals(0, suggester.refreshPopularity());
+    }
+
+    @Test
+    void removedProductsDisappearAndLoseTheirCount() {
+        suggester.bumpPopularity(1L, 10);
+        suggester.remove(1L);
+
+        assertEquals(0, suggester.refreshPopularity());
+        assertEquals(List.of(2L), suggester.suggest("app", 10));
+        assertEquals(0, suggester.getPopularity(1L));
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.codeForProject.ecom.services.tracking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackingRateLimiterTest {
+
+    @Test
+    void clientIsLimitedAfterBurst() {
+        // Un token ogni 10 secondi dopo i primi tre
+        TrackingRateLimiter limiter = new TrackingRateLimiter(3, 0.1, 1_000);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        }
+        long retryAfter = limiter.tryAcquire("10.0.0.1");
+
+        assertTrue(retryAfter > 0 && retryAfter <= 10, "retry after: " + retryAfter);
+        // Ogni IP ha il suo bucket
+        assertEquals(0, limiter.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    void tokensRefillOverTime() throws InterruptedException {
+        TrackingRateLimiter limiter = new TrackingRateLimiter(1, 50, 1_000);
+
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertTrue(limiter.tryAcquire("10.0.0.1") > 0);
+        Thread.sleep(50);
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+    }
+
+}
@@ -1,7 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { Plus, Edit, Trash2, Package, Search, Filter, X } from 'lucide-react';
 import { Product } from '../../types';
-import { adminApi } from '../../services/ApiService';
+import { adminApi, resolveImageUrl } from '../../services/ApiService';
 import AddProductModal from './AddProductModal';
 
 interface Category {
@@ -13,6 +13,9 @@ interface Category {
 const AdminProductManagement: React.FC = () => {
   const [products, setProducts] = useState<Product[]>([]);
   const [loading, setLoading] = useState(true);
+  // Cursore della pagina successiva: le altre pagine si caricano solo su richiesta
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [searchTerm, setSearchTerm] = useState('');
   const [selectedCategory, setSelectedCategory] = useState('all');
   const [showAddModal, setShowAddModal] = useState(false);
@@ -37,20 +40,38 @@ const AdminProductManagement: React.FC = () => {
   const fetchProducts = async () => {
     try {
       setLoading(true);
-      const productsData = await adminApi.getProducts();
-      const normalized = (Array.isArray(productsData) ? productsData : []).map((p: any) => ({
-        ...p,
-        imageUrl: p.byteImg ? `data:image/jpeg;base64,${p.byteImg}` : p.imageUrl
-      }));
-      setProducts(normalized);
+      const page = await adminApi.getProducts();
+      setProducts(normalizeProducts(page.items));
+      setNextCursor(page.nextCursor);
     } catch (error) {
       console.error('Error fetching products:', error);
       setProducts([]);
+      setNextCursor(null);
     } finally {
       setLoading(false);
     }
   };
 
+  const fetchMoreProducts = async () => {
+    if (!nextCursor) return;
+    try {
+      setLoadingMore(true);
+      const page = await adminApi.getProducts(nextCursor);
+      setProducts(prev => [...prev, ...normalizeProducts(page.items)]);
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      // I prodotti già caricati restano: si può riprovare con lo stesso cursore
+      console.error('Error fetching more products:', error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  const normalizeProducts = (items: any[]) => items.map((p: any) => ({
+    ...p,
+    imageUrl: resolveImageUrl(p.imageUrl)
+  }));
+
   const fetchCategories = async () => {
     try {
       const categoriesData = await adminApi.getCategories();
@@ -276,6 +297,18 @@ const AdminProductManagement: React.FC = () => {
         </table>
       </div>
 
+      {nextCursor && (
+        <div className="text-center py-4">
+          <button
+            onClick={fetchMoreProducts}
+            disabled={loadingMore}
+            className="px-4 py-2 text-sm font-medium text-blue-600 border border-blue-600 rounded-md hover:bg-blue-50 disabled:opacity-60"
+          >
+            {loadingMore ? 'Loading...' : 'Load more products'}
+          </button>
+        </div>
+      )}
+
       {filteredProducts.length === 0 && (
         <div className="text-center py-12">
           <Package className="mx-auto h-12 w-12 text-gray-400" />
@@ -32,7 +32,7 @@ const ProductManagement: React.FC = () => {
           adminApi.getProducts(),
           adminApi.getCategories()
         ]);
-        setProducts(productsData);
+        setProducts(productsData.items);
         setCategories(categoriesData);
       } catch (err) {
         console.error('Error loading data:', err);
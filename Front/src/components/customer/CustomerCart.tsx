@@ -1,13 +1,13 @@
 import React, { useEffect, useMemo, useState } from 'react';
 import { Trash2, ShoppingCart } from 'lucide-react';
-import { customerApi } from '../../services/ApiService';
+import { customerApi, resolveImageUrl } from '../../services/ApiService';
 
 interface CartItemDto {
   id: string;
   productId: string;
   productName: string;
   price: number;
-  returnedImg?: string;
+  imageUrl?: string;
   categoryName?: string;
 }
 
@@ -122,7 +122,7 @@ const CustomerCart: React.FC = () => {
             {/* Items list */}
             <div className="lg:col-span-2 space-y-4">
               {(order?.cartItems ?? []).map((item, index) => {
-                const imageUrl = item.returnedImg ? `data:image/jpeg;base64,${item.returnedImg}` : undefined;
+                const imageUrl = resolveImageUrl(item.imageUrl, 160);
                 const inCart = cartProductIds.has(String(item.productId));
                 return (
                   <div
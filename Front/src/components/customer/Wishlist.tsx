@@ -1,6 +1,6 @@
 import React, { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
-import { customerApi } from '../../services/ApiService';
+import { customerApi, resolveImageUrl } from '../../services/ApiService';
 
 import { ShoppingCart, Trash2, Heart } from 'lucide-react';
 
@@ -31,17 +31,13 @@ const Wishlist: React.FC = () => {
         console.log('Wishlist data type:', typeof data);
         console.log('Wishlist data length:', Array.isArray(data) ? data.length : 'not an array');
 
-        // Normalizza i dati: il backend usa `returnedImg` per l'immagine della wishlist
+        // Normalizza i dati: il backend usa `imageUrl` (percorso relativo) per l'immagine della wishlist
         const normalized: WishlistItem[] = (Array.isArray(data) ? data : []).map((item: any) => ({
           id: String(item.id),
           productId: String(item.productId),
           productName: item.productName ?? item.product?.name ?? 'Product',
           price: Number(item.price ?? item.product?.price ?? 0),
-          imageUrl: item.returnedImg
-            ? `data:image/jpeg;base64,${item.returnedImg}`
-            : item.product?.byteImg
-              ? `data:image/jpeg;base64,${item.product.byteImg}`
-              : item.imageUrl ?? undefined,
+          imageUrl: resolveImageUrl(item.imageUrl ?? item.product?.imageUrl, 160),
           description: item.productDescription ?? item.product?.description ?? ''
         }));
         setWishlistItems(normalized);
@@ -22,6 +22,7 @@ const AdminDashboard: React.FC = () => {
   const [refreshProducts, setRefreshProducts] = useState(0);
   const [stats, setStats] = useState({
     totalProducts: 0,
+    moreProducts: false,
     totalOrders: 0,
     totalCustomers: 0,
     monthlySales: 0
@@ -34,13 +35,13 @@ const AdminDashboard: React.FC = () => {
 
   const fetchStats = async () => {
     try {
-      const [productsData] = await Promise.all([
-        adminApi.getProducts()
-      ]);
-      
+      // Solo la prima pagina: con altre pagine disponibili il totale si mostra come "N+"
+      const page = await adminApi.getProducts();
+
       setStats(prev => ({
         ...prev,
-        totalProducts: productsData?.length || 0
+        totalProducts: page.items.length,
+        moreProducts: page.nextCursor !== null
       }));
     } catch (error) {
       console.error('Error fetching stats:', error);
@@ -87,7 +88,7 @@ const AdminDashboard: React.FC = () => {
                 <Package className="h-8 w-8 text-blue-600" />
                 <div className="ml-4">
                   <p className="text-sm font-medium text-gray-600">Total Products</p>
-                  <p className="text-2xl font-bold text-gray-900">{stats.totalProducts}</p>
+                  <p className="text-2xl font-bold text-gray-900">{stats.totalProducts}{stats.moreProducts ? '+' : ''}</p>
                 </div>
               </div>
             </div>
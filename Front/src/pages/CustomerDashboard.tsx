@@ -54,9 +54,11 @@ const CustomerDashboard: React.FC = () => {
   useEffect(() => {
     const loadProducts = async () => {
       try {
-        const response = await customerApi.getAllProducts();
-        if (response && Array.isArray(response)) {
-          setProducts(response as any);
+        // I conteggi per categoria arrivano dalle faccette: non serve scaricare tutto il catalogo
+        const response = await customerApi.getProductFacets(6);
+        if (response && Array.isArray(response.products)) {
+          setProducts(response.products as any);
+          const categoryFacets: any[] = response.facets?.categories ?? [];
           
           // Function to map category ID to database category name
           const mapCategoryIdToName = (categoryId: string): string => {
@@ -74,11 +76,8 @@ const CustomerDashboard: React.FC = () => {
           // Function to count products by category
           const getProductCountByCategory = (categoryId: string): number => {
             const categoryName = mapCategoryIdToName(categoryId);
-            return response.filter((product: any) => {
-              // Preferisci product.categoryName (DTO backend), fallback a product.category?.name
-              const pCat = product?.categoryName ?? product?.category?.name;
-              return pCat && pCat === categoryName;
-            }).length;
+            const facet = categoryFacets.find((c: any) => c.categoryName === categoryName);
+            return facet ? facet.count : 0;
           };
           
           // Update categories with real product counts
@@ -89,7 +88,7 @@ const CustomerDashboard: React.FC = () => {
           setCategories(updatedCategories);
           
           // Set featured products (first 6 products)
-          setFeaturedProducts(response.slice(0, 6));
+          setFeaturedProducts(response.products.slice(0, 6));
         }
       } catch (error) {
         console.error('Error loading products:', error);
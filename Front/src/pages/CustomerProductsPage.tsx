@@ -2,7 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { useParams } from 'react-router-dom';
 import { useAuth } from '../contexts/AuthContext';
 import Layout from '../components/common/Layout';
-import { customerApi } from '../services/ApiService';
+import { customerApi, resolveImageUrl } from '../services/ApiService';
 import { Product } from '../types';
 import { Search, Filter, Heart, Zap, ShoppingCart } from 'lucide-react';
 
@@ -12,6 +12,9 @@ const CustomerProductsPage: React.FC = () => {
   
   const [products, setProducts] = useState<Product[]>([]);
   const [loading, setLoading] = useState(true);
+  // Cursore della pagina successiva: le altre pagine si caricano solo su richiesta
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState<string | null>(null);
   const [searchTerm, setSearchTerm] = useState('');
   const [filteredProducts, setFilteredProducts] = useState<Product[]>([]);
@@ -75,22 +78,11 @@ const CustomerProductsPage: React.FC = () => {
       setLoading(true);
       setError(null);
       
-      let response;
-      if (categoryName) {
-        // Carica prodotti per categoria specifica
-        response = await customerApi.getProductsByCategory(categoryName);
-      } else {
-        // Carica tutti i prodotti
-        response = await customerApi.getAllProducts();
-      }
-      // Normalizza le immagini: i ProductDto backend usano `byteImg` per la foto
-      const normalized = (Array.isArray(response) ? response : []).map((p: any) => ({
-        ...p,
-        // Usa `byteImg` come sorgente principale, fallback su eventuale `img`
-        img: p.byteImg ?? p.img ?? undefined
-      }));
+      const page = await fetchPage(null);
+      const normalized = normalizeProducts(page.items);
       setProducts(normalized);
       setFilteredProducts(normalized);
+      setNextCursor(page.nextCursor);
     } catch (err: any) {
       console.error('Error loading products:', err);
       setError('Error loading products. Please try again later.');
@@ -99,6 +91,33 @@ const CustomerProductsPage: React.FC = () => {
     }
   };
 
+  const loadMoreProducts = async () => {
+    if (!nextCursor) return;
+    try {
+      setLoadingMore(true);
+      const page = await fetchPage(nextCursor);
+      setProducts(prev => [...prev, ...normalizeProducts(page.items)]);
+      setNextCursor(page.nextCursor);
+    } catch (err: any) {
+      // I prodotti già caricati restano: si può riprovare con lo stesso cursore
+      console.error('Error loading more products:', err);
+      alert('Error loading more products. Please try again.');
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  // Prodotti della categoria scelta o di tutto il catalogo
+  const fetchPage = (cursor: string | null) => categoryName
+    ? customerApi.getProductsByCategory(categoryName, cursor)
+    : customerApi.getAllProducts(cursor);
+
+  // Normalizza le immagini: i ProductDto backend usano `imageUrl` per la foto
+  const normalizeProducts = (items: any[]) => items.map((p: any) => ({
+    ...p,
+    img: resolveImageUrl(p.imageUrl, 480)
+  }));
+
   
 
   const addToWishlist = async (product: Product) => {
@@ -200,7 +219,7 @@ const CustomerProductsPage: React.FC = () => {
                 : 'Each item is unique and carefully selected. Find what speaks to you!'}
             </p>
             <div className="flex items-center justify-center space-x-2 text-xl">
-              <span className="text-yellow-300 font-bold">Items available: {filteredProducts.length}</span>
+              <span className="text-yellow-300 font-bold">Items available: {filteredProducts.length}{nextCursor ? '+' : ''}</span>
             </div>
             <p className="mt-2 text-indigo-100">
               These are all the products available. If you'd like to select products from specific categories, go to the <span className="font-serif text-yellow-300 font-semibold underline underline-offset-2">Categories</span> section above.
@@ -252,7 +271,7 @@ const CustomerProductsPage: React.FC = () => {
                   <div className="aspect-w-1 aspect-h-1 bg-gray-200 relative overflow-hidden">
                     {product.img ? (
                       <img
-                        src={`data:image/jpeg;base64,${product.img}`}
+                        src={product.img}
                         alt={product.name}
                         className="w-full h-48 object-cover transition-transform duration-500 group-hover:scale-105"
                       />
@@ -323,6 +342,18 @@ const CustomerProductsPage: React.FC = () => {
               ))}
             </div>
           )}
+
+          {nextCursor && (
+            <div className="text-center mt-8">
+              <button
+                onClick={loadMoreProducts}
+                disabled={loadingMore}
+                className="bg-indigo-600 text-white px-6 py-2 rounded-lg hover:bg-indigo-700 transition-colors disabled:opacity-60"
+              >
+                {loadingMore ? 'Loading...' : 'Load more products'}
+              </button>
+            </div>
+          )}
         </div>
       </div>
     </Layout>
@@ -2,6 +2,14 @@ import keycloak, { getToken, updateToken } from './KeycloakService';
 
 const API_BASE_URL = 'http://localhost:8081';
 
+// I DTO del backend restituiscono percorsi relativi (es. /api/images/product/1?v=...)
+export const resolveImageUrl = (path?: string | null, width?: number) => {
+  if (!path) return undefined;
+  const url = path.startsWith('/') ? `${API_BASE_URL}${path}` : path;
+  // Con la larghezza il backend serve la miniatura più piccola che la copre
+  return width ? `${url}${url.includes('?') ? '&' : '?'}w=${width}` : url;
+};
+
 // Funzione helper per aggiungere il token di autenticazione
 const authHeader = async (isFormData = false) => {
   try {
@@ -131,6 +139,44 @@ const apiRequest = async (endpoint: string, options: RequestInit = {}) => {
   }
 };
 
+// Header con cui il backend indica il cursore della pagina successiva
+const NEXT_CURSOR_HEADER = 'X-Next-Cursor';
+
+// Una pagina di una lista: il cursore della successiva è null quando non ce ne sono altre
+export interface Page<T = any> {
+  items: T[];
+  nextCursor: string | null;
+}
+
+// Le liste arrivano una pagina alla volta: la successiva si chiede con il cursore di X-Next-Cursor,
+// solo quando l'utente vuole vedere altri elementi. La prima pagina senza parametri è servita dallo snapshot del catalogo
+const apiRequestPage = async (endpoint: string, cursor: string | null = null): Promise<Page> => {
+  const separator = endpoint.includes('?') ? '&' : '?';
+  const url = cursor === null ? endpoint : `${endpoint}${separator}cursor=${encodeURIComponent(cursor)}`;
+  try {
+    const headers = await authHeader(false);
+    const response = await fetch(`${API_BASE_URL}${url}`, { headers });
+
+    if (!response.ok) {
+      console.warn(`API error: ${response.status} for endpoint ${url}`);
+      throw new Error(`API error: ${response.status}`);
+    }
+
+    const body = await response.json();
+    return {
+      items: Array.isArray(body) ? body : [],
+      nextCursor: response.headers.get(NEXT_CURSOR_HEADER)
+    };
+  } catch (error) {
+    console.error('API request failed:', error);
+    // Dati di fallback solo per la prima pagina: quelli già caricati non vengono mai sostituiti
+    if (cursor === null) {
+      return { items: getMockData(endpoint), nextCursor: null };
+    }
+    throw error;
+  }
+};
+
 // Funzione per ottenere dati di fallback in base all'endpoint
 const getMockData = (endpoint: string) => {
   console.log(`Returning mock data for ${endpoint}`);
@@ -172,7 +218,7 @@ export const adminApi = {
   }),
   
   // Prodotti
-  getProducts: () => apiRequest('/api/admin/products'),
+  getProducts: (cursor: string | null = null) => apiRequestPage('/api/admin/products', cursor),
   createProduct: (productData: any) => apiRequest('/api/admin/product', {
     method: 'POST',
     body: productData // FormData per il file upload
@@ -210,10 +256,17 @@ export const adminApi = {
 // API per gli utenti Customer
 export const customerApi = {
   // Prodotti
-  getAllProducts: () => apiRequest('/api/customer/products'),
-  getProductsByCategory: (categoryName: string) => apiRequest(`/api/customer/products/category/${categoryName}`),
-  searchProducts: (searchTerm: string) => apiRequest(`/api/customer/search/${searchTerm}`),
+  getAllProducts: (cursor: string | null = null) => apiRequestPage('/api/customer/products', cursor),
+  getProductsByCategory: (categoryName: string, cursor: string | null = null) =>
+    apiRequestPage(`/api/customer/products/category/${categoryName}`, cursor),
+  searchProducts: (searchTerm: string, cursor: string | null = null) =>
+    apiRequestPage(`/api/customer/search/${encodeURIComponent(searchTerm)}`, cursor),
+  // Prima pagina e conteggi per categoria in una sola richiesta, senza scaricare tutto il catalogo
+  getProductFacets: (limit: number) => apiRequest(`/api/customer/products/facets?limit=${limit}`),
+  // Il dettaglio include solo la prima pagina di recensioni e nextReviewsCursor: le altre si chiedono con getProductReviews
   getProductDetails: (productId: string) => apiRequest(`/api/customer/product/${productId}`),
+  getProductReviews: (productId: string, cursor: string) =>
+    apiRequestPage(`/api/customer/product/${productId}/reviews`, cursor),
   
 
   // Ordini